@@ -0,0 +1,64 @@
+package com.realestate.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бот, запущенный дочерним процессом и направленный на локальные заглушки
+ *
+ * Адреса Bot API и Apify передаются через TELEGRAM_API_URL и APIFY_BASE_URL, база данных -
+ * из окружения драйвера (DB_HOST, DB_NAME, ...). Интервалы планировщика сокращены, чтобы за несколько
+ * минут теста прошло несколько циклов проверок; заданные в окружении значения (SCHEDULER_CHECKINTERVAL
+ * и т.д.) не переопределяются. Вывод бота пишется в bot.log рядом с отчётом.
+ */
+public class BotProcess implements AutoCloseable {
+
+    private final Process process;
+
+    private BotProcess(Process process) {
+        this.process = process;
+    }
+
+    public static BotProcess start(LoadTestConfig config) throws IOException {
+        Files.createDirectories(config.reportDir());
+        Path log = config.reportDir().resolve("bot.log");
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-jar");
+        command.add(config.botJar().toAbsolutePath().toString());
+
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile());
+        Map<String, String> env = builder.environment();
+        env.put("BOT_TOKEN", config.token());
+        env.put("BOT_USERNAME", "LoadTestBot");
+        env.put("TELEGRAM_API_URL", "http://127.0.0.1:" + config.telegramPort() + "/bot");
+        env.put("APIFY_BASE_URL", "http://127.0.0.1:" + config.apifyPort() + "/v2");
+        env.putIfAbsent("APIFY_API_KEY", "loadtest");
+        env.putIfAbsent("SCHEDULER_CHECKINTERVAL", "2m");
+        env.putIfAbsent("SCHEDULER_MININTERVAL", "1m");
+        env.putIfAbsent("SCHEDULER_TICKINTERVAL", "10s");
+
+        System.out.println("Starting bot: " + String.join(" ", command) + " (log: " + log + ")");
+        return new BotProcess(builder.start());
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.realestate.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заглушка Apify: POST /v2/acts/{actor}/run-sync
+ *
+ * Отвечает в формате, который разбирает ApifyService ({status, defaultDatasetId, items}),
+ * выдачей синтетического рынка по minPrice/maxPrice/bedrooms/maxItems. Время выполнения актора
+ * имитируется задержкой со случайным разбросом ±50%. Каждый запрос - одна проверка поиска,
+ * поэтому моменты запросов используются для оценки длительности цикла проверок.
+ */
+public class FakeApifyServer {
+
+    private static final String PATH_PREFIX = "/v2/acts/";
+    private static final String PATH_SUFFIX = "/run-sync";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SyntheticMarket market;
+    private final Metrics metrics;
+    private final Duration latency;
+    private final HttpServer server;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger datasets = new AtomicInteger();
+
+    // Моменты завершения запросов (мс), по порядку
+    private final List<Long> completedAt = new ArrayList<>();
+
+    public FakeApifyServer(int port, SyntheticMarket market, Metrics metrics, Duration latency) throws IOException {
+        this.market = market;
+        this.metrics = metrics;
+        this.latency = latency;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.server.createContext("/v2/acts/", this::handle);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Моменты завершения запросов (копия)
+     */
+    public synchronized List<Long> completedAt() {
+        return new ArrayList<>(completedAt);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (!"POST".equals(exchange.getRequestMethod()) || !path.startsWith(PATH_PREFIX) || !path.endsWith(PATH_SUFFIX)) {
+                respond(exchange, 404, "{\"error\":{\"type\":\"page-not-found\"}}");
+                return;
+            }
+
+            long started = System.currentTimeMillis();
+            metrics.peak("apify.in_flight.max", inFlight.incrementAndGet());
+            try {
+                JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+                simulateRun();
+                respond(exchange, 200, objectMapper.writeValueAsString(runResult(request)));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+
+            long finished = System.currentTimeMillis();
+            metrics.increment("apify.requests");
+            metrics.distribution("apify.run_sync").record(finished - started);
+            synchronized (this) {
+                completedAt.add(finished);
+            }
+        } catch (Exception e) {
+            metrics.increment("apify.errors");
+        }
+    }
+
+    private void simulateRun() throws InterruptedException {
+        long millis = latency.toMillis();
+        if (millis > 0) {
+            Thread.sleep(millis / 2 + ThreadLocalRandom.current().nextLong(millis + 1));
+        }
+    }
+
+    private ObjectNode runResult(JsonNode request) {
+        Integer minPrice = intField(request.path("minPrice"));
+        Integer maxPrice = intField(request.path("maxPrice"));
+        JsonNode bedrooms = request.path("bedrooms");
+        Integer rooms = bedrooms.isArray() && !bedrooms.isEmpty() ? intField(bedrooms.get(0)) : null;
+        int maxItems = request.path("maxItems").asInt(100);
+
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("status", "SUCCEEDED");
+        result.put("defaultDatasetId", "loadtest-" + datasets.incrementAndGet());
+        ArrayNode items = result.putArray("items");
+        for (SyntheticMarket.Listing listing : market.query(minPrice, maxPrice, rooms, maxItems)) {
+            ObjectNode item = items.addObject();
+            item.put("propertyCode", String.valueOf(listing.id));
+            item.put("url", "https://www.idealista.com/inmueble/" + listing.id + "/");
+            item.put("price", listing.price);
+            item.put("rooms", listing.rooms);
+            item.put("district", listing.district);
+            item.put("description", "Синтетическое объявление " + listing.id + ", " + listing.rooms
+                    + " комн., " + listing.district);
+            item.putArray("images").add("https://img.idealista.test/" + listing.id + "/1.jpg");
+        }
+        return result;
+    }
+
+    // Apify принимает числа строками
+    private static Integer intField(JsonNode node) {
+        if (node == null || node.isMissingNode() || node.isNull() || node.asText().isEmpty()) {
+            return null;
+        }
+        return Integer.parseInt(node.asText());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package com.realestate.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Заглушка Telegram Bot API: /bot{token}/{method}
+ *
+ * Поддерживает то, чем пользуется бот: getUpdates (long polling с offset), sendMessage, sendPhoto,
+ * sendMediaGroup, editMessageText, answerCallbackQuery, deleteWebhook, getMe. Отправка сообщений
+ * ограничена {@link RateLimiter}; сверх лимита - 429 с retry_after, как у настоящего API.
+ *
+ * Драйвер кладёт апдейты через {@link #sendText} и {@link #sendCallback}. Задержка обработчика -
+ * время от постановки апдейта до первого запроса бота в этот чат (или ответа на этот callback),
+ * свежесть доставки - время от изменения объявления на рынке до сообщения со ссылкой на него.
+ */
+public class FakeTelegramServer {
+
+    private static final Set<String> SEND_METHODS = Set.of(
+            "sendmessage", "sendphoto", "sendmediagroup", "editmessagetext", "editmessagereplymarkup");
+
+    private static final Pattern LISTING_URL = Pattern.compile("/inmueble/(\\d+)");
+    private static final Pattern MEDIA_ITEM = Pattern.compile("\"type\"\\s*:\\s*\"photo\"");
+    private static final Pattern BOUNDARY = Pattern.compile("boundary=\"?([^\";]+)\"?");
+    private static final Pattern PART_NAME = Pattern.compile("name=\"([^\"]+)\"");
+
+    private static final int MAX_POLL_TIMEOUT_SECONDS = 50;
+
+    /**
+     * Состояние чата на стороне заглушки
+     */
+    private static final class Chat {
+        final AtomicInteger messageIds = new AtomicInteger();
+        // Запросы бота в чат (включая отклонённые лимитом) - по ним драйвер понимает, что бот ответил
+        int responses;
+        // Когда поставлен ещё не отвеченный апдейт (нс), 0 - ответ не ожидается
+        long pendingSince;
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String token;
+    private final RateLimiter rateLimiter;
+    private final SyntheticMarket market;
+    private final Metrics metrics;
+    private final HttpServer server;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition updatesAvailable = lock.newCondition();
+    private final Condition responded = lock.newCondition();
+    private final ArrayDeque<ObjectNode> updates = new ArrayDeque<>();
+    private final Map<Long, Chat> chats = new HashMap<>();
+    private final Map<String, Long> callbackChats = new HashMap<>();
+    private long nextUpdateId = 1;
+
+    private final CountDownLatch polling = new CountDownLatch(1);
+    private final Set<String> deliveredChanges = ConcurrentHashMap.newKeySet();
+    private final AtomicLong startedAt = new AtomicLong();
+    private final Map<Long, AtomicInteger> sentPerSecond = new ConcurrentHashMap<>();
+
+    public FakeTelegramServer(int port, String token, RateLimiter rateLimiter,
+                              SyntheticMarket market, Metrics metrics) throws IOException {
+        this.token = token;
+        this.rateLimiter = rateLimiter;
+        this.market = market;
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public void start() {
+        startedAt.set(System.currentTimeMillis());
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Дождаться, пока бот начнёт опрашивать getUpdates
+     */
+    public boolean awaitPolling(long timeout, TimeUnit unit) throws InterruptedException {
+        return polling.await(timeout, unit);
+    }
+
+    // ----- Сторона пользователя -----
+
+    /**
+     * Пользователь написал боту текст (команды - тоже текст, начинающийся с "/")
+     */
+    public void sendText(long chatId, String text) {
+        ObjectNode message = objectMapper.createObjectNode();
+        lock.lock();
+        try {
+            message.put("message_id", chat(chatId).messageIds.incrementAndGet());
+        } finally {
+            lock.unlock();
+        }
+        message.set("from", user(chatId));
+        message.set("chat", chatNode(chatId));
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.put("text", text);
+        if (text.startsWith("/")) {
+            int length = text.indexOf(' ') > 0 ? text.indexOf(' ') : text.length();
+            message.putArray("entities").addObject()
+                    .put("type", "bot_command").put("offset", 0).put("length", length);
+        }
+        enqueue(chatId, null, "message", message);
+    }
+
+    /**
+     * Пользователь нажал inline-кнопку под последним сообщением бота
+     */
+    public void sendCallback(long chatId, String data) {
+        ObjectNode message = objectMapper.createObjectNode();
+        lock.lock();
+        try {
+            message.put("message_id", Math.max(chat(chatId).messageIds.get(), 1));
+        } finally {
+            lock.unlock();
+        }
+        message.set("chat", chatNode(chatId));
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.put("text", "...");
+
+        ObjectNode callback = objectMapper.createObjectNode();
+        String callbackId = chatId + "-" + System.nanoTime();
+        callback.put("id", callbackId);
+        callback.set("from", user(chatId));
+        callback.set("message", message);
+        callback.put("chat_instance", String.valueOf(chatId));
+        callback.put("data", data);
+        enqueue(chatId, callbackId, "callback_query", callback);
+    }
+
+    /**
+     * Сколько раз бот обратился к чату
+     */
+    public int responses(long chatId) {
+        lock.lock();
+        try {
+            return chat(chatId).responses;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Дождаться, пока число обращений бота к чату станет больше заданного
+     *
+     * @return false по таймауту
+     */
+    public boolean awaitResponse(long chatId, int after, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            Chat chat = chat(chatId);
+            while (chat.responses <= after) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                responded.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(long chatId, String callbackId, String type, ObjectNode payload) {
+        lock.lock();
+        try {
+            ObjectNode update = objectMapper.createObjectNode();
+            update.put("update_id", nextUpdateId++);
+            update.set(type, payload);
+            updates.addLast(update);
+
+            Chat chat = chat(chatId);
+            if (chat.pendingSince == 0) {
+                chat.pendingSince = System.nanoTime();
+            }
+            if (callbackId != null) {
+                callbackChats.put(callbackId, chatId);
+            }
+            updatesAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        metrics.increment("telegram.updates");
+    }
+
+    private Chat chat(long chatId) {
+        return chats.computeIfAbsent(chatId, id -> new Chat());
+    }
+
+    private ObjectNode user(long chatId) {
+        ObjectNode user = objectMapper.createObjectNode();
+        user.put("id", chatId);
+        user.put("is_bot", false);
+        user.put("first_name", "Load" + chatId);
+        user.put("username", "load" + chatId);
+        user.put("language_code", "ru");
+        return user;
+    }
+
+    private ObjectNode chatNode(long chatId) {
+        ObjectNode chat = objectMapper.createObjectNode();
+        chat.put("id", chatId);
+        chat.put("type", "private");
+        return chat;
+    }
+
+    // ----- Сторона бота -----
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String prefix = "/bot" + token + "/";
+            if (!path.startsWith(prefix)) {
+                respond(exchange, 401, error(401, "Unauthorized", null));
+                return;
+            }
+            String method = path.substring(prefix.length()).toLowerCase(Locale.ROOT);
+            Map<String, String> params = readParams(exchange);
+
+            if ("getupdates".equals(method)) {
+                respond(exchange, 200, ok(getUpdates(params)));
+                return;
+            }
+
+            Long chatId = chatIdOf(params);
+            String payload = params.values().toString();
+            respondToChat(chatId, params.get("callback_query_id"));
+
+            if (SEND_METHODS.contains(method)) {
+                int cost = "sendmediagroup".equals(method) ? Math.max(1, count(MEDIA_ITEM, payload)) : 1;
+                int retryAfter = rateLimiter.acquire(chatId != null ? chatId : 0, cost);
+                if (retryAfter > 0) {
+                    metrics.increment("telegram.429");
+                    metrics.increment("telegram.429." + method);
+                    respond(exchange, 429, error(429, "Too Many Requests: retry after " + retryAfter, retryAfter));
+                    return;
+                }
+                recordSent(method, cost, payload, chatId);
+            } else {
+                metrics.increment("telegram.calls." + method);
+            }
+
+            respond(exchange, 200, ok(result(method, chatId, params)));
+        } catch (Exception e) {
+            metrics.increment("telegram.errors");
+        }
+    }
+
+    private JsonNode getUpdates(Map<String, String> params) throws InterruptedException {
+        polling.countDown();
+        long offset = params.containsKey("offset") ? Long.parseLong(params.get("offset")) : 0;
+        int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : 100;
+        int timeout = params.containsKey("timeout") ? Integer.parseInt(params.get("timeout")) : 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.min(timeout, MAX_POLL_TIMEOUT_SECONDS));
+
+        ArrayNode result = objectMapper.createArrayNode();
+        lock.lock();
+        try {
+            // Подтверждённые (update_id < offset) больше не отдаются
+            while (!updates.isEmpty() && updates.peekFirst().path("update_id").asLong() < offset) {
+                updates.pollFirst();
+            }
+            while (updates.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return result;
+                }
+                updatesAvailable.awaitNanos(remaining);
+            }
+            for (ObjectNode update : updates) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(update);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Бот обратился к чату: первая реакция на апдейт закрывает измерение задержки обработчика
+     */
+    private void respondToChat(Long chatId, String callbackQueryId) {
+        lock.lock();
+        try {
+            if (chatId == null && callbackQueryId != null) {
+                chatId = callbackChats.get(callbackQueryId);
+            }
+            if (callbackQueryId != null) {
+                callbackChats.remove(callbackQueryId);
+            }
+            if (chatId == null) {
+                return;
+            }
+            Chat chat = chat(chatId);
+            if (chat.pendingSince != 0) {
+                metrics.distribution("handler.latency")
+                        .record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chat.pendingSince));
+                chat.pendingSince = 0;
+            }
+            chat.responses++;
+            responded.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordSent(String method, int cost, String payload, Long chatId) {
+        metrics.add("telegram.sent", cost);
+        metrics.add("telegram.sent." + method, cost);
+        long second = (System.currentTimeMillis() - startedAt.get()) / 1000;
+        sentPerSecond.computeIfAbsent(second, s -> new AtomicInteger()).addAndGet(cost);
+
+        // Свежесть: от изменения объявления на рынке до первого сообщения о нём в этот чат
+        long now = System.currentTimeMillis();
+        Matcher matcher = LISTING_URL.matcher(payload);
+        while (matcher.find()) {
+            long id = Long.parseLong(matcher.group(1));
+            long changedAt = market.changedAt(id);
+            if (changedAt > 0 && deliveredChanges.add(chatId + ":" + id + ":" + changedAt)) {
+                metrics.distribution("delivery.freshness").record(now - changedAt);
+            }
+        }
+    }
+
+    /**
+     * Отправок в секунду: пик по секундам теста
+     */
+    public int peakSentPerSecond() {
+        return sentPerSecond.values().stream().mapToInt(AtomicInteger::get).max().orElse(0);
+    }
+
+    private JsonNode result(String method, Long chatId, Map<String, String> params) {
+        return switch (method) {
+            case "getme" -> objectMapper.createObjectNode()
+                    .put("id", 1).put("is_bot", true).put("first_name", "LoadTestBot").put("username", "LoadTestBot");
+            case "sendmessage", "sendphoto", "editmessagetext" -> botMessage(chatId, params);
+            case "sendmediagroup" -> {
+                ArrayNode messages = objectMapper.createArrayNode();
+                int items = Math.max(1, count(MEDIA_ITEM, params.getOrDefault("media", "")));
+                for (int i = 0; i < items; i++) {
+                    messages.add(botMessage(chatId, Map.of()));
+                }
+                yield messages;
+            }
+            default -> objectMapper.getNodeFactory().booleanNode(true);
+        };
+    }
+
+    private ObjectNode botMessage(Long chatId, Map<String, String> params) {
+        long id = chatId != null ? chatId : 0;
+        ObjectNode message = objectMapper.createObjectNode();
+        lock.lock();
+        try {
+            message.put("message_id", params.containsKey("message_id")
+                    ? Integer.parseInt(params.get("message_id"))
+                    : chat(id).messageIds.incrementAndGet());
+        } finally {
+            lock.unlock();
+        }
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.set("chat", chatNode(id));
+        if (params.containsKey("text")) {
+            message.put("text", params.get("text"));
+        }
+        return message;
+    }
+
+    private Long chatIdOf(Map<String, String> params) {
+        String chatId = params.get("chat_id");
+        return chatId != null && !chatId.isEmpty() ? Long.parseLong(chatId) : null;
+    }
+
+    /**
+     * Параметры запроса: библиотека бота шлёт JSON, а методы с файлами - multipart
+     */
+    private Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        byte[] bytes = exchange.getRequestBody().readAllBytes();
+        Map<String, String> params = new HashMap<>();
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (bytes.length == 0 || contentType == null) {
+            return params;
+        }
+
+        String body = new String(bytes, StandardCharsets.UTF_8);
+        if (contentType.startsWith("application/json")) {
+            objectMapper.readTree(body).fields().forEachRemaining(field -> params.put(field.getKey(),
+                    field.getValue().isValueNode() ? field.getValue().asText() : field.getValue().toString()));
+        } else if (contentType.startsWith("multipart/form-data")) {
+            Matcher boundary = BOUNDARY.matcher(contentType);
+            if (boundary.find()) {
+                for (String part : body.split("--" + Pattern.quote(boundary.group(1)))) {
+                    int headerEnd = part.indexOf("\r\n\r\n");
+                    Matcher name = PART_NAME.matcher(part);
+                    if (headerEnd > 0 && name.find() && name.start() < headerEnd) {
+                        params.put(name.group(1), part.substring(headerEnd + 4).stripTrailing());
+                    }
+                }
+            }
+        }
+        return params;
+    }
+
+    private static int count(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    private String ok(JsonNode result) throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("ok", true);
+        response.set("result", result);
+        return objectMapper.writeValueAsString(response);
+    }
+
+    private String error(int code, String description, Integer retryAfter) throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("ok", false);
+        response.put("error_code", code);
+        response.put("description", description);
+        if (retryAfter != null) {
+            response.putObject("parameters").put("retry_after", retryAfter);
+        }
+        return objectMapper.writeValueAsString(response);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.realestate.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест бота целиком: заглушки Telegram и Apify на localhost и тысячи виртуальных пользователей
+ *
+ * Пользователи стартуют равномерно за ramp-up, создают поиск, часть из них позже редактирует его.
+ * Всё время теста рынок в заглушке Apify меняется, и бот находит новые объявления своими проверками.
+ * В конце печатается и сохраняется в report.json: задержка обработчика (p50/p95/p99), пропускная
+ * способность отправки и количество 429, длительность цикла проверок, свежесть доставки.
+ */
+public class LoadTest {
+
+    private static final long FIRST_CHAT_ID = 900_000_000L;
+    private static final long PROGRESS_INTERVAL_SECONDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        Metrics metrics = new Metrics();
+        SyntheticMarket market = new SyntheticMarket(config.listings());
+        RateLimiter rateLimiter = new RateLimiter(config.globalRate(), config.chatRate(), config.chatBurst());
+
+        FakeTelegramServer telegram = new FakeTelegramServer(
+                config.telegramPort(), config.token(), rateLimiter, market, metrics);
+        FakeApifyServer apify = new FakeApifyServer(config.apifyPort(), market, metrics, config.apifyLatency());
+        telegram.start();
+        apify.start();
+        System.out.printf("Fake Telegram Bot API: http://127.0.0.1:%d/bot, fake Apify: http://127.0.0.1:%d/v2%n",
+                config.telegramPort(), config.apifyPort());
+
+        ScheduledExecutorService timers = Executors.newScheduledThreadPool(1);
+        timers.scheduleAtFixedRate(() -> market.tick(1.0, config.newPerMinute(), config.dropsPerMinute()),
+                1, 1, TimeUnit.SECONDS);
+
+        BotProcess bot = config.botJar() != null ? BotProcess.start(config) : null;
+        try {
+            if (!telegram.awaitPolling(3, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Bot did not start polling getUpdates. Start it with "
+                        + "TELEGRAM_API_URL=http://127.0.0.1:" + config.telegramPort() + "/bot and "
+                        + "APIFY_BASE_URL=http://127.0.0.1:" + config.apifyPort() + "/v2 or pass --bot-jar");
+            }
+
+            long startedAt = System.currentTimeMillis();
+            AtomicLong lastCreatedAt = new AtomicLong();
+            timers.scheduleAtFixedRate(() -> printProgress(startedAt, metrics, market),
+                    PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+            runUsers(config, telegram, metrics, startedAt, lastCreatedAt);
+
+            long finishedAt = System.currentTimeMillis();
+            Map<String, Object> report = report(config, metrics, telegram, apify,
+                    startedAt, finishedAt, lastCreatedAt.get());
+            writeReport(config.reportDir(), report);
+        } finally {
+            timers.shutdownNow();
+            if (bot != null) {
+                bot.close();
+            }
+            telegram.stop();
+            apify.stop();
+        }
+    }
+
+    private static void runUsers(LoadTestConfig config, FakeTelegramServer telegram, Metrics metrics,
+                                 long startedAt, AtomicLong lastCreatedAt) throws InterruptedException {
+        long rampUpMillis = config.rampUp().toMillis();
+        long endAt = startedAt + rampUpMillis + config.duration().toMillis();
+
+        ExecutorService users = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < config.users(); i++) {
+            long chatId = FIRST_CHAT_ID + i;
+            long startAt = startedAt + rampUpMillis * i / Math.max(config.users(), 1);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long editAt = random.nextDouble() < config.editShare()
+                    ? startedAt + rampUpMillis + random.nextLong(Math.max(config.duration().toMillis() / 2, 1))
+                    : 0;
+            VirtualUser user = new VirtualUser(chatId, telegram, metrics, config, editAt,
+                    () -> lastCreatedAt.accumulateAndGet(System.currentTimeMillis(), Math::max));
+            users.execute(() -> {
+                try {
+                    Thread.sleep(Math.max(0, startAt - System.currentTimeMillis()));
+                    user.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        users.shutdown();
+        if (!users.awaitTermination(Math.max(0, endAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+            // Пользователи, не дождавшиеся ответа к концу теста, прерываются
+            users.shutdownNow();
+        }
+        // Остаток времени бот работает по расписанию: проверки и доставка без действий пользователей
+        Thread.sleep(Math.max(0, endAt - System.currentTimeMillis()));
+    }
+
+    private static void printProgress(long startedAt, Metrics metrics, SyntheticMarket market) {
+        System.out.printf("[%4ds] searches=%d updates=%d sent=%d 429=%d apify=%d timeouts=%d market=%d handler %s%n",
+                (System.currentTimeMillis() - startedAt) / 1000,
+                metrics.count("user.searches_created"),
+                metrics.count("telegram.updates"),
+                metrics.count("telegram.sent"),
+                metrics.count("telegram.429"),
+                metrics.count("apify.requests"),
+                metrics.count("user.reply_timeouts"),
+                market.size(),
+                metrics.distribution("handler.latency").summary());
+    }
+
+    private static Map<String, Object> report(LoadTestConfig config, Metrics metrics, FakeTelegramServer telegram,
+                                              FakeApifyServer apify, long startedAt, long finishedAt,
+                                              long lastCreatedAt) {
+        double seconds = Math.max((finishedAt - startedAt) / 1000.0, 1);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config.toString());
+        report.put("durationSeconds", Math.round(seconds));
+        report.put("distributions", metrics.distributions());
+        report.put("counters", metrics.counters());
+        report.put("peaks", metrics.peaks());
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("sentPerSecondAvg", Math.round(metrics.count("telegram.sent") / seconds * 10) / 10.0);
+        throughput.put("sentPerSecondPeak", telegram.peakSentPerSecond());
+        throughput.put("rateLimitedPerSecondAvg", Math.round(metrics.count("telegram.429") / seconds * 10) / 10.0);
+        report.put("throughput", throughput);
+
+        long searches = metrics.count("user.searches_created");
+        report.put("checkCycles", checkCycles(apify.completedAt(), lastCreatedAt, searches));
+
+        System.out.println();
+        System.out.println("===== Load test report =====");
+        System.out.printf("Users: %d, searches created: %d, edited: %d, reply timeouts: %d%n",
+                config.users(), searches, metrics.count("user.searches_edited"), metrics.count("user.reply_timeouts"));
+        metrics.distributions().forEach((name, summary) -> System.out.printf("%-28s %s%n", name, summary));
+        System.out.printf("Telegram sends: %d (avg %.1f/s, peak %d/s), 429: %d%n",
+                metrics.count("telegram.sent"), metrics.count("telegram.sent") / seconds,
+                telegram.peakSentPerSecond(), metrics.count("telegram.429"));
+        System.out.printf("Check cycles (%d searches per cycle): %s%n", searches, report.get("checkCycles"));
+        return report;
+    }
+
+    /**
+     * Длительность циклов проверок после создания всех поисков
+     *
+     * Каждый запрос к Apify - проверка одного поиска, поэтому цикл - это время, за которое заглушка
+     * обслужила столько запросов, сколько создано поисков. Считаются только полные циклы.
+     */
+    static List<Long> checkCycles(List<Long> completedAt, long steadyFrom, long searches) {
+        List<Long> cycles = new ArrayList<>();
+        if (searches <= 0 || steadyFrom <= 0) {
+            return cycles;
+        }
+        List<Long> steady = completedAt.stream().filter(at -> at > steadyFrom).toList();
+        for (int start = 0; start + searches <= steady.size(); start += (int) searches) {
+            cycles.add(steady.get(start + (int) searches - 1) - (start == 0 ? steadyFrom : steady.get(start - 1)));
+        }
+        return cycles;
+    }
+
+    private static void writeReport(Path reportDir, Map<String, Object> report) throws Exception {
+        Files.createDirectories(reportDir);
+        Path file = reportDir.resolve("report.json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+        System.out.println("Report: " + file.toAbsolutePath());
+    }
+}
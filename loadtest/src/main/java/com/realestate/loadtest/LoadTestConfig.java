@@ -0,0 +1,112 @@
+package com.realestate.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного теста (аргументы вида --name=value)
+ *
+ * @param users количество виртуальных пользователей
+ * @param rampUp за какое время стартуют все пользователи
+ * @param duration длительность теста после разгона
+ * @param editShare доля пользователей, которые редактируют поиск после создания
+ * @param thinkTime пауза пользователя между действиями (случайная, до этого значения)
+ * @param replyTimeout сколько пользователь ждёт ответа бота
+ * @param telegramPort порт заглушки Telegram Bot API
+ * @param apifyPort порт заглушки Apify
+ * @param token токен бота (заглушка принимает любой, но бот и драйвер должны совпадать)
+ * @param globalRate лимит сообщений бота в секунду на все чаты
+ * @param chatRate лимит сообщений в секунду в один чат
+ * @param chatBurst сколько сообщений подряд можно отправить в чат без ожидания
+ * @param listings начальный размер синтетического рынка
+ * @param newPerMinute сколько новых объявлений публикуется в минуту
+ * @param dropsPerMinute сколько объявлений дешевеет в минуту
+ * @param apifyLatency время выполнения run-sync (среднее)
+ * @param botJar jar бота для запуска дочерним процессом (null - бот запущен отдельно)
+ * @param reportDir каталог для отчёта и лога бота
+ */
+public record LoadTestConfig(
+        int users,
+        Duration rampUp,
+        Duration duration,
+        double editShare,
+        Duration thinkTime,
+        Duration replyTimeout,
+        int telegramPort,
+        int apifyPort,
+        String token,
+        int globalRate,
+        double chatRate,
+        int chatBurst,
+        int listings,
+        int newPerMinute,
+        int dropsPerMinute,
+        Duration apifyLatency,
+        Path botJar,
+        Path reportDir
+) {
+
+    /**
+     * Разобрать аргументы командной строки
+     */
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Ожидается --name=value: " + arg);
+            }
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        // Разобранные параметры удаляются: всё, что осталось, - опечатки
+        LoadTestConfig config = new LoadTestConfig(
+                Integer.parseInt(take(values, "users", "1000")),
+                duration(take(values, "ramp-up", "2m")),
+                duration(take(values, "duration", "10m")),
+                Double.parseDouble(take(values, "edit-share", "0.3")),
+                duration(take(values, "think-time", "2s")),
+                duration(take(values, "reply-timeout", "60s")),
+                Integer.parseInt(take(values, "telegram-port", "8081")),
+                Integer.parseInt(take(values, "apify-port", "8082")),
+                take(values, "token", "123456:LOADTEST"),
+                Integer.parseInt(take(values, "global-rate", "30")),
+                Double.parseDouble(take(values, "chat-rate", "1")),
+                Integer.parseInt(take(values, "chat-burst", "3")),
+                Integer.parseInt(take(values, "listings", "20000")),
+                Integer.parseInt(take(values, "new-per-minute", "30")),
+                Integer.parseInt(take(values, "drops-per-minute", "10")),
+                duration(take(values, "apify-latency", "1500ms")),
+                values.containsKey("bot-jar") ? Path.of(values.remove("bot-jar")) : null,
+                Path.of(take(values, "report-dir", "build/reports/loadtest"))
+        );
+
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Неизвестные параметры: " + values.keySet());
+        }
+        return config;
+    }
+
+    private static String take(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Длительность в формате 500ms, 30s, 10m, 1h
+     */
+    static Duration duration(String text) {
+        if (text.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        long amount = Long.parseLong(text.substring(0, text.length() - 1));
+        return switch (text.charAt(text.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Неверная длительность: " + text);
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package com.realestate.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики нагрузочного теста: распределения задержек и счётчики
+ *
+ * Значения задержек хранятся целиком (тест идёт минуты, это сотни тысяч чисел),
+ * поэтому перцентили точные, а не оценки гистограммы.
+ */
+public class Metrics {
+
+    /**
+     * Распределение значений (мс)
+     */
+    public static final class Distribution {
+        private long[] values = new long[1024];
+        private int size;
+
+        public synchronized void record(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        public synchronized Summary summary() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return new Summary(size,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                    size > 0 ? sorted[size - 1] : 0);
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)];
+        }
+    }
+
+    /**
+     * Сводка распределения
+     */
+    public record Summary(int count, long p50, long p95, long p99, long max) {
+
+        @Override
+        public String toString() {
+            return String.format("n=%d p50=%dms p95=%dms p99=%dms max=%dms", count, p50, p95, p99, max);
+        }
+    }
+
+    private final Map<String, Distribution> distributions = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    // Пиковые значения (например, одновременных запросов к Apify)
+    private final Map<String, AtomicLong> peaks = new ConcurrentHashMap<>();
+
+    public Distribution distribution(String name) {
+        return distributions.computeIfAbsent(name, n -> new Distribution());
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(delta);
+    }
+
+    public long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    public void peak(String name, long value) {
+        peaks.computeIfAbsent(name, n -> new AtomicLong()).accumulateAndGet(value, Math::max);
+    }
+
+    public Map<String, Summary> distributions() {
+        Map<String, Summary> result = new TreeMap<>();
+        distributions.forEach((name, distribution) -> result.put(name, distribution.summary()));
+        return result;
+    }
+
+    public Map<String, Long> counters() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        return result;
+    }
+
+    public Map<String, Long> peaks() {
+        Map<String, Long> result = new TreeMap<>();
+        peaks.forEach((name, peak) -> result.put(name, peak.get()));
+        return result;
+    }
+}
@@ -0,0 +1,80 @@
+package com.realestate.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Лимиты Bot API на отправку сообщений: общий на бота и на каждый чат (token bucket)
+ *
+ * Как и настоящий Telegram, при превышении не ставит запрос в очередь, а отказывает
+ * с указанием, через сколько секунд можно повторить (retry_after).
+ */
+public class RateLimiter {
+
+    private static final class Bucket {
+        private final double rate;
+        private final double capacity;
+        private double tokens;
+        private long updatedAt;
+
+        Bucket(double rate, double capacity, long now) {
+            this.rate = rate;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.updatedAt = now;
+        }
+
+        void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * rate / 1000);
+            updatedAt = now;
+        }
+
+        // Сколько мс ждать, пока наберётся cost токенов
+        long waitMillis(double cost) {
+            return tokens >= cost ? 0 : (long) Math.ceil((cost - tokens) * 1000 / rate);
+        }
+    }
+
+    private final double chatRate;
+    private final double chatBurst;
+    private final Bucket global;
+    private final Map<Long, Bucket> chats = new HashMap<>();
+
+    /**
+     * @param globalRate сообщений в секунду на бота (запас тоже на секунду)
+     * @param chatRate сообщений в секунду в один чат
+     * @param chatBurst запас сообщений в чат
+     */
+    public RateLimiter(int globalRate, double chatRate, int chatBurst) {
+        long now = System.currentTimeMillis();
+        this.global = new Bucket(globalRate, globalRate, now);
+        this.chatRate = chatRate;
+        this.chatBurst = chatBurst;
+    }
+
+    /**
+     * Попытаться отправить сообщение
+     *
+     * @param chatId чат
+     * @param cost сколько сообщений (альбом считается по числу фотографий)
+     * @return 0 если разрешено, иначе retry_after в секундах
+     */
+    public synchronized int acquire(long chatId, int cost) {
+        long now = System.currentTimeMillis();
+        Bucket chat = chats.computeIfAbsent(chatId, id -> new Bucket(chatRate, chatBurst, now));
+        global.refill(now);
+        chat.refill(now);
+
+        // Альбом больше запаса чата разрешается на полном запасе, иначе он не уйдёт никогда
+        double chatCost = Math.min(cost, chatBurst);
+        double globalCost = Math.min(cost, global.capacity);
+        long wait = Math.max(global.waitMillis(globalCost), chat.waitMillis(chatCost));
+        if (wait > 0) {
+            return (int) Math.max(1, Math.ceil(wait / 1000.0));
+        }
+
+        global.tokens -= globalCost;
+        chat.tokens -= chatCost;
+        return 0;
+    }
+}
@@ -0,0 +1,140 @@
+package com.realestate.loadtest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Синтетический рынок аренды для заглушки Apify
+ *
+ * Рынок живёт во времени: раз в секунду публикуются новые объявления, часть дешевеет, часть снимается.
+ * Время публикации и снижения цены запоминается, чтобы по сообщениям бота измерить задержку
+ * от появления объявления до доставки пользователю.
+ */
+public class SyntheticMarket {
+
+    /**
+     * Районы из каталога бота (KeyboardFactory.DISTRICTS)
+     */
+    public static final List<String> DISTRICTS = List.of(
+            "Ciutat Vella", "Ruzafa", "El Pla del Real",
+            "Benimaclet", "Algirós", "Campanar",
+            "L'Eixample", "Extramurs", "Poblats Marítims"
+    );
+
+    private static final long FIRST_ID = 100_000_000L;
+
+    /**
+     * Объявление рынка; цена и время изменения меняются под блокировкой рынка
+     */
+    static final class Listing {
+        final long id;
+        final String district;
+        final int rooms;
+        final long publishedAt;
+        int price;
+        long changedAt;
+
+        Listing(long id, String district, int rooms, int price, long publishedAt) {
+            this.id = id;
+            this.district = district;
+            this.rooms = rooms;
+            this.price = price;
+            this.publishedAt = publishedAt;
+            this.changedAt = publishedAt;
+        }
+    }
+
+    private final List<Listing> active = new ArrayList<>();
+
+    // Время последнего изменения (публикации или снижения цены) по ID, включая снятые объявления
+    private final Map<Long, Long> changedAt = new ConcurrentHashMap<>();
+
+    private long nextId = FIRST_ID;
+    private double newCarry;
+    private double dropCarry;
+
+    /**
+     * Создать рынок с начальным количеством объявлений (опубликованных "давно")
+     */
+    public SyntheticMarket(int initialListings) {
+        for (int i = 0; i < initialListings; i++) {
+            publish(0);
+        }
+    }
+
+    /**
+     * Прожить интервал: новые публикации, снижения цен и снятия пропорционально заданной интенсивности
+     *
+     * @param seconds длина интервала
+     * @param newPerMinute новых объявлений в минуту
+     * @param dropsPerMinute снижений цены в минуту
+     */
+    public synchronized void tick(double seconds, int newPerMinute, int dropsPerMinute) {
+        long now = System.currentTimeMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        newCarry += newPerMinute * seconds / 60;
+        for (; newCarry >= 1; newCarry--) {
+            publish(now);
+            // Рынок не растёт бесконечно: одно старое объявление снимается
+            active.remove(random.nextInt(active.size() / 2 + 1));
+        }
+
+        dropCarry += dropsPerMinute * seconds / 60;
+        for (; dropCarry >= 1 && !active.isEmpty(); dropCarry--) {
+            Listing listing = active.get(random.nextInt(active.size()));
+            listing.price = Math.max(300, listing.price - 25 * (1 + random.nextInt(8)));
+            listing.changedAt = now;
+            changedAt.put(listing.id, now);
+        }
+    }
+
+    private void publish(long now) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int rooms = 1 + Math.min(random.nextInt(5), random.nextInt(5));
+        int price = 450 + rooms * 250 + 50 * random.nextInt(20);
+        Listing listing = new Listing(nextId++, DISTRICTS.get(random.nextInt(DISTRICTS.size())), rooms, price, now);
+        active.add(listing);
+        changedAt.put(listing.id, now);
+    }
+
+    /**
+     * Выдача скрапера: подходящие объявления, самые свежие первыми
+     *
+     * @param minPrice минимальная цена (null - без ограничения)
+     * @param maxPrice максимальная цена (null - без ограничения)
+     * @param rooms количество комнат (null - любое; 5 - "5 и больше")
+     * @param maxItems размер выдачи
+     */
+    public synchronized List<Listing> query(Integer minPrice, Integer maxPrice, Integer rooms, int maxItems) {
+        return active.stream()
+                .filter(listing -> minPrice == null || listing.price >= minPrice)
+                .filter(listing -> maxPrice == null || listing.price <= maxPrice)
+                .filter(listing -> rooms == null || (rooms >= 5 ? listing.rooms >= 5 : listing.rooms == rooms))
+                .sorted(Comparator.comparingLong((Listing listing) -> listing.changedAt).reversed())
+                .limit(maxItems)
+                .map(SyntheticMarket::copy)
+                .toList();
+    }
+
+    private static Listing copy(Listing listing) {
+        Listing copy = new Listing(listing.id, listing.district, listing.rooms, listing.price, listing.publishedAt);
+        copy.changedAt = listing.changedAt;
+        return copy;
+    }
+
+    /**
+     * Время последнего изменения объявления (мс) или 0, если оно было на рынке с начала теста
+     */
+    public long changedAt(long id) {
+        return changedAt.getOrDefault(id, 0L);
+    }
+
+    public synchronized int size() {
+        return active.size();
+    }
+}
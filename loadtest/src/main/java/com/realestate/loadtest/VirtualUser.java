@@ -0,0 +1,120 @@
+package com.realestate.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Виртуальный пользователь: проходит диалог создания поиска и, возможно, редактирует его
+ *
+ * Действия повторяют кнопки и ввод настоящего пользователя (callback data из KeyboardFactory
+ * и CallbackQueryHandler). После каждого действия, на которое бот отвечает, пользователь ждёт ответа -
+ * как человек, который не нажимает следующую кнопку, пока не увидел предыдущий ответ.
+ */
+public class VirtualUser implements Runnable {
+
+    private final long chatId;
+    private final FakeTelegramServer telegram;
+    private final Metrics metrics;
+    private final long thinkTimeMillis;
+    private final long replyTimeoutMillis;
+    private final long editAt;
+    private final Runnable onCreated;
+
+    /**
+     * @param chatId ID чата (он же Telegram ID пользователя)
+     * @param editAt когда отредактировать поиск (мс, 0 - не редактировать)
+     * @param onCreated вызывается после создания поиска
+     */
+    public VirtualUser(long chatId, FakeTelegramServer telegram, Metrics metrics, LoadTestConfig config,
+                       long editAt, Runnable onCreated) {
+        this.chatId = chatId;
+        this.telegram = telegram;
+        this.metrics = metrics;
+        this.thinkTimeMillis = config.thinkTime().toMillis();
+        this.replyTimeoutMillis = config.replyTimeout().toMillis();
+        this.editAt = editAt;
+        this.onCreated = onCreated;
+    }
+
+    @Override
+    public void run() {
+        try {
+            long started = System.currentTimeMillis();
+            createSearch();
+            metrics.distribution("user.create_search").record(System.currentTimeMillis() - started);
+            metrics.increment("user.searches_created");
+            onCreated.run();
+
+            if (editAt > 0) {
+                Thread.sleep(Math.max(0, editAt - System.currentTimeMillis()));
+                started = System.currentTimeMillis();
+                editSearch();
+                metrics.distribution("user.edit_search").record(System.currentTimeMillis() - started);
+                metrics.increment("user.searches_edited");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void createSearch() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int minPrice = 500 + 100 * random.nextInt(8);
+
+        text("/start");
+        callback("CREATE_SEARCH");
+        text(String.valueOf(minPrice));
+        text(String.valueOf(minPrice + 400 + 100 * random.nextInt(12)));
+        callback("SET_ROOMS:" + (1 + random.nextInt(5)));
+
+        if (random.nextInt(3) == 0) {
+            callback("DISTRICTS_ALL");
+        } else {
+            // Переключение района бот подтверждает только ответом на callback
+            for (String district : pickDistricts(1 + random.nextInt(3))) {
+                callback("TOGGLE_DISTRICT:" + district);
+            }
+        }
+        // Создание поиска сразу проверяет его (запрос к Apify) и отправляет найденное
+        callback("DISTRICTS_DONE");
+    }
+
+    private void editSearch() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        callback("EDIT_SEARCH");
+        if (random.nextBoolean()) {
+            callback("EDIT_ROOMS");
+            callback("EDIT_SET_ROOMS:" + (1 + random.nextInt(5)));
+        } else {
+            int minPrice = 500 + 100 * random.nextInt(8);
+            callback("EDIT_PRICE");
+            text(String.valueOf(minPrice));
+            text(String.valueOf(minPrice + 400 + 100 * random.nextInt(12)));
+        }
+    }
+
+    private List<String> pickDistricts(int count) {
+        List<String> districts = new ArrayList<>(SyntheticMarket.DISTRICTS);
+        Collections.shuffle(districts);
+        return districts.subList(0, count);
+    }
+
+    private void text(String text) throws InterruptedException {
+        act(() -> telegram.sendText(chatId, text));
+    }
+
+    private void callback(String data) throws InterruptedException {
+        act(() -> telegram.sendCallback(chatId, data));
+    }
+
+    private void act(Runnable action) throws InterruptedException {
+        Thread.sleep(ThreadLocalRandom.current().nextLong(thinkTimeMillis / 2, thinkTimeMillis + 1));
+        int before = telegram.responses(chatId);
+        action.run();
+        if (!telegram.awaitResponse(chatId, before, replyTimeoutMillis)) {
+            metrics.increment("user.reply_timeouts");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.realestate.bot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.realestate.bot.model.dto.ListingDto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ответа Apify: JSON целиком (parseResponse) и только преобразование элементов (mapToListingDto)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ApifyParseBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private ApifyService apifyService;
+    private String response;
+    private JsonNode items;
+
+    @Setup
+    public void setUp() throws Exception {
+        apifyService = BenchmarkFixtures.apifyService();
+        response = BenchmarkFixtures.apifyResponse(size);
+        items = BenchmarkFixtures.OBJECT_MAPPER.readTree(response).get("items");
+    }
+
+    @Benchmark
+    public List<ListingDto> parseResponse() throws Exception {
+        return apifyService.parseResponse(response);
+    }
+
+    @Benchmark
+    public void mapToListingDto(Blackhole blackhole) {
+        for (JsonNode item : items) {
+            blackhole.consume(apifyService.mapToListingDto(item));
+        }
+    }
+}
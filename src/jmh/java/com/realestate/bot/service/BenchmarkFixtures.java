@@ -0,0 +1,79 @@
+package com.realestate.bot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.realestate.bot.config.ApifyConfig;
+import com.realestate.bot.config.SchedulerConfig;
+import com.realestate.bot.model.dto.ListingDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Данные для бенчмарков: ответ Apify нужного размера на основе записанного ответа run-sync
+ *
+ * Объявления записанного ответа повторяются по кругу с уникальными propertyCode/URL
+ * и немного разными ценами, поэтому размер и структура ответа близки к реальным.
+ */
+final class BenchmarkFixtures {
+
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String SAMPLE = "/apify/run-sync-sample.json";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Ответ Apify с size объявлениями
+     */
+    static String apifyResponse(int size) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream(SAMPLE)) {
+            ObjectNode root = (ObjectNode) OBJECT_MAPPER.readTree(in);
+            JsonNode sampleItems = root.get("items");
+            ArrayNode items = OBJECT_MAPPER.createArrayNode();
+            for (int i = 0; i < size; i++) {
+                ObjectNode item = sampleItems.get(i % sampleItems.size()).deepCopy();
+                String propertyCode = String.valueOf(100_000_000L + i);
+                item.put("propertyCode", propertyCode);
+                item.put("url", "https://www.idealista.com/inmueble/" + propertyCode + "/");
+                item.put("price", item.get("price").asInt() + (i % 50) * 10);
+                items.add(item);
+            }
+            root.set("items", items);
+            return OBJECT_MAPPER.writeValueAsString(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Объявления, разобранные из ответа Apify с size объявлениями
+     */
+    static List<ListingDto> listings(int size) {
+        try {
+            return apifyService().parseResponse(apifyResponse(size));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot parse benchmark fixture", e);
+        }
+    }
+
+    static DistrictMatcher districtMatcher() {
+        return new DistrictMatcher(new GeoDistrictIndex(OBJECT_MAPPER));
+    }
+
+    /**
+     * ApifyService без HTTP-клиента и защиты вызовов: для разбора ответа и фильтрации они не нужны
+     */
+    static ApifyService apifyService() {
+        ApifyConfig apifyConfig = new ApifyConfig();
+        return new ApifyService(apifyConfig, new SchedulerConfig(), OBJECT_MAPPER, null, districtMatcher(),
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP, null, null, new ScrapeCache(apifyConfig));
+    }
+}
@@ -0,0 +1,51 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.ListingChangesConfig;
+import com.realestate.bot.model.dto.ListingDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фильтр дедупликации из getNewListings: половина выдачи уже отправлена
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DedupFilterBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private List<ListingDto> listings;
+    private SentHistory sent;
+    private ListingStateStore stateStore;
+
+    @Setup
+    public void setUp() {
+        listings = BenchmarkFixtures.listings(size);
+        stateStore = new ListingStateStore(new ListingChangesConfig());
+        stateStore.observe(listings);
+        long now = System.currentTimeMillis();
+
+        // Отправлено каждое второе объявление по текущей цене и недавно было в выдаче;
+        // ID отсортированы, как их возвращает репозиторий
+        List<ListingDto> sentListings = listings.stream()
+                .filter(listing -> listing.getIdealistaId() % 2 == 0)
+                .sorted(Comparator.comparingLong(ListingDto::getIdealistaId))
+                .toList();
+        long[] sentIds = sentListings.stream().mapToLong(ListingDto::getIdealistaId).toArray();
+        int[] prices = sentListings.stream().mapToInt(listing -> listing.getPrice() != null ? listing.getPrice() : -1).toArray();
+        long[] seenAt = new long[sentIds.length];
+        Arrays.fill(seenAt, now - 15 * 60_000L);
+        sent = new SentHistory(sentIds, prices, seenAt);
+    }
+
+    @Benchmark
+    public List<ListingDto> filterNewOrChanged() {
+        return ListingService.filterNewOrChanged(listings, sent, stateStore);
+    }
+}
@@ -0,0 +1,35 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.model.dto.ListingDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фильтрация выдачи по выбранным районам (текстовые названия и координаты)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DistrictFilterBenchmark {
+
+    private static final List<String> SELECTED = List.of("Ruzafa", "Ciutat Vella", "Poblats Marítims");
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private ApifyService apifyService;
+    private List<ListingDto> listings;
+
+    @Setup
+    public void setUp() {
+        apifyService = BenchmarkFixtures.apifyService();
+        listings = BenchmarkFixtures.listings(size);
+    }
+
+    @Benchmark
+    public List<ListingDto> filterByDistricts() {
+        return apifyService.filterByDistricts(listings, SELECTED);
+    }
+}
@@ -0,0 +1,37 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.model.dto.ListingDto;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Форматирование текста сообщения об объявлении для Telegram
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FormatListingBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private TelegramService telegramService;
+    private List<ListingDto> listings;
+
+    @Setup
+    public void setUp() {
+        telegramService = new TelegramService(ObservationRegistry.NOOP);
+        listings = BenchmarkFixtures.listings(size);
+    }
+
+    @Benchmark
+    public void formatListingMessage(Blackhole blackhole) {
+        for (ListingDto listing : listings) {
+            blackhole.consume(telegramService.formatListingMessage(listing));
+        }
+    }
+}
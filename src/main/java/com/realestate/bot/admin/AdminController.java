@@ -0,0 +1,152 @@
+package com.realestate.bot.admin;
+
+import com.realestate.bot.model.dto.PipelineStatusDto;
+import com.realestate.bot.service.ApifyService;
+import com.realestate.bot.service.CheckQueue;
+import com.realestate.bot.service.ClusterCoordinator;
+import com.realestate.bot.service.ClusterMembership;
+import com.realestate.bot.service.DeliveryScheduler;
+import com.realestate.bot.service.DigestCache;
+import com.realestate.bot.service.ListingStateStore;
+import com.realestate.bot.service.NearDuplicateDetector;
+import com.realestate.bot.service.PipelineControl;
+import com.realestate.bot.service.SchedulerService;
+import com.realestate.bot.service.ScrapeCache;
+import com.realestate.bot.service.SearchIndex;
+import com.realestate.bot.service.TelegramService;
+import com.realestate.bot.service.UserService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Админское HTTP API: состояние конвейера, ручные проверки, пауза скрапинга и отправки
+ *
+ * Все действия только меняют очереди и флаги и сразу отвечают (202 для проверок):
+ * проверки выполняет планировщик в своём потоке, запросы к API его не блокируют.
+ * Доступ - по токену в заголовке (см. {@link AdminTokenInterceptor}).
+ */
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final SchedulerService schedulerService;
+    private final UserService userService;
+    private final PipelineControl pipelineControl;
+    private final ClusterCoordinator clusterCoordinator;
+    private final ClusterMembership clusterMembership;
+    private final CheckQueue checkQueue;
+    private final DeliveryScheduler deliveryScheduler;
+    private final ApifyService apifyService;
+    private final TelegramService telegramService;
+    private final DigestCache digestCache;
+    private final ListingStateStore listingStateStore;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    private final SearchIndex searchIndex;
+    private final ScrapeCache scrapeCache;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Состояние конвейера: ход прохода планировщика, очереди, запросы в работе, кеши
+     */
+    @GetMapping("/status")
+    public PipelineStatusDto status() {
+        Map<String, Integer> inFlight = new LinkedHashMap<>();
+        inFlight.put("apify", apifyService.inFlight());
+        inFlight.put("telegram", telegramService.inFlight());
+        // Занятые соединения каждого пула БД - из тех же датчиков, что публикует Actuator
+        for (Gauge gauge : meterRegistry.find("hikaricp.connections.active").gauges()) {
+            inFlight.put("db." + gauge.getId().getTag("pool"), (int) gauge.value());
+        }
+
+        Map<String, Integer> caches = new LinkedHashMap<>();
+        caches.put("digests", digestCache.size());
+        caches.put("listingStates", listingStateStore.size());
+        caches.put("nearDuplicates", nearDuplicateDetector.size());
+        caches.put("searchIndex", searchIndex.size());
+        caches.put("scrapes", scrapeCache.size());
+
+        return PipelineStatusDto.builder()
+                .instanceId(clusterMembership.getInstanceId())
+                .leader(clusterCoordinator.isLeader())
+                .clusterMembers(clusterMembership.members())
+                .scrapingPaused(pipelineControl.isScrapingPaused())
+                .sendingPaused(pipelineControl.isSendingPaused())
+                .cycle(schedulerService.cycleProgress())
+                .checkQueue(checkQueue.sizes())
+                .pendingDeliveries(deliveryScheduler.size())
+                .apifyCircuit(apifyService.circuitState())
+                .inFlight(inFlight)
+                .caches(caches)
+                .build();
+    }
+
+    /**
+     * Отметить все активные поиски "пора на проверку" (на всех экземплярах кластера)
+     */
+    @PostMapping("/checks")
+    public ResponseEntity<Map<String, Integer>> checkAll() {
+        int queued = schedulerService.checkNow();
+        return ResponseEntity.accepted().body(Map.of("queued", queued));
+    }
+
+    /**
+     * Поставить поиск в быструю полосу очереди проверок
+     */
+    @PostMapping("/searches/{searchId}/check")
+    public ResponseEntity<Map<String, Integer>> checkSearch(@PathVariable Long searchId) {
+        if (!schedulerService.checkNow(searchId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.accepted().body(Map.of("queued", 1));
+    }
+
+    /**
+     * Включить или выключить премиум пользователя (с его следующей плановой проверки)
+     */
+    @PostMapping("/users/{telegramId}/premium")
+    public ResponseEntity<Map<String, Object>> setPremium(@PathVariable Long telegramId,
+                                                          @RequestParam(defaultValue = "true") boolean enabled) {
+        try {
+            userService.setPremium(telegramId, enabled);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("telegramId", telegramId, "premium", enabled));
+    }
+
+    @PostMapping("/scraping/pause")
+    public PipelineStatusDto pauseScraping() {
+        pipelineControl.setScrapingPaused(true);
+        return status();
+    }
+
+    @PostMapping("/scraping/resume")
+    public PipelineStatusDto resumeScraping() {
+        pipelineControl.setScrapingPaused(false);
+        return status();
+    }
+
+    @PostMapping("/sending/pause")
+    public PipelineStatusDto pauseSending() {
+        pipelineControl.setSendingPaused(true);
+        return status();
+    }
+
+    @PostMapping("/sending/resume")
+    public PipelineStatusDto resumeSending() {
+        pipelineControl.setSendingPaused(false);
+        return status();
+    }
+}
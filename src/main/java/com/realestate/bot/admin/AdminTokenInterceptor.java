@@ -0,0 +1,47 @@
+package com.realestate.bot.admin;
+
+import com.realestate.bot.config.AdminConfig;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Проверка токена админского API
+ *
+ * Без заданного admin.token API выключен и отвечает 404; неверный токен - 401.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdminTokenInterceptor implements HandlerInterceptor {
+
+    private final AdminConfig adminConfig;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        String token = adminConfig.getToken();
+        if (token == null || token.isBlank()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return false;
+        }
+
+        String provided = request.getHeader(adminConfig.getHeader());
+        // Сравнение за постоянное время: по времени ответа токен не подобрать
+        if (provided == null || !MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8), provided.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Rejected admin request {} {} from {}", request.getMethod(), request.getRequestURI(),
+                    request.getRemoteAddr());
+            response.sendError(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+        return true;
+    }
+}
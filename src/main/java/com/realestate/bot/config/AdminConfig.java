@@ -0,0 +1,26 @@
+package com.realestate.bot.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация админского HTTP API (/admin)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "admin")
+@Getter
+@Setter
+public class AdminConfig {
+
+    /**
+     * Токен доступа; пустой - API выключен
+     */
+    private String token;
+
+    /**
+     * Заголовок, в котором передаётся токен
+     */
+    private String header = "X-Admin-Token";
+}
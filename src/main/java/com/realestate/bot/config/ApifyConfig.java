@@ -5,8 +5,12 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 /**
  * Конфигурация Apify API
+ *
+ * Circuit breaker и bulkhead вызовов Apify настраиваются в resilience4j.*.instances.apify.
  */
 @Configuration
 @ConfigurationProperties(prefix = "apify")
@@ -30,7 +34,34 @@ public class ApifyConfig {
     private String actorId;
 
     /**
-     * Таймаут для выполнения запроса (в секундах)
+     * Location ID Idealista, в котором ищутся объявления (по умолчанию Валенсия)
+     */
+    private String locationId = "0-EU-ES-46";
+
+    /**
+     * Таймаут запуска актора (в секундах); запрос целиком обрывается через timeout + 10 секунд.
+     * Должен быть меньше slow-call-duration-threshold breaker'а: пока Apify недоступен, каждый из первых
+     * minimum-number-of-calls вызовов держит поток проверки не дольше этого
      */
     private int timeout;
+
+    /**
+     * Последняя успешная выдача по критериям, которая отдаётся при недоступности Apify
+     */
+    private Fallback fallback = new Fallback();
+
+    @Getter
+    @Setter
+    public static class Fallback {
+
+        /**
+         * Сколько ключей критериев хранить
+         */
+        private int maxEntries = 1_000;
+
+        /**
+         * Выдача старше этого не отдаётся
+         */
+        private Duration maxAge = Duration.ofHours(6);
+    }
 }
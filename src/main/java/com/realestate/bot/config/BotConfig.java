@@ -23,4 +23,9 @@ public class BotConfig {
      * Username бота (например, @ValenciaRentBot)
      */
     private String username;
+
+    /**
+     * Базовый URL Bot API (по умолчанию https://api.telegram.org/bot; в нагрузочном тесте - локальная заглушка)
+     */
+    private String apiUrl;
 }
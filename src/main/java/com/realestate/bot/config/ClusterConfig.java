@@ -0,0 +1,39 @@
+package com.realestate.bot.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Конфигурация работы нескольких экземпляров бота с общей БД
+ *
+ * Экземпляры отмечаются в cluster_members каждые heartbeat-interval; пользователи с их поисками
+ * делятся между живыми экземплярами rendezvous-хешированием, апдейты Telegram принимает один лидер (аренда в leases).
+ * Выключено - единственный экземпляр владеет всеми поисками и принимает апдейты.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cluster")
+@Getter
+@Setter
+public class ClusterConfig {
+
+    private boolean enabled = false;
+
+    /**
+     * ID экземпляра; по умолчанию - имя хоста и PID
+     */
+    private String instanceId;
+
+    /**
+     * Как часто продлевать членство и аренду лидера (в своём потоке ClusterCoordinator, не в общем планировщике)
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(10);
+
+    /**
+     * Через сколько без heartbeat экземпляр считается ушедшим, а аренда лидера - истёкшей
+     */
+    private Duration memberTtl = Duration.ofSeconds(30);
+}
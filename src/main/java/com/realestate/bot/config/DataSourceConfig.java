@@ -0,0 +1,106 @@
+package com.realestate.bot.config;
+
+import com.realestate.bot.config.datasource.ReplicaLagMonitor;
+import com.realestate.bot.config.datasource.Workload;
+import com.realestate.bot.config.datasource.WorkloadRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Конфигурация пулов соединений:
+ * отдельные бюджеты для интерактивной и фоновой нагрузки + реплика для readOnly транзакций
+ *
+ * Все пулы - бины HikariDataSource, поэтому Actuator публикует для каждого метрики
+ * hikaricp.connections.* (в т.ч. pending и acquire - время ожидания соединения)
+ */
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * Пул для обработчиков Telegram
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.interactive.hikari")
+    public HikariDataSource interactiveDataSource(DataSourceProperties properties) {
+        return createPool(properties, "interactive");
+    }
+
+    /**
+     * Пул для планировщика и обработки объявлений
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.batch.hikari")
+    public HikariDataSource batchDataSource(DataSourceProperties properties) {
+        return createPool(properties, "batch");
+    }
+
+    /**
+     * Пул реплики для чтения (по умолчанию указывает на основную БД)
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties, ReplicaConfig replicaConfig) {
+        HikariDataSource dataSource = createPool(properties, "replica");
+        if (replicaConfig.getUrl() != null && !replicaConfig.getUrl().isBlank()) {
+            dataSource.setJdbcUrl(replicaConfig.getUrl());
+        }
+        if (replicaConfig.getUsername() != null) {
+            dataSource.setUsername(replicaConfig.getUsername());
+        }
+        if (replicaConfig.getPassword() != null) {
+            dataSource.setPassword(replicaConfig.getPassword());
+        }
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    /**
+     * Мониторинг отставания реплики (относительно основной БД, через фоновый пул)
+     */
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaConfig replicaConfig,
+                                               @Qualifier("batchDataSource") DataSource batchDataSource,
+                                               @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        return new ReplicaLagMonitor(replicaConfig, batchDataSource, replicaDataSource);
+    }
+
+    /**
+     * Основной DataSource (JPA, Flyway)
+     *
+     * Lazy-прокси откладывает получение соединения до первого запроса,
+     * когда флаг readOnly транзакции уже известен маршрутизатору
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("interactiveDataSource") DataSource interactiveDataSource,
+                                 @Qualifier("batchDataSource") DataSource batchDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        WorkloadRoutingDataSource routing = new WorkloadRoutingDataSource(replicaLagMonitor);
+        routing.setTargetDataSources(Map.of(
+                Workload.INTERACTIVE, interactiveDataSource,
+                Workload.BATCH, batchDataSource,
+                WorkloadRoutingDataSource.REPLICA, replicaDataSource
+        ));
+        routing.setDefaultTargetDataSource(interactiveDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private HikariDataSource createPool(DataSourceProperties properties, String poolName) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName(poolName);
+        return dataSource;
+    }
+}
@@ -0,0 +1,79 @@
+package com.realestate.bot.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.time.ZoneId;
+
+/**
+ * Конфигурация доставки объявлений: сколько отправлять полными сообщениями и как их ранжировать
+ */
+@Configuration
+@ConfigurationProperties(prefix = "delivery")
+@Getter
+@Setter
+public class DeliveryConfig {
+
+    /**
+     * Сколько лучших объявлений отправлять отдельными сообщениями (остальные - одним списком)
+     */
+    private int topK = 5;
+
+    /**
+     * Веса составляющих оценки объявления
+     */
+    private Weights weights = new Weights();
+
+    /**
+     * Отложенная доставка: тихие часы, лимиты, сглаживание
+     */
+    private Schedule schedule = new Schedule();
+
+    @Getter
+    @Setter
+    public static class Weights {
+
+        /**
+         * Положение цены в диапазоне пользователя (дешевле - лучше)
+         */
+        private double price = 0.4;
+
+        /**
+         * Свежесть (давно ли объявление появилось или подешевело)
+         */
+        private double freshness = 0.3;
+
+        /**
+         * Район: чем раньше район в списке пользователя, тем выше
+         */
+        private double district = 0.15;
+
+        /**
+         * Количество фотографий
+         */
+        private double photos = 0.15;
+    }
+
+    @Getter
+    @Setter
+    public static class Schedule {
+
+        /**
+         * Часовой пояс, в котором заданы тихие часы и время дайджеста пользователей
+         */
+        private ZoneId zone = ZoneId.of("Europe/Madrid");
+
+        /**
+         * Минимальный интервал между доставками разным пользователям (сглаживает пики после проверки)
+         */
+        private Duration minInterval = Duration.ofMillis(200);
+
+        /**
+         * Сколько объявлений может ждать отложенной доставки по одному поиску
+         */
+        private int maxPendingPerSearch = 100;
+    }
+}
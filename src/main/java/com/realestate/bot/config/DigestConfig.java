@@ -0,0 +1,33 @@
+package com.realestate.bot.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Конфигурация режима дайджеста (одно сообщение со страницами вместо отдельных сообщений)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "digest")
+@Getter
+@Setter
+public class DigestConfig {
+
+    /**
+     * Объявлений на странице
+     */
+    private int pageSize = 5;
+
+    /**
+     * Сколько дайджестов держать в памяти (страницы хранятся в БД, память - кеш)
+     */
+    private int maxEntries = 10_000;
+
+    /**
+     * Сколько можно листать дайджест после отправки
+     */
+    private Duration ttl = Duration.ofHours(48);
+}
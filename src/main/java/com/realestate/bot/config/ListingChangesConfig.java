@@ -0,0 +1,43 @@
+package com.realestate.bot.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Конфигурация отслеживания изменений объявлений (снижение цены, повторная публикация)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "listing-changes")
+@Getter
+@Setter
+public class ListingChangesConfig {
+
+    /**
+     * Уведомлять ли об изменениях уже отправленных объявлений
+     */
+    private boolean enabled = true;
+
+    /**
+     * Минимальное снижение цены в процентах, о котором стоит сообщать
+     */
+    private int minPriceDropPercent = 3;
+
+    /**
+     * Через сколько отсутствия в выдаче объявление считается снятым
+     */
+    private Duration relistAfter = Duration.ofHours(72);
+
+    /**
+     * Сколько хранить отпечаток объявления, не встречавшегося в выдаче
+     */
+    private Duration stateTtl = Duration.ofDays(30);
+
+    /**
+     * Максимальное количество отпечатков в памяти
+     */
+    private int maxEntries = 200_000;
+}
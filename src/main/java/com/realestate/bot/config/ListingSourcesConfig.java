@@ -0,0 +1,33 @@
+package com.realestate.bot.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация источников объявлений сверх Apify/Idealista
+ */
+@Configuration
+@ConfigurationProperties(prefix = "listing-sources")
+@Getter
+@Setter
+public class ListingSourcesConfig {
+
+    /**
+     * Объявления из локального JSON-файла (стенды и нагрузочные тесты без внешних API)
+     */
+    private Fixture fixture = new Fixture();
+
+    @Getter
+    @Setter
+    public static class Fixture {
+
+        private boolean enabled = false;
+
+        /**
+         * Путь к JSON-массиву объявлений в формате ListingDto; файл перечитывается при изменении
+         */
+        private String path;
+    }
+}
@@ -0,0 +1,57 @@
+package com.realestate.bot.config;
+
+import com.realestate.bot.model.enums.CheckLane;
+import com.realestate.bot.service.ApifyService;
+import com.realestate.bot.service.CheckQueue;
+import com.realestate.bot.service.DeliveryScheduler;
+import com.realestate.bot.service.DigestCache;
+import com.realestate.bot.service.SchedulerService;
+import com.realestate.bot.service.TelegramService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+
+/**
+ * Метрики очередей конвейера "скрапинг -> сопоставление -> отправка"
+ *
+ * Таймеры и счётчики этапов пишут сами сервисы (listing.source.fetch, apify.search, listings.dedup, telegram.send,
+ * scheduler.cycle); здесь - датчики размеров очередей и запросов в работе, которые читаются
+ * при каждом сборе метрик.
+ * Пулы соединений публикуются автоматически: hikaricp.connections.* (по пулу)
+ * и reactor.netty.connection.provider.* (пул WebClient).
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder pipelineQueueMetrics(CheckQueue checkQueue, DeliveryScheduler deliveryScheduler,
+                                            DigestCache digestCache, ApifyService apifyService,
+                                            TelegramService telegramService, SchedulerService schedulerService) {
+        return registry -> {
+            for (CheckLane lane : CheckLane.values()) {
+                Gauge.builder("scheduler.queue.size", checkQueue, queue -> queue.sizes().get(lane))
+                        .description("Поиски в очереди проверок")
+                        .tag("lane", lane.name().toLowerCase(Locale.ROOT))
+                        .register(registry);
+            }
+            Gauge.builder("scheduler.workers.busy", schedulerService, SchedulerService::busyWorkers)
+                    .description("Потоки, которые сейчас проверяют поиск")
+                    .register(registry);
+            Gauge.builder("delivery.pending", deliveryScheduler, DeliveryScheduler::size)
+                    .description("Отложенные доставки (тихие часы, лимит, время дайджеста)")
+                    .register(registry);
+            Gauge.builder("digest.cache.size", digestCache, DigestCache::size)
+                    .description("Дайджесты, доступные для листания")
+                    .register(registry);
+            Gauge.builder("apify.in.flight", apifyService, ApifyService::inFlight)
+                    .description("Выполняющиеся запросы к Apify")
+                    .register(registry);
+            Gauge.builder("telegram.in.flight", telegramService, TelegramService::inFlight)
+                    .description("Выполняющиеся вызовы Bot API")
+                    .register(registry);
+        };
+    }
+}
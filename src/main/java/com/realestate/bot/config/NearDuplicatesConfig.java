@@ -0,0 +1,43 @@
+package com.realestate.bot.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Конфигурация склейки почти одинаковых объявлений (одна квартира от разных агентств)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "near-duplicates")
+@Getter
+@Setter
+public class NearDuplicatesConfig {
+
+    /**
+     * Склеивать ли дубликаты перед отправкой
+     */
+    private boolean enabled = true;
+
+    /**
+     * Минимальное сходство описаний и фото (оценка Жаккара по MinHash) в процентах
+     */
+    private int minSimilarityPercent = 70;
+
+    /**
+     * Допустимое расхождение цены дубликатов в процентах
+     */
+    private int priceTolerancePercent = 5;
+
+    /**
+     * Сколько хранить сигнатуру объявления, не встречавшегося в выдаче
+     */
+    private Duration signatureTtl = Duration.ofDays(30);
+
+    /**
+     * Максимальное количество сигнатур в памяти
+     */
+    private int maxEntries = 100_000;
+}
@@ -0,0 +1,48 @@
+package com.realestate.bot.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Конфигурация реплики для чтения (транзакции readOnly)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "spring.datasource.replica")
+@Getter
+@Setter
+public class ReplicaConfig {
+
+    /**
+     * Включить маршрутизацию readOnly транзакций на реплику
+     */
+    private boolean enabled = false;
+
+    /**
+     * JDBC URL реплики (по умолчанию - та же БД, что и основная)
+     */
+    private String url;
+
+    /**
+     * Пользователь БД реплики
+     */
+    private String username;
+
+    /**
+     * Пароль БД реплики
+     */
+    private String password;
+
+    /**
+     * Максимально допустимое отставание реплики, при превышении чтение идёт в основную БД
+     */
+    private Duration maxLag = Duration.ofSeconds(30);
+
+    /**
+     * Интервал проверки отставания реплики
+     */
+    private Duration lagCheckInterval = Duration.ofSeconds(10);
+}
@@ -1,14 +1,110 @@
 package com.realestate.bot.config;
 
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import java.time.Duration;
+
 /**
  * Конфигурация планировщика для автоматической проверки новых объявлений
+ *
+ * Планировщик захватывает в БД поиски, у которых наступило next_check_at, по числу свободных потоков
+ * проверки и раскладывает их по полосам очереди; только что изменённые поиски попадают в очередь сразу.
+ * Очередь параллельно разбирают workers потоков. Интервал каждого поиска подстраивается под частоту новых объявлений
+ * в пределах [min-interval, max-interval].
  */
 @Configuration
 @EnableScheduling
+@ConfigurationProperties(prefix = "scheduler")
+@Getter
+@Setter
 public class SchedulerConfig {
-    // Планировщик включен через @EnableScheduling
-    // Интервал настроен в application.yml: scheduler.check-interval
+
+    /**
+     * Интервал проверки нового поиска (и всех поисков при выключенной адаптации)
+     */
+    private Duration checkInterval = Duration.ofMinutes(15);
+
+    /**
+     * Как часто искать в БД поиски, которым пора на проверку, если в прошлый раз их не нашлось
+     */
+    private Duration tickInterval = Duration.ofMinutes(1);
+
+    /**
+     * Как часто просыпается планировщик: пока находятся поиски для проверки, свободные потоки
+     * получают их с этим интервалом; ручной запуск всех проверок тоже подхватывается за это время
+     * (задаётся в мс, читается в @Scheduled SchedulerService)
+     */
+    private Duration fastLaneInterval = Duration.ofSeconds(5);
+
+    /**
+     * Подстраивать интервал под частоту новых объявлений
+     */
+    private boolean adaptive = true;
+
+    private Duration minInterval = Duration.ofMinutes(5);
+
+    private Duration maxInterval = Duration.ofHours(2);
+
+    /**
+     * Вес последней проверки в скользящем среднем (0..1)
+     */
+    private double ewmaAlpha = 0.3;
+
+    /**
+     * Сколько новых объявлений в среднем должна находить одна проверка
+     */
+    private double targetHitsPerCheck = 1.0;
+
+    /**
+     * Вес скорости рынка по критериям относительно частоты новых для пользователя (0..1)
+     */
+    private double velocityWeight = 0.3;
+
+    /**
+     * Поиск "застыл" (полоса STALE), если и новые для пользователя, и появляющиеся по критериям объявления
+     * идут реже этого (объявлений в час): EWMA приближается к нулю, но не достигает его
+     */
+    private double staleRate = 0.05;
+
+    /**
+     * Сколько поисков захватывать за один раз (не больше, чем свободных потоков проверки)
+     */
+    private int maxSearchesPerTick = 50;
+
+    /**
+     * Потоков, параллельно проверяющих поиски из очереди
+     */
+    private int workers = 4;
+
+    /**
+     * Через сколько захват поиска истекает, если экземпляр его не снял (упал во время проверки)
+     */
+    private Duration claimTimeout = Duration.ofMinutes(10);
+
+    /**
+     * В кластере: поиск, просроченный дольше этого, может захватить любой экземпляр, а не только владелец
+     */
+    private Duration stealAfter = Duration.ofMinutes(5);
+
+    /**
+     * Веса полос очереди проверок: сколько поисков подряд берётся из полосы за один проход
+     */
+    private Lanes lanes = new Lanes();
+
+    @Getter
+    @Setter
+    public static class Lanes {
+
+        private int fresh = 8;
+
+        private int premium = 4;
+
+        private int normal = 2;
+
+        private int stale = 1;
+    }
 }
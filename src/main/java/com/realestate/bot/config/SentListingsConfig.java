@@ -0,0 +1,31 @@
+package com.realestate.bot.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация хранения отправленных объявлений (партиции sent_listings)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "sent-listings")
+@Getter
+@Setter
+public class SentListingsConfig {
+
+    /**
+     * Сколько месяцев хранить полные записи (описания, фото)
+     */
+    private int retentionMonths = 6;
+
+    /**
+     * На сколько месяцев вперёд создавать партиции
+     */
+    private int partitionsAhead = 2;
+
+    /**
+     * true - старые партиции архивируются (переименовываются), false - удаляются
+     */
+    private boolean archive = false;
+}
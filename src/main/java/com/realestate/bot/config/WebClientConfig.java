@@ -9,6 +9,7 @@ import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
@@ -21,11 +22,18 @@ public class WebClientConfig {
 
     /**
      * WebClient с настроенными таймаутами и размером буфера
+     *
+     * Строится из WebClient.Builder Spring Boot - он публикует метрику http.client.requests;
+     * пул соединений публикует reactor.netty.connection.provider.* с именем apify
      */
     @Bean
-    public WebClient webClient() {
+    public WebClient webClient(WebClient.Builder builder) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("apify")
+                .metrics(true)
+                .build();
+
         // Настройка HTTP клиента с таймаутами
-        HttpClient httpClient = HttpClient.create()
+        HttpClient httpClient = HttpClient.create(connectionProvider)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 30_000) // Таймаут подключения: 30 сек
                 .responseTimeout(Duration.ofSeconds(120)) // Таймаут ответа: 120 сек (для Apify sync может быть долгим)
                 .doOnConnected(conn -> conn
@@ -39,7 +47,7 @@ public class WebClientConfig {
                         .maxInMemorySize(16 * 1024 * 1024)) // 16 MB
                 .build();
 
-        return WebClient.builder()
+        return builder
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .exchangeStrategies(strategies)
                 .build();
@@ -0,0 +1,103 @@
+package com.realestate.bot.config.datasource;
+
+import com.realestate.bot.config.ReplicaConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * Отслеживание отставания реплики
+ *
+ * Отставание измеряется относительно основной БД: сначала на основной читается текущая позиция WAL
+ * и время, затем на реплике - применена ли эта позиция. Если нет, отставание - возраст последней
+ * применённой транзакции по часам основной БД. Так отключившаяся от основной реплика (всё полученное
+ * применено, но получено давно) не считается актуальной, а простаивающая основная БД не даёт ложного отставания.
+ *
+ * Реплика считается доступной, только если последняя проверка была успешной, отставание не превышает
+ * max-lag и сама проверка не устарела (например, если поток планировщика занят долгим циклом).
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    // На основной БД: позиция WAL, которую реплика должна успеть применить, и текущее время
+    private static final String PRIMARY_QUERY =
+            "SELECT pg_current_wal_lsn()::text, now()";
+
+    // На реплике: 0, если позиция основной БД уже применена, иначе возраст последней применённой транзакции
+    // по часам основной БД (NULL - реплика ещё ничего не применила). Если "реплика" - та же основная БД, всегда 0.
+    private static final String LAG_QUERY =
+            "SELECT CASE " +
+            "  WHEN NOT pg_is_in_recovery() THEN 0 " +
+            "  WHEN pg_last_wal_replay_lsn() >= ?::pg_lsn THEN 0 " +
+            "  ELSE GREATEST(EXTRACT(EPOCH FROM (?::timestamptz - pg_last_xact_replay_timestamp())), 0) " +
+            "END";
+
+    private final ReplicaConfig replicaConfig;
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final JdbcTemplate replicaJdbcTemplate;
+
+    private volatile boolean healthy = false;
+    private volatile long lastCheckNanos = 0;
+    private volatile double lastLagSeconds = -1;
+
+    public ReplicaLagMonitor(ReplicaConfig replicaConfig, DataSource primaryDataSource, DataSource replicaDataSource) {
+        this.replicaConfig = replicaConfig;
+        this.primaryJdbcTemplate = new JdbcTemplate(primaryDataSource);
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+    }
+
+    /**
+     * Можно ли сейчас читать с реплики
+     */
+    public boolean isReplicaAvailable() {
+        if (!replicaConfig.isEnabled() || !healthy) {
+            return false;
+        }
+        Duration sinceCheck = Duration.ofNanos(System.nanoTime() - lastCheckNanos);
+        return sinceCheck.compareTo(replicaConfig.getLagCheckInterval().multipliedBy(3)) < 0;
+    }
+
+    /**
+     * Последнее измеренное отставание в секундах (-1, если измерить не удалось)
+     */
+    public double getLastLagSeconds() {
+        return lastLagSeconds;
+    }
+
+    /**
+     * Периодическая проверка отставания реплики
+     */
+    @Scheduled(fixedDelayString = "${spring.datasource.replica.lag-check-interval:10000}")
+    public void checkLag() {
+        if (!replicaConfig.isEnabled()) {
+            return;
+        }
+
+        try {
+            Object[] primary = primaryJdbcTemplate.queryForObject(PRIMARY_QUERY,
+                    (rs, rowNum) -> new Object[]{rs.getString(1), rs.getObject(2, OffsetDateTime.class)});
+            Double lag = replicaJdbcTemplate.queryForObject(LAG_QUERY, Double.class, primary[0], primary[1]);
+            // Реплика, не применившая ни одной транзакции, считается бесконечно отстающей
+            lastLagSeconds = lag != null ? lag : Double.MAX_VALUE;
+            boolean withinLimit = lastLagSeconds <= replicaConfig.getMaxLag().toSeconds();
+
+            if (withinLimit != healthy) {
+                log.warn("Replica {}: lag={}s, maxLag={}s",
+                        withinLimit ? "available" : "lagging, falling back to primary",
+                        lastLagSeconds, replicaConfig.getMaxLag().toSeconds());
+            }
+            healthy = withinLimit;
+        } catch (Exception e) {
+            if (healthy) {
+                log.warn("Replica unavailable, falling back to primary: {}", e.getMessage());
+            }
+            lastLagSeconds = -1;
+            healthy = false;
+        }
+        lastCheckNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,16 @@
+package com.realestate.bot.config.datasource;
+
+/**
+ * Тип нагрузки на БД - определяет, из какого пула берётся соединение
+ */
+public enum Workload {
+    /**
+     * Интерактивные обработчики Telegram (короткие запросы, важна задержка)
+     */
+    INTERACTIVE,
+
+    /**
+     * Планировщик и обработка объявлений (пачки вставок, фоновые задачи)
+     */
+    BATCH
+}
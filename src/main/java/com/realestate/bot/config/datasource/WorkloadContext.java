@@ -0,0 +1,49 @@
+package com.realestate.bot.config.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Привязка текущего потока к типу нагрузки (по умолчанию - INTERACTIVE)
+ */
+public final class WorkloadContext {
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    private WorkloadContext() {
+    }
+
+    /**
+     * Текущий тип нагрузки потока
+     */
+    public static Workload current() {
+        Workload workload = CURRENT.get();
+        return workload != null ? workload : Workload.INTERACTIVE;
+    }
+
+    /**
+     * Выполнить действие с указанным типом нагрузки
+     */
+    public static void run(Workload workload, Runnable action) {
+        call(workload, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Выполнить действие с указанным типом нагрузки и вернуть результат
+     */
+    public static <T> T call(Workload workload, Supplier<T> action) {
+        Workload previous = CURRENT.get();
+        CURRENT.set(workload);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
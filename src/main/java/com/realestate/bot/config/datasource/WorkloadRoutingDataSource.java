@@ -0,0 +1,35 @@
+package com.realestate.bot.config.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * DataSource, выбирающий пул соединений:
+ * readOnly транзакции - на реплику (если она доступна и не отстаёт),
+ * остальное - по типу нагрузки текущего потока
+ *
+ * Должен использоваться через LazyConnectionDataSourceProxy: флаг readOnly
+ * выставляется уже после начала транзакции, к моменту первого запроса.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+
+    /**
+     * Ключ пула реплики
+     */
+    public static final String REPLICA = "REPLICA";
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    public WorkloadRoutingDataSource(ReplicaLagMonitor replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && replicaLagMonitor.isReplicaAvailable()) {
+            return REPLICA;
+        }
+        return WorkloadContext.current();
+    }
+}
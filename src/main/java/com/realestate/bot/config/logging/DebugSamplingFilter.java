@@ -0,0 +1,68 @@
+package com.realestate.bot.config.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сэмплирование частых DEBUG/TRACE событий конвейера
+ *
+ * Из событий одного шаблона сообщения пропускается каждое every-е, остальные отбрасываются до
+ * форматирования и попадания в буфер аппендера. Действует только на логгеры из loggers (префиксы
+ * через запятую) и только на уровни, которые у логгера и так включены. События с исключением
+ * и уровни INFO и выше не сэмплируются. Подключается в logback-spring.xml, every = 1 выключает фильтр.
+ */
+public class DebugSamplingFilter extends TurboFilter {
+
+    private final List<String> prefixes = new ArrayList<>();
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private int every = 1;
+
+    public void setLoggers(String loggers) {
+        prefixes.clear();
+        for (String prefix : loggers.split(",")) {
+            if (!prefix.isBlank()) {
+                prefixes.add(prefix.trim());
+            }
+        }
+    }
+
+    public void setEvery(int every) {
+        this.every = Math.max(every, 1);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format,
+                              Object[] params, Throwable t) {
+        // format == null - проверки isDebugEnabled(), их не считаем
+        if (every == 1 || format == null || level.levelInt > Level.DEBUG_INT || hasThrowable(params, t)) {
+            return FilterReply.NEUTRAL;
+        }
+        if (level.levelInt < logger.getEffectiveLevel().levelInt || !matches(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        long seen = counters.computeIfAbsent(format, key -> new AtomicLong()).getAndIncrement();
+        return seen % every == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    // SLF4J передаёт исключение последним аргументом, turbo-фильтр видит его в params
+    private static boolean hasThrowable(Object[] params, Throwable t) {
+        return t != null || (params != null && params.length > 0 && params[params.length - 1] instanceof Throwable);
+    }
+
+    private boolean matches(String name) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
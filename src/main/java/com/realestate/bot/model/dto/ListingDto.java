@@ -1,25 +1,28 @@
 package com.realestate.bot.model.dto;
 
+import com.realestate.bot.model.enums.ListingChangeType;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * DTO для объявления о квартире из Idealista
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ListingDto {
 
     /**
-     * ID объявления на Idealista (propertyCode)
+     * ID объявления: propertyCode Idealista или 64-битный хеш URL (см. ListingIds)
      */
-    private String idealistaId;
+    private Long idealistaId;
 
     /**
      * URL объявления на Idealista
@@ -41,6 +44,16 @@ public class ListingDto {
      */
     private String district;
 
+    /**
+     * Широта (WGS84), если скрапер её вернул
+     */
+    private Double latitude;
+
+    /**
+     * Долгота (WGS84), если скрапер её вернула
+     */
+    private Double longitude;
+
     /**
      * Описание квартиры
      */
@@ -51,6 +64,21 @@ public class ListingDto {
      */
     private List<String> photoUrls;
 
+    /**
+     * Последнее значимое изменение объявления (заполняет ListingStateStore)
+     */
+    private ListingChangeType changeType;
+
+    /**
+     * Цена до изменения (для PRICE_DROP и RELISTED)
+     */
+    private Integer previousPrice;
+
+    /**
+     * Когда изменение было замечено
+     */
+    private LocalDateTime changedAt;
+
     /**
      * Форматирование в текст для отправки в Telegram
      */
@@ -87,4 +115,14 @@ public class ListingDto {
 
         return message.toString();
     }
+
+    /**
+     * Независимая копия объявления: проверки меняют поля (changeType, changedAt), поэтому
+     * объявления, которые хранятся между проверками, отдаются копиями
+     */
+    public ListingDto copy() {
+        return toBuilder()
+                .photoUrls(photoUrls != null ? new ArrayList<>(photoUrls) : null)
+                .build();
+    }
 }
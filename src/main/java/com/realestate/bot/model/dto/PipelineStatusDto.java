@@ -0,0 +1,76 @@
+package com.realestate.bot.model.dto;
+
+import com.realestate.bot.model.enums.CheckLane;
+import com.realestate.bot.service.SchedulerService;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO состояния конвейера для админского API
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineStatusDto {
+
+    /**
+     * ID этого экземпляра
+     */
+    private String instanceId;
+
+    /**
+     * Этот экземпляр - лидер (принимает апдейты Telegram)
+     */
+    private boolean leader;
+
+    /**
+     * Живые экземпляры кластера (между ними делятся поиски)
+     */
+    private List<String> clusterMembers;
+
+    /**
+     * Плановые проверки на паузе
+     */
+    private boolean scrapingPaused;
+
+    /**
+     * Отложенная доставка на паузе
+     */
+    private boolean sendingPaused;
+
+    /**
+     * Ход текущего и последнего проходов планировщика
+     */
+    private SchedulerService.CycleProgress cycle;
+
+    /**
+     * Поиски в очереди проверок по полосам
+     */
+    private Map<CheckLane, Integer> checkQueue;
+
+    /**
+     * Запланированные доставки (исходящая очередь)
+     */
+    private int pendingDeliveries;
+
+    /**
+     * Состояние circuit breaker Apify: CLOSED, OPEN, HALF_OPEN
+     */
+    private String apifyCircuit;
+
+    /**
+     * Выполняющиеся сейчас запросы по зависимостям: apify, telegram, db.<пул>
+     */
+    private Map<String, Integer> inFlight;
+
+    /**
+     * Размеры кешей в памяти
+     */
+    private Map<String, Integer> caches;
+}
@@ -36,13 +36,33 @@ public class SearchCriteriaDto {
      */
     private List<String> districts;
 
+    /**
+     * Центр поиска по радиусу: широта
+     */
+    private Double centerLat;
+
+    /**
+     * Центр поиска по радиусу: долгота
+     */
+    private Double centerLon;
+
+    /**
+     * Радиус поиска в километрах
+     */
+    private Double radiusKm;
+
     /**
      * Валидация критериев
      */
     public boolean isValid() {
         // Проверяем что хотя бы один критерий задан
         if (minPrice == null && maxPrice == null && numRooms == null &&
-            (districts == null || districts.isEmpty())) {
+            (districts == null || districts.isEmpty()) && radiusKm == null) {
+            return false;
+        }
+
+        // Радиус задаётся вместе с центром и должен быть положительным
+        if (radiusKm != null && (radiusKm <= 0 || centerLat == null || centerLon == null)) {
             return false;
         }
 
@@ -0,0 +1,30 @@
+package com.realestate.bot.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * JPA сущность экземпляра бота в кластере
+ * Обновляется только через {@link com.realestate.bot.repository.ClusterMemberRepository}
+ */
+@Entity
+@Table(name = "cluster_members")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClusterMember {
+
+    @Id
+    @Column(name = "instance_id", length = 128)
+    private String instanceId;
+
+    @Column(name = "started_at", nullable = false)
+    private OffsetDateTime startedAt;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    private OffsetDateTime heartbeatAt;
+}
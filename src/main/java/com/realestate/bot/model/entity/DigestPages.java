@@ -0,0 +1,33 @@
+package com.realestate.bot.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * JPA сущность страниц отправленного дайджеста
+ */
+@Entity
+@Table(name = "digest_pages")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DigestPages {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Column(name = "pages", columnDefinition = "TEXT[]", nullable = false)
+    private List<String> pages;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+}
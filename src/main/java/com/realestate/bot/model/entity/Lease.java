@@ -0,0 +1,33 @@
+package com.realestate.bot.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * JPA сущность аренды роли (лидерство) с истечением
+ * Захватывается и продлевается только через {@link com.realestate.bot.repository.LeaseRepository#tryAcquire}
+ */
+@Entity
+@Table(name = "leases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Lease {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "holder", nullable = false, length = 128)
+    private String holder;
+
+    @Column(name = "acquired_at", nullable = false)
+    private OffsetDateTime acquiredAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+}
@@ -45,6 +45,23 @@ public class Search {
     @Column(name = "districts", columnDefinition = "TEXT[]")
     private List<String> districts;
 
+    // Поиск по радиусу от точки
+    @Column(name = "center_lat")
+    private Double centerLat;
+
+    @Column(name = "center_lon")
+    private Double centerLon;
+
+    @Column(name = "radius_km")
+    private Double radiusKm;
+
+    /**
+     * Задан ли поиск по радиусу
+     */
+    public boolean hasRadius() {
+        return radiusKm != null && centerLat != null && centerLon != null;
+    }
+
     // Метаданные
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -55,6 +72,19 @@ public class Search {
     @Column(name = "last_checked_at")
     private LocalDateTime lastCheckedAt;
 
+    // Адаптивное расписание проверок (см. CheckIntervalPolicy)
+    @Column(name = "check_interval_minutes", nullable = false)
+    private Integer checkIntervalMinutes;
+
+    @Column(name = "next_check_at")
+    private LocalDateTime nextCheckAt;
+
+    @Column(name = "hit_rate", nullable = false)
+    private double hitRate;
+
+    @Column(name = "market_velocity", nullable = false)
+    private double marketVelocity;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,57 @@
+package com.realestate.bot.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * JPA сущность счётчиков отправленных объявлений по поиску
+ * Обновляется только через {@link com.realestate.bot.repository.SearchStatsRepository#recordSent}
+ */
+@Entity
+@Table(name = "search_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SearchStats {
+
+    @Id
+    @Column(name = "search_id")
+    private Long searchId;
+
+    @Column(name = "total_sent", nullable = false)
+    private long totalSent;
+
+    @Column(name = "today_date")
+    private LocalDate todayDate;
+
+    @Column(name = "today_sent", nullable = false)
+    private int todaySent;
+
+    @Column(name = "last_sent_at")
+    private LocalDateTime lastSentAt;
+
+    @Column(name = "price_sum", nullable = false)
+    private long priceSum;
+
+    @Column(name = "price_count", nullable = false)
+    private long priceCount;
+
+    /**
+     * Количество отправленных сегодня (0, если счётчик относится к прошлому дню)
+     */
+    public int getSentToday() {
+        return LocalDate.now().equals(todayDate) ? todaySent : 0;
+    }
+
+    /**
+     * Средняя цена отправленных объявлений (null, если цен ещё не было)
+     */
+    public Long getAveragePrice() {
+        return priceCount > 0 ? priceSum / priceCount : null;
+    }
+}
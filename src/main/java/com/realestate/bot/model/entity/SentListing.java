@@ -28,7 +28,7 @@ public class SentListing {
 
     // Информация об объявлении из Idealista
     @Column(name = "idealista_id", nullable = false)
-    private String idealistaId;
+    private Long idealistaId;
 
     @Column(name = "idealista_url", nullable = false, columnDefinition = "TEXT")
     private String idealistaUrl;
@@ -0,0 +1,49 @@
+package com.realestate.bot.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * JPA сущность компактного ключа дедупликации (search_id + idealista_id)
+ * Хранится дольше, чем полные записи в партиционированной sent_listings; вместе с ключом - то,
+ * что поиск знает об объявлении (цена в последнем уведомлении, когда последний раз было в выдаче)
+ */
+@Entity
+@Table(name = "sent_listing_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SentListingKey {
+
+    @EmbeddedId
+    private Id id;
+
+    @Column(name = "price")
+    private Integer price;
+
+    @Column(name = "seen_at")
+    private LocalDateTime seenAt;
+
+    /**
+     * Составной первичный ключ
+     */
+    @Embeddable
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Id implements Serializable {
+
+        @Column(name = "search_id", nullable = false)
+        private Long searchId;
+
+        @Column(name = "idealista_id", nullable = false)
+        private Long idealistaId;
+    }
+}
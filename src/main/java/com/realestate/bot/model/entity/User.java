@@ -1,9 +1,11 @@
 package com.realestate.bot.model.entity;
 
+import com.realestate.bot.model.enums.DeliveryMode;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 
 /**
  * JPA сущность для пользователей Telegram бота
@@ -33,6 +35,31 @@ public class User {
     @Column(name = "last_name")
     private String lastName;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "delivery_mode", nullable = false)
+    private DeliveryMode deliveryMode;
+
+    /**
+     * Тихие часы: уведомления, пришедшие в интервал [quietFrom, quietTo), откладываются до quietTo
+     */
+    @Column(name = "quiet_from")
+    private LocalTime quietFrom;
+
+    @Column(name = "quiet_to")
+    private LocalTime quietTo;
+
+    @Column(name = "max_messages_per_hour")
+    private Integer maxMessagesPerHour;
+
+    /**
+     * Время ежедневной доставки (null - доставлять сразу)
+     */
+    @Column(name = "digest_time")
+    private LocalTime digestTime;
+
+    @Column(name = "premium", nullable = false)
+    private boolean premium;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -43,6 +70,16 @@ public class User {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        if (deliveryMode == null) {
+            deliveryMode = DeliveryMode.FULL;
+        }
+    }
+
+    /**
+     * Заданы ли тихие часы
+     */
+    public boolean hasQuietHours() {
+        return quietFrom != null && quietTo != null;
     }
 
     @PreUpdate
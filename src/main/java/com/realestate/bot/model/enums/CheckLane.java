@@ -0,0 +1,26 @@
+package com.realestate.bot.model.enums;
+
+/**
+ * Полосы очереди проверок поисков (в порядке приоритета)
+ */
+public enum CheckLane {
+    /**
+     * Только что изменённые или возобновлённые поиски - проверяются в течение секунд
+     */
+    FRESH,
+
+    /**
+     * Поиски премиум-пользователей
+     */
+    PREMIUM,
+
+    /**
+     * Обычные поиски по расписанию
+     */
+    NORMAL,
+
+    /**
+     * Поиски, по которым ничего не появляется - проверяются в последнюю очередь
+     */
+    STALE
+}
@@ -0,0 +1,16 @@
+package com.realestate.bot.model.enums;
+
+/**
+ * Режимы доставки объявлений пользователю
+ */
+public enum DeliveryMode {
+    /**
+     * Лучшие объявления - отдельными сообщениями с фото, остальные - списком
+     */
+    FULL,
+
+    /**
+     * Все объявления одним сообщением со страницами (листание кнопками)
+     */
+    DIGEST
+}
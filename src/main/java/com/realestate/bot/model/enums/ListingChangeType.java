@@ -0,0 +1,21 @@
+package com.realestate.bot.model.enums;
+
+/**
+ * Последнее значимое изменение объявления (по данным ListingStateStore)
+ */
+public enum ListingChangeType {
+    /**
+     * Объявление впервые появилось в выдаче
+     */
+    NEW,
+
+    /**
+     * Цена снизилась заметнее порога listing-changes.min-price-drop-percent
+     */
+    PRICE_DROP,
+
+    /**
+     * Объявление снова появилось в выдаче после долгого отсутствия
+     */
+    RELISTED
+}
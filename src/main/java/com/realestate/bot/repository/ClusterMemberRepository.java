@@ -0,0 +1,55 @@
+package com.realestate.bot.repository;
+
+import com.realestate.bot.model.entity.ClusterMember;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository для экземпляров бота в кластере
+ */
+@Repository
+public interface ClusterMemberRepository extends JpaRepository<ClusterMember, String> {
+
+    /**
+     * Отметить экземпляр живым (upsert одним запросом)
+     *
+     * @param instanceId ID экземпляра
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO cluster_members (instance_id) VALUES (:instanceId) " +
+            "ON CONFLICT (instance_id) DO UPDATE SET heartbeat_at = now()",
+            nativeQuery = true)
+    void heartbeat(@Param("instanceId") String instanceId);
+
+    /**
+     * Удалить экземпляры без heartbeat дольше ttl
+     *
+     * @param ttlSeconds время жизни без heartbeat
+     * @return сколько экземпляров удалено
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM cluster_members WHERE heartbeat_at < now() - make_interval(secs => :ttlSeconds)",
+            nativeQuery = true)
+    int deleteExpired(@Param("ttlSeconds") long ttlSeconds);
+
+    /**
+     * ID живых экземпляров (в порядке ID)
+     * Читается с основной БД: на отстающей реплике свежие heartbeat не видны
+     *
+     * @param ttlSeconds время жизни без heartbeat
+     * @return ID экземпляров
+     */
+    @Transactional
+    @Query(value = "SELECT instance_id FROM cluster_members " +
+            "WHERE heartbeat_at >= now() - make_interval(secs => :ttlSeconds) ORDER BY instance_id",
+            nativeQuery = true)
+    List<String> findLiveIds(@Param("ttlSeconds") long ttlSeconds);
+}
@@ -0,0 +1,28 @@
+package com.realestate.bot.repository;
+
+import com.realestate.bot.model.entity.DigestPages;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository для страниц отправленных дайджестов
+ */
+@Repository
+public interface DigestPagesRepository extends JpaRepository<DigestPages, Long> {
+
+    /**
+     * Удалить дайджесты старше ttl
+     *
+     * @param ttlSeconds сколько можно листать дайджест после отправки
+     * @return сколько дайджестов удалено
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM digest_pages WHERE created_at < now() - make_interval(secs => :ttlSeconds)",
+            nativeQuery = true)
+    int deleteExpired(@Param("ttlSeconds") long ttlSeconds);
+}
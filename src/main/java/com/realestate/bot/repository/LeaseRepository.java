@@ -0,0 +1,50 @@
+package com.realestate.bot.repository;
+
+import com.realestate.bot.model.entity.Lease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository для аренд ролей
+ */
+@Repository
+public interface LeaseRepository extends JpaRepository<Lease, String> {
+
+    /**
+     * Захватить или продлить аренду (одним запросом)
+     *
+     * Удаётся, если аренды нет, она истекла или уже принадлежит holder;
+     * при смене держателя acquired_at обновляется.
+     *
+     * @param name роль
+     * @param holder ID экземпляра
+     * @param ttlSeconds на сколько секунд продлить
+     * @return 1 если аренда принадлежит holder, 0 если её держит другой экземпляр
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO leases AS l (name, holder, expires_at) " +
+            "VALUES (:name, :holder, now() + make_interval(secs => :ttlSeconds)) " +
+            "ON CONFLICT (name) DO UPDATE SET " +
+            "holder = EXCLUDED.holder, " +
+            "acquired_at = CASE WHEN l.holder = EXCLUDED.holder THEN l.acquired_at ELSE now() END, " +
+            "expires_at = EXCLUDED.expires_at " +
+            "WHERE l.holder = EXCLUDED.holder OR l.expires_at < now()",
+            nativeQuery = true)
+    int tryAcquire(@Param("name") String name, @Param("holder") String holder, @Param("ttlSeconds") long ttlSeconds);
+
+    /**
+     * Отпустить аренду, если она принадлежит holder
+     *
+     * @param name роль
+     * @param holder ID экземпляра
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM leases WHERE name = :name AND holder = :holder", nativeQuery = true)
+    void release(@Param("name") String name, @Param("holder") String holder);
+}
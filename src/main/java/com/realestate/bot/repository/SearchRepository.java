@@ -2,9 +2,16 @@ package com.realestate.bot.repository;
 
 import com.realestate.bot.model.entity.Search;
 import com.realestate.bot.model.enums.SearchStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,13 +39,181 @@ public interface SearchRepository extends JpaRepository<Search, Long> {
     List<Search> findByUserId(Long userId);
 
     /**
-     * Найти все поиски по статусу
+     * Найти все поиски по статусу (вместе с пользователем - он нужен планировщику для chatId)
+     * Только чтение: при включённой реплике выполняется на ней
      *
      * @param status статус поиска
      * @return список поисков с указанным статусом
      */
+    @EntityGraph(attributePaths = "user")
+    @Transactional(readOnly = true)
     List<Search> findByStatus(SearchStatus status);
 
+    /**
+     * Поиск, которому пора на проверку: ID и владелец (по нему поиск закрепляется за экземпляром кластера)
+     */
+    interface DueSearch {
+
+        Long getId();
+
+        Long getUserId();
+    }
+
+    /**
+     * Активные незахваченные поиски, у которых наступило время проверки
+     *
+     * @param now текущее время
+     * @param limit сколько поисков вернуть
+     * @return поиски в порядке next_check_at (NULL - первыми)
+     *
+     * Читается с основной БД: на отстающей реплике только что проверенный поиск выглядел бы просроченным
+     */
+    @Transactional
+    @Query(value = "SELECT id AS \"id\", user_id AS \"userId\" FROM searches WHERE status = 'ACTIVE' " +
+            "AND (next_check_at IS NULL OR next_check_at <= :now) " +
+            "AND (locked_until IS NULL OR locked_until < now()) " +
+            "ORDER BY next_check_at ASC NULLS FIRST LIMIT :limit",
+            nativeQuery = true)
+    List<DueSearch> findDueUnclaimed(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Захватить поиски для проверки (одним запросом)
+     *
+     * Строки, которые в этот момент захватывает другой экземпляр, пропускаются (SKIP LOCKED), а не ждут.
+     *
+     * @param ids ID поисков
+     * @param worker ID экземпляра
+     * @param leaseSeconds на сколько секунд захватить
+     * @return ID захваченных поисков
+     */
+    @Transactional
+    @Query(value = "UPDATE searches SET locked_by = :worker, " +
+            "locked_until = now() + make_interval(secs => :leaseSeconds) " +
+            "WHERE id IN (SELECT id FROM searches WHERE id IN (:ids) AND status = 'ACTIVE' " +
+            "             AND (locked_until IS NULL OR locked_until < now()) FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id",
+            nativeQuery = true)
+    List<Long> claim(@Param("ids") Collection<Long> ids, @Param("worker") String worker,
+                     @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Захватить самые просроченные поиски независимо от владельца (перехват работы перегруженного экземпляра)
+     *
+     * @param before поиски с next_check_at раньше этого времени
+     * @param worker ID экземпляра
+     * @param leaseSeconds на сколько секунд захватить
+     * @param limit сколько поисков захватить
+     * @return ID захваченных поисков
+     */
+    @Transactional
+    @Query(value = "UPDATE searches SET locked_by = :worker, " +
+            "locked_until = now() + make_interval(secs => :leaseSeconds) " +
+            "WHERE id IN (SELECT id FROM searches WHERE status = 'ACTIVE' " +
+            "             AND (next_check_at IS NULL OR next_check_at < :before) " +
+            "             AND (locked_until IS NULL OR locked_until < now()) " +
+            "             ORDER BY next_check_at ASC NULLS FIRST LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id",
+            nativeQuery = true)
+    List<Long> claimOverdue(@Param("before") LocalDateTime before, @Param("worker") String worker,
+                            @Param("leaseSeconds") long leaseSeconds, @Param("limit") int limit);
+
+    /**
+     * Продлить захват поиска перед проверкой, если он всё ещё принадлежит worker
+     *
+     * @param id ID поиска
+     * @param worker ID экземпляра
+     * @param leaseSeconds на сколько секунд продлить
+     * @return 0 если захват перешёл к другому экземпляру
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE searches SET locked_until = now() + make_interval(secs => :leaseSeconds) " +
+            "WHERE id = :id AND locked_by = :worker",
+            nativeQuery = true)
+    int renewClaim(@Param("id") Long id, @Param("worker") String worker, @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Снять захват поиска, если он принадлежит worker
+     *
+     * @param id ID поиска
+     * @param worker ID экземпляра
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE searches SET locked_by = NULL, locked_until = NULL WHERE id = :id AND locked_by = :worker",
+            nativeQuery = true)
+    void releaseClaim(@Param("id") Long id, @Param("worker") String worker);
+
+    /**
+     * Снять все захваты экземпляра
+     *
+     * @param worker ID экземпляра
+     * @return сколько захватов снято
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE searches SET locked_by = NULL, locked_until = NULL WHERE locked_by = :worker",
+            nativeQuery = true)
+    int releaseClaims(@Param("worker") String worker);
+
+    /**
+     * Найти поиски вместе с пользователями
+     * Читается с основной БД (сразу после захвата)
+     *
+     * @param ids ID поисков
+     * @return найденные поиски
+     */
+    @EntityGraph(attributePaths = "user")
+    @Transactional
+    List<Search> findByIdIn(Collection<Long> ids);
+
+    /**
+     * Поиски, изменённые позже указанного момента, в любом статусе (для обновления обратного индекса)
+     *
+     * Читается из основной БД: изменение, которого ещё нет на реплике, иначе было бы пропущено.
+     *
+     * @param since момент (updated_at строго позже)
+     * @return изменённые поиски с пользователями
+     */
+    @EntityGraph(attributePaths = "user")
+    @Transactional
+    List<Search> findByUpdatedAtAfter(LocalDateTime since);
+
+    /**
+     * Сделать все поиски со статусом "пора на проверку" (ручная проверка всех поисков)
+     *
+     * @param status статус поиска (ACTIVE)
+     * @param now текущее время
+     * @return сколько поисков обновлено
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Search s SET s.nextCheckAt = :now WHERE s.status = :status " +
+            "AND (s.nextCheckAt IS NULL OR s.nextCheckAt > :now)")
+    int markDueForCheck(@Param("status") SearchStatus status, @Param("now") LocalDateTime now);
+
+    /**
+     * Сделать активный поиск "пора на проверку"
+     *
+     * @return 1 если поиск активен
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Search s SET s.nextCheckAt = :now WHERE s.id = :id AND s.status = :status")
+    int markDueForCheck(@Param("id") Long id, @Param("status") SearchStatus status, @Param("now") LocalDateTime now);
+
+    /**
+     * Найти поиск вместе с пользователем (для отложенной доставки вне транзакции)
+     * Читается с основной БД: проверка и доставка должны видеть только что приостановленный поиск
+     * и свежие настройки пользователя
+     *
+     * @param id ID поиска
+     * @return Optional с поиском, если найден
+     */
+    @EntityGraph(attributePaths = "user")
+    @Transactional
+    Optional<Search> findWithUserById(Long id);
+
     /**
      * Проверить существование активного поиска у пользователя
      *
@@ -0,0 +1,47 @@
+package com.realestate.bot.repository;
+
+import com.realestate.bot.model.entity.SearchStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository для счётчиков отправленных объявлений по поиску
+ */
+@Repository
+public interface SearchStatsRepository extends JpaRepository<SearchStats, Long> {
+
+    /**
+     * Атомарно учесть пачку отправленных объявлений (upsert одним запросом)
+     *
+     * @param searchId ID поиска
+     * @param count количество отправленных объявлений
+     * @param sentAt время отправки
+     * @param priceSum сумма цен объявлений с известной ценой
+     * @param priceCount количество объявлений с известной ценой
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO search_stats AS s " +
+            "(search_id, total_sent, today_date, today_sent, last_sent_at, price_sum, price_count) " +
+            "VALUES (:searchId, :count, CURRENT_DATE, :count, :sentAt, :priceSum, :priceCount) " +
+            "ON CONFLICT (search_id) DO UPDATE SET " +
+            "total_sent = s.total_sent + EXCLUDED.total_sent, " +
+            "today_sent = CASE WHEN s.today_date = CURRENT_DATE " +
+            "                  THEN s.today_sent + EXCLUDED.today_sent ELSE EXCLUDED.today_sent END, " +
+            "today_date = CURRENT_DATE, " +
+            "last_sent_at = GREATEST(s.last_sent_at, EXCLUDED.last_sent_at), " +
+            "price_sum = s.price_sum + EXCLUDED.price_sum, " +
+            "price_count = s.price_count + EXCLUDED.price_count",
+            nativeQuery = true)
+    void recordSent(@Param("searchId") Long searchId,
+                    @Param("count") int count,
+                    @Param("sentAt") LocalDateTime sentAt,
+                    @Param("priceSum") long priceSum,
+                    @Param("priceCount") int priceCount);
+}
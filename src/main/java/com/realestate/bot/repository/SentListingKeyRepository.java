@@ -0,0 +1,76 @@
+package com.realestate.bot.repository;
+
+import com.realestate.bot.model.entity.SentListingKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository для ключей дедупликации отправленных объявлений
+ */
+@Repository
+public interface SentListingKeyRepository extends JpaRepository<SentListingKey, SentListingKey.Id> {
+
+    /**
+     * Отправленное объявление глазами поиска
+     */
+    interface SentKey {
+
+        Long getIdealistaId();
+
+        Integer getPrice();
+
+        LocalDateTime getSeenAt();
+    }
+
+    /**
+     * Отправленные объявления поиска с ценой последнего уведомления и временем последнего появления в выдаче
+     * Читается с основной БД: отправленное минуту назад не должно прийти снова из-за отставания реплики
+     *
+     * @param searchId ID поиска
+     * @return ключи по возрастанию ID объявления
+     */
+    @Transactional
+    @Query("SELECT k.id.idealistaId AS idealistaId, k.price AS price, k.seenAt AS seenAt " +
+            "FROM SentListingKey k WHERE k.id.searchId = :searchId ORDER BY k.id.idealistaId")
+    List<SentKey> findSentKeysBySearchId(@Param("searchId") Long searchId);
+
+    /**
+     * Отметить, что отправленные объявления снова были в выдаче поиска
+     *
+     * @return сколько ключей обновлено
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SentListingKey k SET k.seenAt = :now WHERE k.id.searchId = :searchId AND k.id.idealistaId IN :ids")
+    int markSeen(@Param("searchId") Long searchId, @Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Отметить, что поиск видел все отправленные ему объявления (возобновление после паузы)
+     *
+     * @return сколько ключей обновлено
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SentListingKey k SET k.seenAt = :now WHERE k.id.searchId = :searchId")
+    int markAllSeen(@Param("searchId") Long searchId, @Param("now") LocalDateTime now);
+
+    /**
+     * Запомнить повторное уведомление об уже отправленном объявлении (снижение цены, повторная публикация)
+     *
+     * @return 1 если ключ существует
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SentListingKey k SET k.price = :price, k.seenAt = :now " +
+            "WHERE k.id.searchId = :searchId AND k.id.idealistaId = :idealistaId")
+    int markResent(@Param("searchId") Long searchId, @Param("idealistaId") Long idealistaId,
+                   @Param("price") Integer price, @Param("now") LocalDateTime now);
+}
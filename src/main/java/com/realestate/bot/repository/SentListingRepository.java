@@ -5,12 +5,13 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * Repository для работы с отправленными объявлениями
+ * Таблица партиционирована по месяцам sent_at, дедупликация - через {@link SentListingKeyRepository}
  */
 @Repository
 public interface SentListingRepository extends JpaRepository<SentListing, Long> {
@@ -21,24 +22,27 @@ public interface SentListingRepository extends JpaRepository<SentListing, Long>
      * @param searchId ID поиска
      * @return список отправленных объявлений
      */
+    @Transactional(readOnly = true)
     List<SentListing> findBySearchId(Long searchId);
 
     /**
-     * Получить множество Idealista ID отправленных объявлений для поиска
-     * Используется для быстрой проверки дубликатов
+     * Создать месячные партиции на текущий и следующие месяцы
      *
-     * @param searchId ID поиска
-     * @return множество Idealista ID
+     * @param monthsAhead на сколько месяцев вперёд
+     * @return количество созданных партиций
      */
-    @Query("SELECT sl.idealistaId FROM SentListing sl WHERE sl.search.id = :searchId")
-    Set<String> findIdealistaIdsBySearchId(@Param("searchId") Long searchId);
+    @Transactional
+    @Query(value = "SELECT sent_listings_ensure_partitions(:monthsAhead)", nativeQuery = true)
+    Integer ensurePartitions(@Param("monthsAhead") int monthsAhead);
 
     /**
-     * Проверить, было ли объявление уже отправлено в рамках поиска
+     * Удалить или архивировать партиции старше заданного количества месяцев
      *
-     * @param searchId ID поиска
-     * @param idealistaId ID объявления на Idealista
-     * @return true если объявление уже было отправлено
+     * @param keepMonths сколько месяцев хранить
+     * @param archive true - переименовать в sent_listings_archive_*, false - удалить
+     * @return количество обработанных партиций
      */
-    boolean existsBySearchIdAndIdealistaId(Long searchId, String idealistaId);
+    @Transactional
+    @Query(value = "SELECT sent_listings_expire_partitions(:keepMonths, :archive)", nativeQuery = true)
+    Integer expirePartitions(@Param("keepMonths") int keepMonths, @Param("archive") boolean archive);
 }
@@ -3,9 +3,24 @@ package com.realestate.bot.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.realestate.bot.config.ApifyConfig;
+import com.realestate.bot.config.SchedulerConfig;
 import com.realestate.bot.exception.ApiException;
 import com.realestate.bot.model.dto.ListingDto;
 import com.realestate.bot.model.dto.SearchCriteriaDto;
+import com.realestate.bot.util.ListingIds;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import io.netty.channel.ConnectTimeoutException;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -13,68 +28,220 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+import java.net.SocketTimeoutException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Сервис для работы с Apify Idealista Scraper API
+ * Сервис для работы с Apify Idealista Scraper API - источник объявлений "idealista"
+ *
+ * Вызовы идут через circuit breaker и bulkhead "apify" (Resilience4j): bulkhead ограничивает число
+ * одновременных запусков актора (не меньше scheduler.workers + 1), а после серии ошибок или медленных ответов breaker открывается
+ * и вызовы сразу отклоняются, пока пробный запрос в полуоткрытом состоянии не пройдёт успешно.
+ * Вместо отклонённого или упавшего вызова отдаётся последняя успешная выдача по тем же критериям
+ * ({@link ScrapeCache}), поэтому недоступность Apify не занимает потоки проверки на минуты.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class ApifyService {
+public class ApifyService implements ListingSource {
 
     private final ApifyConfig apifyConfig;
+    private final SchedulerConfig schedulerConfig;
     private final ObjectMapper objectMapper;
     private final WebClient webClient;
+    private final DistrictMatcher districtMatcher;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final ScrapeCache scrapeCache;
+
+    static final String APIFY = "apify";
+
+    static final String SOURCE_NAME = "idealista";
+
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+
+    // Запросы к Apify, выполняющиеся сейчас
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        circuitBreaker = circuitBreakerRegistry.circuitBreaker(APIFY);
+        bulkhead = bulkheadRegistry.bulkhead(APIFY);
+        // Каждый поток проверки и создание поиска должны получить свой запуск актора, а не кеш
+        int minConcurrentCalls = schedulerConfig.getWorkers() + 1;
+        if (bulkhead.getBulkheadConfig().getMaxConcurrentCalls() < minConcurrentCalls) {
+            log.info("Apify bulkhead raised from {} to {} concurrent calls (scheduler.workers + 1)",
+                    bulkhead.getBulkheadConfig().getMaxConcurrentCalls(), minConcurrentCalls);
+            bulkhead.changeConfig(BulkheadConfig.from(bulkhead.getBulkheadConfig())
+                    .maxConcurrentCalls(minConcurrentCalls)
+                    .build());
+        }
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                log.warn("Apify circuit breaker: {}", event.getStateTransition()));
+    }
+
+    @Override
+    public String name() {
+        return SOURCE_NAME;
+    }
 
-    // Location ID для города Валенсия
-    private static final String VALENCIA_LOCATION_ID = "0-EU-ES-46";
+    @Override
+    public Result fetch(SearchCriteriaDto criteria) {
+        return searchListings(criteria);
+    }
 
     /**
      * Искать квартиры по заданным критериям
      *
      * @param criteria критерии поиска
-     * @return список найденных квартир
+     * @return список найденных квартир (при недоступности Apify - последняя успешная выдача по критериям
+     *         с признаком fallback)
+     * @throws ApiException если Apify недоступен, а выдачи по критериям нет в кеше
      */
-    public List<ListingDto> searchListings(SearchCriteriaDto criteria) {
+    public Result searchListings(SearchCriteriaDto criteria) {
         log.info("Searching listings with criteria: minPrice={}, maxPrice={}, numRooms={}, districts={}",
                 criteria.getMinPrice(), criteria.getMaxPrice(), criteria.getNumRooms(),
                 criteria.getDistricts() != null ? criteria.getDistricts().size() : 0);
 
+        String key = criteriaKey(criteria);
         try {
+            List<ListingDto> listings = circuitBreaker.executeSupplier(
+                    Bulkhead.decorateSupplier(bulkhead, () -> fetchListings(criteria)));
+            scrapeCache.put(key, listings);
+            return Result.fresh(listings);
+        } catch (CallNotPermittedException e) {
+            return fallback(key, "circuit_open", e);
+        } catch (BulkheadFullException e) {
+            return fallback(key, "bulkhead_full", e);
+        } catch (ApiException e) {
+            return fallback(key, "error", e);
+        }
+    }
+
+    /**
+     * Последняя успешная выдача по ключу критериев вместо вызова Apify
+     *
+     * @param reason почему вызов не состоялся: circuit_open, bulkhead_full или error
+     * @throws ApiException если выдачи нет в кеше или она устарела
+     */
+    private Result fallback(String key, String reason, RuntimeException cause) {
+        Optional<ScrapeCache.Scrape> cached = scrapeCache.get(key);
+        meterRegistry.counter("apify.fallback", "reason", reason, "cache", cached.isPresent() ? "hit" : "miss")
+                .increment();
+        if (cached.isEmpty()) {
+            if (cause instanceof ApiException apiException) {
+                throw apiException;
+            }
+            throw new ApiException("Apify недоступен: " + cause.getMessage(), cause);
+        }
+        log.warn("Apify call skipped ({}), serving cached listings for {} fetched {}s ago", reason, key,
+                (System.currentTimeMillis() - cached.get().fetchedAt()) / 1000);
+        return new Result(cached.get().listings(), true);
+    }
+
+    /**
+     * Ключ критериев, от которых зависит запрос к Apify (районы и радиус фильтруются после выдачи)
+     */
+    static String criteriaKey(SearchCriteriaDto criteria) {
+        return criteria.getMinPrice() + ":" + criteria.getMaxPrice() + ":" + criteria.getNumRooms();
+    }
+
+    /**
+     * Состояние circuit breaker: CLOSED, OPEN, HALF_OPEN
+     */
+    public String circuitState() {
+        return circuitBreaker.getState().name();
+    }
+
+    /**
+     * Один запрос к Apify (span apify.search)
+     */
+    private List<ListingDto> fetchListings(SearchCriteriaDto criteria) {
+        // Таймер apify.search и span с исходом запроса (потомок проверки поиска, если она идёт)
+        Observation observation = Observation.start("apify.search", observationRegistry);
+        String outcome = "error";
+        inFlight.incrementAndGet();
+        try (Observation.Scope scope = observation.openScope()) {
             // Строим тело запроса для Apify
             Map<String, Object> requestBody = buildApifyRequest(criteria);
 
-            // Выполняем запрос к Apify API (sync endpoint)
-            String url = String.format("https://api.apify.com/v2/acts/%s/run-sync?token=%s&timeout=%d",
-                    apifyConfig.getActorId(),
-                    apifyConfig.getApiKey(),
-                    apifyConfig.getTimeout());
-
-            log.debug("Calling Apify API: POST {}", url);
+            // Выполняем запрос к Apify API (sync endpoint). URI передаётся шаблоном:
+            // в метку uri метрики http.client.requests не попадает токен
+            log.debug("Calling Apify API: POST /acts/{}/run-sync", apifyConfig.getActorId());
 
             String response = webClient.post()
-                    .uri(url)
+                    .uri(apifyConfig.getBaseUrl() + "/acts/{actorId}/run-sync?token={token}&timeout={timeout}",
+                            apifyConfig.getActorId(),
+                            apifyConfig.getApiKey(),
+                            apifyConfig.getTimeout())
                     .bodyValue(requestBody)
                     .retrieve()
                     .bodyToMono(String.class)
                     .timeout(Duration.ofSeconds(apifyConfig.getTimeout() + 10)) // Добавляем запас
+                    // HTTP-span WebClient - дочерний для apify.search
+                    .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation))
                     .block();
 
             // Парсим ответ
             List<ListingDto> listings = parseResponse(response);
+            outcome = "success";
+            meterRegistry.summary("apify.listings").record(listings.size());
+            observation.highCardinalityKeyValue("listings", String.valueOf(listings.size()));
 
             log.info("Found {} listings from Apify", listings.size());
             return listings;
 
         } catch (WebClientResponseException e) {
+            outcome = String.valueOf(e.getStatusCode().value());
+            observation.error(e);
             log.error("Apify API error: status={}, body={}", e.getStatusCode(), e.getResponseBodyAsString(), e);
             throw new ApiException("Ошибка при обращении к Apify API: " + e.getMessage());
         } catch (Exception e) {
+            if (isTimeout(e)) {
+                outcome = "timeout";
+            }
+            observation.error(e);
             log.error("Error searching listings", e);
             throw new ApiException("Ошибка поиска квартир: " + e.getMessage());
+        } finally {
+            inFlight.decrementAndGet();
+            // outcome: success, HTTP-статус ошибки, timeout или error
+            observation.lowCardinalityKeyValue("outcome", outcome);
+            observation.stop();
+            if (!"success".equals(outcome)) {
+                meterRegistry.counter("apify.failures", "status", outcome).increment();
+            }
+        }
+    }
+
+    /**
+     * Таймаут где-то в цепочке причин: Mono.timeout (TimeoutException внутри исключения block()),
+     * ReadTimeoutException/ConnectTimeoutException Netty внутри WebClientRequestException
+     */
+    private static boolean isTimeout(Throwable e) {
+        // Ограничение глубины - на случай зацикленной цепочки причин
+        for (int depth = 0; e != null && depth < 10; e = e.getCause(), depth++) {
+            if (e instanceof TimeoutException
+                    || e instanceof io.netty.handler.timeout.TimeoutException
+                    || e instanceof ConnectTimeoutException
+                    || e instanceof SocketTimeoutException) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * Количество выполняющихся сейчас запросов к Apify
+     */
+    public int inFlight() {
+        return inFlight.get();
     }
 
     /**
@@ -86,7 +253,7 @@ public class ApifyService {
         // Базовые параметры
         request.put("operation", "rent");
         request.put("propertyType", "homes");
-        request.put("locationId", VALENCIA_LOCATION_ID);
+        request.put("locationId", apifyConfig.getLocationId());
 
         // Цены (ВАЖНО: Apify требует строки, а не числа)
         if (criteria.getMinPrice() != null) {
@@ -118,7 +285,7 @@ public class ApifyService {
     /**
      * Распарсить ответ от Apify и преобразовать в список ListingDto
      */
-    private List<ListingDto> parseResponse(String response) throws Exception {
+    List<ListingDto> parseResponse(String response) throws Exception {
         List<ListingDto> listings = new ArrayList<>();
 
         // Парсим JSON ответ
@@ -174,7 +341,7 @@ public class ApifyService {
     /**
      * Преобразовать JSON элемент в ListingDto
      */
-    private ListingDto mapToListingDto(JsonNode item) {
+    ListingDto mapToListingDto(JsonNode item) {
         try {
             // Извлекаем данные из JSON (структура зависит от Apify Idealista Scraper)
             String url = item.path("url").asText();
@@ -182,12 +349,8 @@ public class ApifyService {
                 return null;
             }
 
-            // ID квартиры (извлекаем из URL или используем propertyCode)
-            String propertyId = item.path("propertyCode").asText();
-            if (propertyId == null || propertyId.isEmpty()) {
-                // Пробуем извлечь из URL
-                propertyId = extractIdFromUrl(url);
-            }
+            // ID квартиры: числовой propertyCode, номер из URL или 64-битный хеш URL
+            Long propertyId = ListingIds.resolve(item.path("propertyCode").asText(null), url);
 
             // Цена
             Integer price = null;
@@ -209,6 +372,10 @@ public class ApifyService {
                 district = item.path("neighborhood").asText(null);
             }
 
+            // Координаты (для сопоставления с контурами районов и поиска по радиусу)
+            Double latitude = readCoordinate(item, "latitude", "lat");
+            Double longitude = readCoordinate(item, "longitude", "lng");
+
             // Описание
             String description = item.path("description").asText(null);
 
@@ -234,6 +401,8 @@ public class ApifyService {
                     .price(price)
                     .numRooms(numRooms)
                     .district(district)
+                    .latitude(latitude)
+                    .longitude(longitude)
                     .description(description)
                     .photoUrls(photoUrls)
                     .build();
@@ -245,27 +414,14 @@ public class ApifyService {
     }
 
     /**
-     * Извлечь ID квартиры из URL
+     * Прочитать координату: основное поле или альтернативное, null если нет числа
      */
-    private String extractIdFromUrl(String url) {
-        if (url == null) return null;
-
-        // URL Idealista обычно содержит ID в конце, например:
-        // https://www.idealista.com/inmueble/98765432/
-        try {
-            String[] parts = url.split("/");
-            for (int i = parts.length - 1; i >= 0; i--) {
-                String part = parts[i];
-                if (!part.isEmpty() && part.matches("\\d+")) {
-                    return part;
-                }
-            }
-        } catch (Exception e) {
-            log.debug("Failed to extract ID from URL: {}", url);
+    private Double readCoordinate(JsonNode item, String field, String alternativeField) {
+        JsonNode node = item.path(field);
+        if (!node.isNumber()) {
+            node = item.path(alternativeField);
         }
-
-        // Если не получилось, используем весь URL как ID
-        return String.valueOf(url.hashCode());
+        return node.isNumber() ? node.asDouble() : null;
     }
 
     /**
@@ -281,20 +437,11 @@ public class ApifyService {
             return listings;
         }
 
-        // Фильтруем по районам (игнорируем регистр)
-        List<String> districtsLower = districts.stream()
-                .map(String::toLowerCase)
-                .toList();
+        // Выбор пользователя компилируется в маску один раз, дальше - пересечение масок
+        long selectedMask = districtMatcher.maskOf(districts);
 
         return listings.stream()
-                .filter(listing -> {
-                    if (listing.getDistrict() == null) {
-                        return false;
-                    }
-                    String listingDistrict = listing.getDistrict().toLowerCase();
-                    return districtsLower.stream()
-                            .anyMatch(listingDistrict::contains);
-                })
+                .filter(listing -> districtMatcher.matches(listing, selectedMask))
                 .toList();
     }
 }
@@ -0,0 +1,98 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.SchedulerConfig;
+import com.realestate.bot.model.entity.Search;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Расчёт интервала проверки поиска по истории его проверок
+ *
+ * После каждой проверки обновляются два скользящих средних (EWMA) в объявлениях в час:
+ * hit rate - сколько объявлений оказалось новыми для пользователя, market velocity - сколько
+ * подходящих по критериям объявлений появилось или изменилось (независимо от того, отправлялись ли они).
+ * Интервал выбирается так, чтобы одна проверка в среднем находила target-hits-per-check объявлений,
+ * и ограничивается [min-interval, max-interval]: запросы к скраперу уходят туда, где важна свежесть.
+ * Первая проверка задаёт начальные средние - частоту, при которой интервал равен check-interval.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CheckIntervalPolicy {
+
+    // Проверки чаще раза в минуту не дают осмысленной оценки частоты
+    private static final double MIN_ELAPSED_HOURS = 1.0 / 60;
+
+    private final SchedulerConfig schedulerConfig;
+
+    /**
+     * Интервал нового поиска (в минутах)
+     */
+    public int initialIntervalMinutes() {
+        return (int) schedulerConfig.getCheckInterval().toMinutes();
+    }
+
+    /**
+     * Учесть результат проверки: обновить средние, интервал, время последней и следующей проверки
+     *
+     * @param search поиск (изменяется)
+     * @param newListings сколько объявлений оказались новыми для пользователя
+     * @param marketChanges сколько подходящих объявлений появилось или изменилось с прошлой проверки
+     * @param now время проверки
+     */
+    public void recordCheck(Search search, int newListings, int marketChanges, LocalDateTime now) {
+        // Первая проверка возвращает весь накопившийся рынок - для оценки частоты она не годится,
+        // поэтому средние начинаются с частоты исходного интервала; дальше они только сглаживаются
+        boolean firstCheck = search.getLastCheckedAt() == null;
+        if (firstCheck) {
+            double initialRate = schedulerConfig.getTargetHitsPerCheck() * 60.0 / initialIntervalMinutes();
+            search.setHitRate(initialRate);
+            search.setMarketVelocity(initialRate);
+        } else {
+            double hours = Math.max(Duration.between(search.getLastCheckedAt(), now).toSeconds() / 3600.0,
+                    MIN_ELAPSED_HOURS);
+            search.setHitRate(ewma(search.getHitRate(), newListings / hours));
+            search.setMarketVelocity(ewma(search.getMarketVelocity(), marketChanges / hours));
+        }
+
+        int intervalMinutes = schedulerConfig.isAdaptive() && !firstCheck
+                ? intervalMinutes(search.getHitRate(), search.getMarketVelocity())
+                : initialIntervalMinutes();
+
+        if (search.getCheckIntervalMinutes() == null || search.getCheckIntervalMinutes() != intervalMinutes) {
+            log.debug("Check interval of search {} changed to {} min (hit rate {}/h, market velocity {}/h)",
+                    search.getId(), intervalMinutes,
+                    String.format("%.2f", search.getHitRate()), String.format("%.2f", search.getMarketVelocity()));
+        }
+
+        search.setCheckIntervalMinutes(intervalMinutes);
+        search.setLastCheckedAt(now);
+        search.setNextCheckAt(now.plusMinutes(intervalMinutes));
+    }
+
+    private double ewma(double previous, double sample) {
+        double alpha = schedulerConfig.getEwmaAlpha();
+        return alpha * sample + (1 - alpha) * previous;
+    }
+
+    /**
+     * Интервал по ожидаемой частоте объявлений: target / rate, в пределах [min, max]
+     */
+    int intervalMinutes(double hitRate, double marketVelocity) {
+        double weight = schedulerConfig.getVelocityWeight();
+        double ratePerHour = (1 - weight) * hitRate + weight * marketVelocity;
+
+        long min = schedulerConfig.getMinInterval().toMinutes();
+        long max = schedulerConfig.getMaxInterval().toMinutes();
+        if (ratePerHour <= 0) {
+            return (int) max;
+        }
+
+        long minutes = Math.round(schedulerConfig.getTargetHitsPerCheck() / ratePerHour * 60);
+        return (int) Math.min(Math.max(minutes, min), max);
+    }
+}
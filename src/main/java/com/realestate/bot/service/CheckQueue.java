@@ -0,0 +1,126 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.SchedulerConfig;
+import com.realestate.bot.model.enums.CheckLane;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Очередь проверок поисков с полосами приоритета
+ *
+ * Полосы разбираются взвешенным round-robin (веса в scheduler.lanes): из полосы подряд берётся
+ * не больше её веса, затем очередь переходит к следующей. Свежие поиски обгоняют накопившееся
+ * расписание, но обычные и "застывшие" поиски продолжают проверяться даже при потоке свежих.
+ * Поиск находится в очереди не больше одного раза; повторная постановка в более приоритетную
+ * полосу переносит его туда.
+ */
+@Component
+@RequiredArgsConstructor
+public class CheckQueue {
+
+    private static final CheckLane[] LANES = CheckLane.values();
+
+    private final SchedulerConfig schedulerConfig;
+
+    private final Map<CheckLane, ArrayDeque<Long>> lanes = new EnumMap<>(CheckLane.class);
+    private final Map<Long, CheckLane> queued = new HashMap<>();
+
+    // Текущая полоса round-robin и сколько ещё поисков можно из неё взять
+    private int current = LANES.length - 1;
+    private int credit;
+
+    /**
+     * Поиск из очереди и полоса, из которой он взят
+     */
+    public record Entry(Long searchId, CheckLane lane) {
+    }
+
+    /**
+     * Поставить поиск в очередь
+     *
+     * @param searchId ID поиска
+     * @param lane полоса
+     */
+    public synchronized void offer(Long searchId, CheckLane lane) {
+        CheckLane existing = queued.get(searchId);
+        if (existing != null) {
+            if (existing.ordinal() <= lane.ordinal()) {
+                return;
+            }
+            lanes.get(existing).remove(searchId);
+        }
+        lanes.computeIfAbsent(lane, l -> new ArrayDeque<>()).addLast(searchId);
+        queued.put(searchId, lane);
+        notifyAll();
+    }
+
+    /**
+     * Взять следующий поиск
+     *
+     * @return поиск или null, если очередь пуста
+     */
+    public synchronized Entry poll() {
+        if (queued.isEmpty()) {
+            return null;
+        }
+        // Не больше полного круга: хотя бы одна полоса непуста
+        for (int step = 0; step <= LANES.length; step++) {
+            ArrayDeque<Long> lane = lanes.get(LANES[current]);
+            if (credit > 0 && lane != null && !lane.isEmpty()) {
+                credit--;
+                Long searchId = lane.pollFirst();
+                queued.remove(searchId);
+                return new Entry(searchId, LANES[current]);
+            }
+            current = (current + 1) % LANES.length;
+            credit = weight(LANES[current]);
+        }
+        return null;
+    }
+
+    /**
+     * Взять следующий поиск, дождавшись его появления
+     */
+    public synchronized Entry take() throws InterruptedException {
+        Entry entry;
+        while ((entry = poll()) == null) {
+            wait();
+        }
+        return entry;
+    }
+
+    /**
+     * Количество поисков в очереди
+     */
+    public synchronized int size() {
+        return queued.size();
+    }
+
+    /**
+     * Количество поисков в каждой полосе
+     */
+    public synchronized Map<CheckLane, Integer> sizes() {
+        Map<CheckLane, Integer> sizes = new EnumMap<>(CheckLane.class);
+        for (CheckLane lane : LANES) {
+            ArrayDeque<Long> deque = lanes.get(lane);
+            sizes.put(lane, deque != null ? deque.size() : 0);
+        }
+        return sizes;
+    }
+
+    private int weight(CheckLane lane) {
+        SchedulerConfig.Lanes weights = schedulerConfig.getLanes();
+        int weight = switch (lane) {
+            case FRESH -> weights.getFresh();
+            case PREMIUM -> weights.getPremium();
+            case NORMAL -> weights.getNormal();
+            case STALE -> weights.getStale();
+        };
+        return Math.max(weight, 1);
+    }
+}
@@ -0,0 +1,179 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.ClusterConfig;
+import com.realestate.bot.config.datasource.Workload;
+import com.realestate.bot.config.datasource.WorkloadContext;
+import com.realestate.bot.repository.ClusterMemberRepository;
+import com.realestate.bot.repository.LeaseRepository;
+import com.realestate.bot.telegram.TelegramIntake;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Координация экземпляров бота через общую БД
+ *
+ * Каждый heartbeat экземпляр продлевает своё членство в cluster_members и пытается захватить
+ * или продлить аренду telegram-intake; держатель аренды - лидер, только он принимает апдейты.
+ * Лидер, не сумевший продлить аренду, останавливает приём до её истечения, поэтому два экземпляра
+ * не опрашивают getUpdates одновременно дольше одного heartbeat. Heartbeat и проверка срока лидерства
+ * идут в собственных потоках: долгие задачи общего планировщика Spring их не задерживают.
+ *
+ * Каждый heartbeat экземпляр также перечитывает изменённые поиски в обратный индекс ({@link SearchIndex#refresh}):
+ * поиск мог создать, изменить или приостановить лидер, принявший апдейт.
+ *
+ * Распределение пользователей между живыми экземплярами - {@link ClusterMembership}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterCoordinator {
+
+    static final String INTAKE_LEASE = "telegram-intake";
+
+    private final ClusterConfig clusterConfig;
+    private final ClusterMemberRepository clusterMemberRepository;
+    private final LeaseRepository leaseRepository;
+    private final TelegramIntake telegramIntake;
+    private final ClusterMembership clusterMembership;
+    private final SearchIndex searchIndex;
+    private final ListingService listingService;
+
+    private volatile boolean leader;
+
+    // До какого момента (мс, локальные часы) лидерство гарантировано последним продлением
+    private volatile long leaderUntil;
+
+    // Как часто сверять срок лидерства с часами
+    private static final Duration LEADERSHIP_CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    private ThreadPoolTaskScheduler coordinationScheduler;
+
+    /**
+     * Один экземпляр принимает апдейты сразу (ошибка регистрации останавливает запуск),
+     * в кластере - после первого heartbeat, если аренда свободна
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!clusterConfig.isEnabled()) {
+            leader = true;
+            telegramIntake.start();
+            return;
+        }
+        log.info("Joining cluster as {}", clusterMembership.getInstanceId());
+        coordinationScheduler = new ThreadPoolTaskScheduler();
+        coordinationScheduler.setPoolSize(2);
+        coordinationScheduler.setThreadNamePrefix("cluster-");
+        coordinationScheduler.setDaemon(true);
+        coordinationScheduler.initialize();
+        coordinationScheduler.scheduleWithFixedDelay(this::heartbeat, clusterConfig.getHeartbeatInterval());
+        coordinationScheduler.scheduleAtFixedRate(this::checkLeadership, LEADERSHIP_CHECK_INTERVAL);
+    }
+
+    /**
+     * Продлить членство, обновить список живых экземпляров и аренду лидера
+     */
+    private void heartbeat() {
+        WorkloadContext.run(Workload.BATCH, this::renew);
+        refreshSearchIndex();
+    }
+
+    /**
+     * Обновить обратный индекс по изменениям поисков в БД и выбросить ящики ушедших или изменённых поисков
+     */
+    private void refreshSearchIndex() {
+        try {
+            for (Long searchId : searchIndex.refresh()) {
+                listingService.evictInbox(searchId);
+            }
+        } catch (Exception e) {
+            log.error("Search index refresh failed", e);
+        }
+    }
+
+    /**
+     * Остановить приём апдейтов, как только истёк срок лидерства, даже если heartbeat завис на запросе к БД
+     */
+    private void checkLeadership() {
+        if (leader && System.currentTimeMillis() >= leaderUntil) {
+            log.warn("Instance {} could not renew the intake lease in time", clusterMembership.getInstanceId());
+            setLeader(false);
+        }
+    }
+
+    private void renew() {
+        long ttlSeconds = clusterConfig.getMemberTtl().toSeconds();
+        long startedAt = System.currentTimeMillis();
+        String instanceId = clusterMembership.getInstanceId();
+        try {
+            clusterMemberRepository.heartbeat(instanceId);
+            clusterMemberRepository.deleteExpired(ttlSeconds);
+            clusterMembership.update(clusterMemberRepository.findLiveIds(ttlSeconds));
+
+            boolean acquired = leaseRepository.tryAcquire(INTAKE_LEASE, instanceId, ttlSeconds) == 1;
+            if (acquired) {
+                // Запас в один heartbeat: лидерство заканчивается раньше, чем аренду сможет забрать другой
+                leaderUntil = startedAt + clusterConfig.getMemberTtl().toMillis()
+                        - clusterConfig.getHeartbeatInterval().toMillis();
+            }
+            setLeader(acquired);
+        } catch (Exception e) {
+            // Лидерство снимет checkLeadership, когда истечёт срок последнего продления
+            log.error("Cluster heartbeat failed", e);
+        }
+    }
+
+    private synchronized void setLeader(boolean acquired) {
+        String instanceId = clusterMembership.getInstanceId();
+        if (acquired) {
+            if (!leader) {
+                log.info("Instance {} became leader: taking over Telegram update intake", instanceId);
+            }
+            leader = true;
+            try {
+                // Повторяется каждый heartbeat, пока регистрация не удастся
+                telegramIntake.start();
+            } catch (IllegalStateException e) {
+                log.warn("Leader could not start Telegram intake, will retry: {}", e.getMessage());
+            }
+        } else if (leader) {
+            log.info("Instance {} lost leadership: stopping Telegram update intake", instanceId);
+            leader = false;
+            telegramIntake.stop();
+        }
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    /**
+     * Уйти из кластера сразу, не дожидаясь истечения heartbeat: поиски и лидерство переходят к остальным
+     */
+    @PreDestroy
+    public void leave() {
+        if (coordinationScheduler != null) {
+            coordinationScheduler.shutdown();
+        }
+        telegramIntake.stop();
+        if (!clusterConfig.isEnabled()) {
+            return;
+        }
+        String instanceId = clusterMembership.getInstanceId();
+        try {
+            if (leader) {
+                leaseRepository.release(INTAKE_LEASE, instanceId);
+            }
+            clusterMemberRepository.deleteById(instanceId);
+            log.info("Instance {} left the cluster", instanceId);
+        } catch (Exception e) {
+            log.warn("Could not leave the cluster cleanly: {}", e.getMessage());
+        }
+    }
+}
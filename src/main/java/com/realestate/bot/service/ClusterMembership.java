@@ -0,0 +1,120 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.ClusterConfig;
+import com.realestate.bot.util.Hashes;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ID этого экземпляра, список живых экземпляров и распределение пользователей между ними
+ *
+ * Пользователь (со всеми его поисками) принадлежит живому экземпляру с наибольшим весом
+ * hash(экземпляр, пользователь) (rendezvous-хеширование): при входе или уходе экземпляра переезжает
+ * только ~1/N пользователей. Проверки, отложенные доставки и лимит сообщений пользователя живут
+ * на одном экземпляре. Список живых экземпляров обновляет {@link ClusterCoordinator}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterMembership {
+
+    private final ClusterConfig clusterConfig;
+
+    private String instanceId;
+
+    /**
+     * Живые экземпляры (в порядке ID) и их хеши; сам экземпляр есть всегда
+     */
+    private record Membership(List<String> members, long[] hashes) {
+    }
+
+    private volatile Membership membership;
+
+    @PostConstruct
+    void init() {
+        instanceId = clusterConfig.getInstanceId() != null && !clusterConfig.getInstanceId().isBlank()
+                ? clusterConfig.getInstanceId()
+                : defaultInstanceId();
+        membership = membershipOf(List.of(instanceId));
+    }
+
+    /**
+     * Обновить список живых экземпляров
+     *
+     * @param live экземпляры с действующим heartbeat
+     */
+    void update(List<String> live) {
+        List<String> members = new ArrayList<>(live);
+        if (!members.contains(instanceId)) {
+            members.add(instanceId);
+            members.sort(null);
+        }
+        if (!members.equals(membership.members())) {
+            log.info("Cluster membership changed: {} -> {}", membership.members(), members);
+            membership = membershipOf(members);
+        }
+    }
+
+    /**
+     * Принадлежат ли поиски пользователя этому экземпляру
+     *
+     * @param userId ID пользователя (users.id)
+     * @return true вне кластера и если у экземпляра наибольший вес для пользователя
+     */
+    public boolean owns(Long userId) {
+        Membership current = membership;
+        if (!clusterConfig.isEnabled() || current.members().size() == 1) {
+            return true;
+        }
+        long key = Hashes.mix64(userId);
+        int owner = 0;
+        long best = Long.MIN_VALUE;
+        for (int i = 0; i < current.hashes().length; i++) {
+            long weight = Hashes.mix64(current.hashes()[i] ^ key);
+            if (weight > best) {
+                best = weight;
+                owner = i;
+            }
+        }
+        return current.members().get(owner).equals(instanceId);
+    }
+
+    /**
+     * Количество живых экземпляров (не меньше 1)
+     */
+    public int memberCount() {
+        return membership.members().size();
+    }
+
+    public List<String> members() {
+        return membership.members();
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    private static Membership membershipOf(List<String> members) {
+        long[] hashes = new long[members.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = Hashes.fnv1a64(members.get(i));
+        }
+        return new Membership(List.copyOf(members), hashes);
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "bot";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,382 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.DeliveryConfig;
+import com.realestate.bot.config.datasource.Workload;
+import com.realestate.bot.config.datasource.WorkloadContext;
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.model.entity.Search;
+import com.realestate.bot.model.entity.User;
+import com.realestate.bot.telegram.TelegramBot;
+import com.realestate.bot.util.RussianPlural;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенная доставка новых объявлений с учётом политики пользователя
+ *
+ * Проверка поисков только ставит доставку в очередь с задержкой ({@link DelayQueue}):
+ * время дайджеста откладывает её до ближайшего такого времени, тихие часы - до их окончания,
+ * лимит сообщений в час - до момента, когда из скользящего часа выйдет достаточно отправок.
+ * При выпуске тихие часы и лимит проверяются заново (и для доставок ко времени дайджеста).
+ * Один поток забирает созревшие доставки с интервалом не меньше delivery.schedule.min-interval,
+ * поэтому пик после проверки растягивается в ровный поток. БД при ожидании не опрашивается.
+ *
+ * Пока доставка ждёт, объявления не отмечены отправленными и находятся повторно -
+ * они дописываются к уже запланированной доставке поиска, а не отправляются второй раз,
+ * и не считаются новыми повторно (см. {@link #schedule}). Объявления выпущенной доставки остаются
+ * "в отправке", пока не отмечены отправленными: проверка, идущая во время отправки, их пропускает.
+ * Очередь хранится в памяти: при перезапуске неотправленные объявления найдутся следующей проверкой.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeliveryScheduler {
+
+    private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final DeliveryService deliveryService;
+    private final SearchService searchService;
+    private final DeliveryConfig deliveryConfig;
+    private final TelegramBot telegramBot;
+    private final ObservationRegistry observationRegistry;
+    private final PipelineControl pipelineControl;
+
+    private final DelayQueue<PendingDelivery> queue = new DelayQueue<>();
+
+    // Запланированные доставки по ID поиска (элемент в очереди или обрабатывается потоком доставки)
+    private final Map<Long, PendingDelivery> pendingBySearch = new HashMap<>();
+
+    // ID объявлений выпущенных доставок, ещё не отмеченных отправленными, по ID поиска
+    private final Map<Long, Set<Long>> inFlightBySearch = new HashMap<>();
+
+    // Отправленные за последний час сообщения по чатам: {время, количество}
+    private final Map<Long, Deque<long[]>> sentByChat = new HashMap<>();
+
+    private volatile Thread worker;
+
+    /**
+     * Доставка по одному поиску: объявления по ID, время выпуска
+     */
+    private static final class PendingDelivery implements Delayed {
+
+        private final Long searchId;
+        private final Long chatId;
+        private final boolean atDigestTime;
+        private final Map<Long, ListingDto> listings = new LinkedHashMap<>();
+
+        // Меняется только когда элемент не находится в очереди
+        private long releaseAt;
+
+        private PendingDelivery(Long searchId, Long chatId, boolean atDigestTime) {
+            this.searchId = searchId;
+            this.chatId = chatId;
+            this.atDigestTime = atDigestTime;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(releaseAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(releaseAt, ((PendingDelivery) other).releaseAt);
+        }
+    }
+
+    /**
+     * Запустить поток доставки после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::runWorker, "delivery-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+        worker = thread;
+        log.info("Delivery scheduler started");
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        synchronized (this) {
+            if (!pendingBySearch.isEmpty()) {
+                log.info("Delivery scheduler stopped with {} pending deliveries", pendingBySearch.size());
+            }
+        }
+    }
+
+    /**
+     * Запланировать доставку новых объявлений по поиску
+     *
+     * @param search поиск (с загруженным пользователем)
+     * @param listings новые объявления
+     * @return сколько объявлений добавлено в доставку впервые (уже ждущие доставки - не новые
+     *         для частоты проверок, даже если найдена их более свежая версия)
+     */
+    public synchronized int schedule(Search search, List<ListingDto> listings) {
+        Set<Long> inFlight = inFlightBySearch.get(search.getId());
+        if (inFlight != null) {
+            // Уже отправляются: не в sent_listing_keys только потому, что отправка ещё идёт
+            listings = listings.stream()
+                    .filter(listing -> !inFlight.contains(listing.getIdealistaId()))
+                    .toList();
+        }
+        if (listings.isEmpty()) {
+            return 0;
+        }
+
+        PendingDelivery pending = pendingBySearch.get(search.getId());
+        if (pending != null) {
+            // Доставка уже ждёт - дописываем, более свежая версия объявления заменяет старую
+            int added = addListings(pending, listings);
+            log.debug("Merged {} listings into pending delivery for search {}", added, search.getId());
+            return added;
+        }
+
+        User user = search.getUser();
+        long now = System.currentTimeMillis();
+        pending = new PendingDelivery(search.getId(), user.getTelegramId(), user.getDigestTime() != null);
+        int added = addListings(pending, listings);
+        long earliest = pending.atDigestTime ? nextOccurrence(user.getDigestTime(), now) : now;
+        pending.releaseAt = releaseTime(user, earliest, deliveryService.estimateMessages(user, pending.listings.size()));
+
+        pendingBySearch.put(search.getId(), pending);
+        queue.add(pending);
+
+        if (pending.releaseAt > now) {
+            log.debug("Delivery for search {} deferred until {}", search.getId(), Instant.ofEpochMilli(pending.releaseAt));
+        }
+        return added;
+    }
+
+    /**
+     * Количество запланированных доставок
+     */
+    public synchronized int size() {
+        return pendingBySearch.size();
+    }
+
+    /**
+     * @return сколько объявлений не было в доставке
+     */
+    private int addListings(PendingDelivery pending, List<ListingDto> listings) {
+        int maxPending = deliveryConfig.getSchedule().getMaxPendingPerSearch();
+        int added = 0;
+        for (ListingDto listing : listings) {
+            if (listing.getIdealistaId() == null) {
+                continue;
+            }
+            // Не поместившиеся не отмечены отправленными и придут со следующей доставкой
+            if (pending.listings.size() >= maxPending && !pending.listings.containsKey(listing.getIdealistaId())) {
+                continue;
+            }
+            if (pending.listings.put(listing.getIdealistaId(), listing) == null) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private void runWorker() {
+        long minInterval = deliveryConfig.getSchedule().getMinInterval().toMillis();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // На паузе отправки созревшие доставки остаются в очереди и продолжают принимать объявления
+                pipelineControl.awaitSending();
+                PendingDelivery pending = queue.take();
+                if (pipelineControl.isSendingPaused()) {
+                    // Пауза включена, пока поток ждал в take()
+                    queue.add(pending);
+                    continue;
+                }
+                WorkloadContext.run(Workload.BATCH, () -> observeRelease(pending));
+                Thread.sleep(minInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Error in delivery scheduler", e);
+            }
+        }
+    }
+
+    /**
+     * Выпуск доставки в span delivery.release: отправки внутри - его потомки (с ID объявлений)
+     */
+    private void observeRelease(PendingDelivery pending) {
+        Observation.createNotStarted("delivery.release", observationRegistry)
+                .highCardinalityKeyValue("search.id", String.valueOf(pending.searchId))
+                .observe(() -> release(pending));
+    }
+
+    /**
+     * Выпустить созревшую доставку: перепроверить политику и отправить
+     */
+    private void release(PendingDelivery pending) {
+        // Поиск могли приостановить или удалить, пользователь мог изменить настройки
+        Optional<Search> searchOpt = searchService.findActiveWithUser(pending.searchId);
+        if (searchOpt.isEmpty()) {
+            synchronized (this) {
+                pendingBySearch.remove(pending.searchId);
+            }
+            log.debug("Dropped pending delivery for inactive search {}", pending.searchId);
+            return;
+        }
+        Search search = searchOpt.get();
+        User user = search.getUser();
+
+        List<ListingDto> listings;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            int messages = deliveryService.estimateMessages(user, pending.listings.size());
+            // За время ожидания могли уйти другие сообщения (лимит), начаться тихие часы
+            // или измениться настройки - в том числе у доставки ко времени дайджеста
+            long releaseAt = releaseTime(user, now, messages);
+            if (releaseAt > now) {
+                pending.releaseAt = releaseAt;
+                queue.add(pending);
+                return;
+            }
+            pendingBySearch.remove(pending.searchId);
+            listings = new ArrayList<>(pending.listings.values());
+            inFlightBySearch.computeIfAbsent(pending.searchId, id -> new HashSet<>())
+                    .addAll(pending.listings.keySet());
+            recordSent(pending.chatId, now, messages);
+        }
+
+        String header = String.format(
+                "🔔 Новые объявления!\n\n" +
+                "Найдено %d %s по вашему поиску:",
+                listings.size(),
+                RussianPlural.of(listings.size(), "квартира", "квартиры", "квартир")
+        );
+        try {
+            int sentCount = deliveryService.deliver(search, pending.chatId, header, listings, telegramBot);
+            log.info("Sent {} listings to user {}", sentCount, pending.chatId);
+        } finally {
+            // Отправленные уже отмечены (markAsSent закоммичен), неотправленные найдёт следующая проверка
+            synchronized (this) {
+                Set<Long> inFlight = inFlightBySearch.get(pending.searchId);
+                if (inFlight != null) {
+                    inFlight.removeAll(pending.listings.keySet());
+                    if (inFlight.isEmpty()) {
+                        inFlightBySearch.remove(pending.searchId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Ближайшее время, когда доставка разрешена политикой пользователя
+     *
+     * @param user пользователь
+     * @param now текущее время (мс)
+     * @param messages сколько сообщений займёт доставка
+     * @return время выпуска (мс), не раньше now
+     */
+    long releaseTime(User user, long now, int messages) {
+        // После сдвига по лимиту окно часа только освобождается, поэтому тихие часы проверяются последними
+        return afterQuietHours(user, afterHourlyLimit(user, now, messages));
+    }
+
+    private long afterHourlyLimit(User user, long at, int messages) {
+        Integer limit = user.getMaxMessagesPerHour();
+        Deque<long[]> sent = sentByChat.get(user.getTelegramId());
+        if (limit == null || sent == null) {
+            return at;
+        }
+
+        long windowStart = at - HOUR_MILLIS;
+        int total = 0;
+        for (long[] entry : sent) {
+            if (entry[0] > windowStart) {
+                total += (int) entry[1];
+            }
+        }
+
+        // Доставку больше лимита целиком пропускаем, когда час пуст - иначе она не уйдёт никогда
+        Iterator<long[]> oldest = sent.iterator();
+        while (total > 0 && total + messages > limit && oldest.hasNext()) {
+            long[] entry = oldest.next();
+            if (entry[0] > windowStart) {
+                total -= (int) entry[1];
+                at = entry[0] + HOUR_MILLIS;
+            }
+        }
+        return at;
+    }
+
+    private long afterQuietHours(User user, long at) {
+        if (!user.hasQuietHours()) {
+            return at;
+        }
+
+        ZonedDateTime time = Instant.ofEpochMilli(at).atZone(deliveryConfig.getSchedule().getZone());
+        if (!isQuiet(time.toLocalTime(), user.getQuietFrom(), user.getQuietTo())) {
+            return at;
+        }
+
+        ZonedDateTime end = time.with(user.getQuietTo());
+        if (!end.isAfter(time)) {
+            end = end.plusDays(1);
+        }
+        return end.toInstant().toEpochMilli();
+    }
+
+    /**
+     * Попадает ли время в интервал [from, to); интервал может переходить через полночь
+     */
+    static boolean isQuiet(LocalTime time, LocalTime from, LocalTime to) {
+        if (from.isBefore(to)) {
+            return !time.isBefore(from) && time.isBefore(to);
+        }
+        return !time.isBefore(from) || time.isBefore(to);
+    }
+
+    private long nextOccurrence(LocalTime localTime, long now) {
+        ZonedDateTime current = Instant.ofEpochMilli(now).atZone(deliveryConfig.getSchedule().getZone());
+        ZonedDateTime next = current.with(localTime);
+        if (!next.isAfter(current)) {
+            next = next.plusDays(1);
+        }
+        return next.toInstant().toEpochMilli();
+    }
+
+    private void recordSent(Long chatId, long now, int messages) {
+        Deque<long[]> sent = sentByChat.computeIfAbsent(chatId, id -> new ArrayDeque<>());
+        while (!sent.isEmpty() && sent.peekFirst()[0] <= now - HOUR_MILLIS) {
+            sent.pollFirst();
+        }
+        sent.addLast(new long[]{now, messages});
+    }
+
+    /**
+     * Удалить историю отправок старше часа
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    public synchronized void evictStale() {
+        long windowStart = System.currentTimeMillis() - HOUR_MILLIS;
+        sentByChat.values().forEach(sent -> sent.removeIf(entry -> entry[0] <= windowStart));
+        sentByChat.values().removeIf(Deque::isEmpty);
+    }
+}
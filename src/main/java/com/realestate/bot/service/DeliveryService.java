@@ -0,0 +1,149 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.DeliveryConfig;
+import com.realestate.bot.config.DigestConfig;
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.model.entity.Search;
+import com.realestate.bot.model.entity.User;
+import com.realestate.bot.model.enums.DeliveryMode;
+import com.realestate.bot.telegram.keyboard.KeyboardFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Доставка новых объявлений пользователю с учётом режима доставки:
+ * FULL - лучшие K отдельными сообщениями, остальные компактным списком;
+ * DIGEST - все одним сообщением со страницами (листание редактирует то же сообщение).
+ * После доставки объявления отмечаются отправленными.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeliveryService {
+
+    private final ListingRanker listingRanker;
+    private final TelegramService telegramService;
+    private final ListingService listingService;
+    private final DigestCache digestCache;
+    private final KeyboardFactory keyboardFactory;
+    private final DeliveryConfig deliveryConfig;
+    private final DigestConfig digestConfig;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Доставить объявления по поиску
+     *
+     * @param search поиск (с загруженным пользователем)
+     * @param chatId ID чата пользователя
+     * @param header заголовок ("Найдено N квартир")
+     * @param listings новые объявления
+     * @param sender отправитель (бот)
+     * @return количество доставленных объявлений
+     */
+    public int deliver(Search search, Long chatId, String header, List<ListingDto> listings, AbsSender sender) {
+        if (listings.isEmpty()) {
+            return 0;
+        }
+
+        DeliveryMode mode = search.getUser().getDeliveryMode();
+        List<ListingDto> delivered = mode == DeliveryMode.DIGEST
+                ? deliverDigest(search, chatId, header, listings, sender)
+                : deliverFull(search, chatId, header, listings, sender);
+
+        if (!delivered.isEmpty()) {
+            listingService.markAsSent(search, delivered);
+            recordDeliveryLatency(search, delivered);
+        }
+
+        log.info("Delivered {} of {} listings for search {} in {} mode",
+                delivered.size(), listings.size(), search.getId(), mode);
+        return delivered.size();
+    }
+
+    /**
+     * Задержка "объявление впервые замечено -> доставлено" (гистограмма listing.delivery.latency по типу изменения)
+     *
+     * Отсчёт идёт от момента, когда бот впервые увидел объявление (или его снижение цены, повторную публикацию),
+     * но не раньше создания поиска: рынок, накопившийся до поиска, не считается опозданием.
+     */
+    private void recordDeliveryLatency(Search search, List<ListingDto> delivered) {
+        LocalDateTime now = LocalDateTime.now();
+        for (ListingDto listing : delivered) {
+            LocalDateTime seenAt = listing.getChangedAt();
+            if (seenAt == null) {
+                continue;
+            }
+            if (search.getCreatedAt() != null && seenAt.isBefore(search.getCreatedAt())) {
+                seenAt = search.getCreatedAt();
+            }
+            String change = listing.getChangeType() != null
+                    ? listing.getChangeType().name().toLowerCase(Locale.ROOT)
+                    : "new";
+            Timer.builder("listing.delivery.latency")
+                    .description("От первого появления объявления в выдаче до доставки пользователю")
+                    .tag("change", change)
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(Duration.ofDays(1))
+                    .register(meterRegistry)
+                    .record(Duration.between(seenAt, now));
+        }
+    }
+
+    /**
+     * Сколько сообщений займёт доставка (для лимита сообщений в час)
+     *
+     * @param user пользователь
+     * @param listings количество объявлений
+     * @return оценка количества сообщений
+     */
+    public int estimateMessages(User user, int listings) {
+        if (user.getDeliveryMode() == DeliveryMode.DIGEST) {
+            return 1;
+        }
+        int top = Math.min(deliveryConfig.getTopK(), listings);
+        // Заголовок, лучшие K и (обычно одно) сообщение со списком остальных
+        return 1 + top + (listings > top ? 1 : 0);
+    }
+
+    /**
+     * Заголовок, лучшие K отдельными сообщениями, остальные списком
+     */
+    private List<ListingDto> deliverFull(Search search, Long chatId, String header,
+                                         List<ListingDto> listings, AbsSender sender) {
+        ListingRanker.Ranking ranking = listingRanker.rank(search, listings, deliveryConfig.getTopK());
+
+        telegramService.sendMessage(chatId, header, sender);
+        List<ListingDto> delivered = new ArrayList<>(telegramService.sendListings(chatId, ranking.top(), sender));
+        if (!ranking.rest().isEmpty()) {
+            // Отправленными отмечаются только объявления из дошедших частей списка
+            delivered.addAll(telegramService.sendDigest(chatId, ranking.rest(), sender));
+        }
+        return delivered;
+    }
+
+    /**
+     * Одно сообщение: первая страница дайджеста и кнопки листания
+     */
+    private List<ListingDto> deliverDigest(Search search, Long chatId, String header,
+                                           List<ListingDto> listings, AbsSender sender) {
+        // Полная сортировка по оценке: весь список попадает на страницы
+        List<ListingDto> ranked = listingRanker.rank(search, listings, listings.size()).top();
+        List<String> pages = telegramService.renderDigestPages(header, ranked, digestConfig.getPageSize());
+
+        long digestId = digestCache.put(chatId, pages);
+        Integer messageId = telegramService.sendMessage(chatId, pages.get(0),
+                keyboardFactory.createDigestPager(digestId, 0, pages.size()), sender);
+
+        return messageId != null ? ranked : List.of();
+    }
+}
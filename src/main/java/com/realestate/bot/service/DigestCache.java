@@ -0,0 +1,114 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.DigestConfig;
+import com.realestate.bot.config.datasource.Workload;
+import com.realestate.bot.config.datasource.WorkloadContext;
+import com.realestate.bot.model.entity.DigestPages;
+import com.realestate.bot.repository.DigestPagesRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Страницы отправленных дайджестов для листания кнопками
+ *
+ * Хранятся уже отформатированные страницы. Страницы пишутся в БД (digest_pages), поэтому листать
+ * можно на любом экземпляре бота и после перезапуска; в памяти - кеш недавно открывавшихся,
+ * ограниченный по размеру. Через digest.ttl после отправки листание отвечает "список устарел".
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DigestCache {
+
+    private final DigestConfig digestConfig;
+    private final DigestPagesRepository digestPagesRepository;
+
+    private final Map<Long, Digest> digests = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Digest> eldest) {
+            return size() > digestConfig.getMaxEntries();
+        }
+    };
+
+    /**
+     * Дайджест: чат, в который он отправлен, и страницы текста
+     */
+    public record Digest(Long chatId, List<String> pages, long createdAt) {
+    }
+
+    /**
+     * Сохранить страницы дайджеста
+     *
+     * @return ID дайджеста для callback data
+     */
+    public long put(Long chatId, List<String> pages) {
+        DigestPages saved = digestPagesRepository.save(DigestPages.builder()
+                .chatId(chatId)
+                .pages(List.copyOf(pages))
+                .createdAt(OffsetDateTime.now())
+                .build());
+        synchronized (this) {
+            digests.put(saved.getId(), new Digest(chatId, List.copyOf(pages), System.currentTimeMillis()));
+        }
+        return saved.getId();
+    }
+
+    /**
+     * Получить дайджест, если он ещё не устарел
+     */
+    public Optional<Digest> get(long digestId) {
+        Digest digest;
+        synchronized (this) {
+            digest = digests.get(digestId);
+        }
+        if (digest == null) {
+            // Отправлен другим экземпляром или вытеснен из памяти
+            digest = digestPagesRepository.findById(digestId)
+                    .map(pages -> new Digest(pages.getChatId(), List.copyOf(pages.getPages()),
+                            pages.getCreatedAt().toInstant().toEpochMilli()))
+                    .orElse(null);
+            if (digest == null) {
+                return Optional.empty();
+            }
+        }
+        if (System.currentTimeMillis() - digest.createdAt() > digestConfig.getTtl().toMillis()) {
+            synchronized (this) {
+                digests.remove(digestId);
+            }
+            return Optional.empty();
+        }
+        synchronized (this) {
+            digests.put(digestId, digest);
+        }
+        return Optional.of(digest);
+    }
+
+    /**
+     * Количество дайджестов в памяти
+     */
+    public synchronized int size() {
+        return digests.size();
+    }
+
+    /**
+     * Удалить из БД дайджесты старше digest.ttl
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    public void deleteExpired() {
+        try {
+            int deleted = WorkloadContext.call(Workload.BATCH,
+                    () -> digestPagesRepository.deleteExpired(digestConfig.getTtl().toSeconds()));
+            log.debug("Deleted {} expired digests", deleted);
+        } catch (Exception e) {
+            log.error("Error deleting expired digests", e);
+        }
+    }
+}
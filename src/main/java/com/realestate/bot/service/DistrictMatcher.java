@@ -0,0 +1,195 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.telegram.keyboard.KeyboardFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Нормализация и сопоставление районов Валенсии
+ *
+ * Строится один раз по каталогу {@link KeyboardFactory#DISTRICTS}. Каждому району каталога
+ * соответствует бит в маске long; свободный текст района из объявления (на валенсийском или испанском,
+ * с акцентами или без, с названием квартала) превращается в маску один раз и кешируется.
+ * Если у объявления есть координаты, к маске добавляются районы из {@link GeoDistrictIndex}
+ * (скрапер не всегда заполняет district/neighborhood).
+ * Сопоставление объявления с поиском - пересечение двух масок.
+ */
+@Component
+@Slf4j
+public class DistrictMatcher {
+
+    // Альтернативные названия: испанские/валенсийские варианты и кварталы внутри района
+    private static final Map<String, List<String>> ALIASES = Map.of(
+            "Ciutat Vella", List.of("Ciudad Vieja", "Casco Antiguo", "El Carme", "El Carmen", "La Seu",
+                    "La Xerea", "El Pilar", "El Mercat", "El Mercado", "Sant Francesc", "San Francisco"),
+            "Ruzafa", List.of("Russafa"),
+            "El Pla del Real", List.of("Exposició", "Mestalla", "Jaume Roig", "Jaime Roig",
+                    "Ciutat Universitària", "Ciudad Universitaria"),
+            "Benimaclet", List.of("Camí de Vera", "Camino de Vera"),
+            "Algirós", List.of("L'Illa Perduda", "La Isla Perdida", "Ciutat Jardí", "Ciudad Jardín",
+                    "L'Amistat", "La Amistad", "La Bega Baixa", "La Vega Baja", "La Carrasca"),
+            "Campanar", List.of("Les Tendetes", "Las Tendetes", "El Calvari", "Sant Pau", "San Pablo"),
+            "L'Eixample", List.of("Ensanche", "El Pla del Remei", "Gran Via"),
+            "Extramurs", List.of("Extramuros", "El Botànic", "El Botánico", "La Roqueta", "La Petxina",
+                    "La Pechina", "Arrancapins"),
+            "Poblats Marítims", List.of("Poblados Marítimos", "El Grau", "El Grao", "El Cabanyal",
+                    "El Cabañal", "El Canyamelar", "El Cañamelar", "La Malva-rosa", "Malvarrosa",
+                    "Beteró", "Natzaret", "Nazaret")
+    );
+
+    // Артикли в начале названия не участвуют в сравнении ("L'Eixample" = "Eixample")
+    private static final Pattern LEADING_ARTICLE = Pattern.compile("^(l|el|la|els|les|los|las) ");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+
+    // Кеш разобранных строк района из объявлений; различных строк немного, но ограничим на всякий случай
+    private static final int MAX_CACHE_SIZE = 10_000;
+
+    private final List<String> districts;
+    private final Map<String, Integer> aliasToId = new HashMap<>();
+    private final String[] paddedAliases;
+    private final int[] paddedAliasIds;
+    private final Map<String, Long> resolvedCache = new ConcurrentHashMap<>();
+    private final GeoDistrictIndex geoDistrictIndex;
+
+    @Autowired
+    public DistrictMatcher(GeoDistrictIndex geoDistrictIndex) {
+        this(KeyboardFactory.DISTRICTS, geoDistrictIndex);
+    }
+
+    DistrictMatcher(List<String> catalog, GeoDistrictIndex geoDistrictIndex) {
+        if (catalog.size() > Long.SIZE) {
+            throw new IllegalStateException("District catalog does not fit into a 64-bit mask: " + catalog.size());
+        }
+        this.districts = List.copyOf(catalog);
+        this.geoDistrictIndex = geoDistrictIndex;
+
+        for (int id = 0; id < districts.size(); id++) {
+            String district = districts.get(id);
+            aliasToId.put(normalize(district), id);
+            for (String alias : ALIASES.getOrDefault(district, List.of())) {
+                aliasToId.put(normalize(alias), id);
+            }
+        }
+
+        // Для поиска подстрокой: длинные названия первыми, с пробелами по краям (границы слов)
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(aliasToId.entrySet());
+        entries.sort(Comparator.comparingInt((Map.Entry<String, Integer> e) -> e.getKey().length()).reversed());
+        paddedAliases = new String[entries.size()];
+        paddedAliasIds = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            paddedAliases[i] = " " + entries.get(i).getKey() + " ";
+            paddedAliasIds[i] = entries.get(i).getValue();
+        }
+
+        log.info("District matcher built: {} districts, {} aliases", districts.size(), aliasToId.size());
+    }
+
+    /**
+     * Нормализовать название района: без акцентов, в нижнем регистре, без пунктуации и начального артикля
+     */
+    public static String normalize(String raw) {
+        if (raw == null) {
+            return "";
+        }
+        String result = Normalizer.normalize(raw, Normalizer.Form.NFD);
+        result = COMBINING_MARKS.matcher(result).replaceAll("");
+        result = result.toLowerCase(Locale.ROOT);
+        result = NON_ALPHANUMERIC.matcher(result).replaceAll(" ").trim();
+        return LEADING_ARTICLE.matcher(result).replaceFirst("");
+    }
+
+    /**
+     * Маска районов каталога, упомянутых в строке района из объявления (0 - район не распознан)
+     */
+    public long resolve(String rawDistrict) {
+        if (rawDistrict == null || rawDistrict.isEmpty()) {
+            return 0L;
+        }
+
+        Long cached = resolvedCache.get(rawDistrict);
+        if (cached != null) {
+            return cached;
+        }
+
+        long mask = computeMask(rawDistrict);
+        if (resolvedCache.size() >= MAX_CACHE_SIZE) {
+            resolvedCache.clear();
+        }
+        resolvedCache.put(rawDistrict, mask);
+        return mask;
+    }
+
+    /**
+     * Маска районов объявления: по тексту района и по координатам
+     */
+    public long resolve(ListingDto listing) {
+        return resolve(listing.getDistrict())
+                | geoDistrictIndex.locate(listing.getLatitude(), listing.getLongitude());
+    }
+
+    /**
+     * Маска выбранных пользователем районов (0 - ничего не выбрано или ничего не распознано)
+     */
+    public long maskOf(Collection<String> selectedDistricts) {
+        long mask = 0L;
+        if (selectedDistricts == null) {
+            return mask;
+        }
+        for (String district : selectedDistricts) {
+            Integer id = aliasToId.get(normalize(district));
+            if (id != null) {
+                mask |= 1L << id;
+            } else {
+                log.warn("Unknown district in search criteria: {}", district);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Проверить, попадает ли район объявления в выбранную маску
+     */
+    public boolean matches(ListingDto listing, long selectedMask) {
+        return (resolve(listing) & selectedMask) != 0;
+    }
+
+    /**
+     * Названия районов каталога по маске
+     */
+    public List<String> namesOf(long mask) {
+        List<String> names = new ArrayList<>();
+        for (int id = 0; id < districts.size(); id++) {
+            if ((mask & (1L << id)) != 0) {
+                names.add(districts.get(id));
+            }
+        }
+        return names;
+    }
+
+    private long computeMask(String rawDistrict) {
+        String normalized = normalize(rawDistrict);
+
+        Integer exact = aliasToId.get(normalized);
+        if (exact != null) {
+            return 1L << exact;
+        }
+
+        // Строка вида "Ruzafa, Valencia" или "Barrio de Russafa": ищем названия как отдельные слова
+        String padded = " " + normalized + " ";
+        long mask = 0L;
+        for (int i = 0; i < paddedAliases.length; i++) {
+            if (padded.contains(paddedAliases[i])) {
+                mask |= 1L << paddedAliasIds[i];
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,79 @@
+package com.realestate.bot.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.realestate.bot.config.ListingSourcesConfig;
+import com.realestate.bot.exception.ApiException;
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.model.dto.SearchCriteriaDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Источник "fixture": объявления из локального JSON-файла (listing-sources.fixture.path)
+ *
+ * Файл читается заново, только если изменился, поэтому объявления можно добавлять во время работы бота.
+ * Фильтрует по цене и комнатам, как это делает Apify на своей стороне.
+ */
+@Component
+@ConditionalOnProperty(prefix = "listing-sources.fixture", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class FixtureListingSource implements ListingSource {
+
+    private static final TypeReference<List<ListingDto>> LISTINGS = new TypeReference<>() {
+    };
+
+    private final ListingSourcesConfig config;
+    private final ObjectMapper objectMapper;
+
+    // Содержимое файла и время его изменения на момент чтения
+    private List<ListingDto> listings = List.of();
+    private long loadedModifiedAt = -1;
+
+    @Override
+    public String name() {
+        return "fixture";
+    }
+
+    @Override
+    public Result fetch(SearchCriteriaDto criteria) {
+        return Result.fresh(load().stream()
+                .filter(listing -> matches(listing, criteria))
+                .map(ListingDto::copy)
+                .toList());
+    }
+
+    private synchronized List<ListingDto> load() {
+        Path path = Path.of(config.getFixture().getPath());
+        try {
+            long modifiedAt = Files.getLastModifiedTime(path).toMillis();
+            if (modifiedAt != loadedModifiedAt) {
+                listings = List.copyOf(objectMapper.readValue(path.toFile(), LISTINGS));
+                loadedModifiedAt = modifiedAt;
+                log.info("Loaded {} fixture listings from {}", listings.size(), path);
+            }
+            return listings;
+        } catch (IOException e) {
+            throw new ApiException("Не удалось прочитать объявления из " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean matches(ListingDto listing, SearchCriteriaDto criteria) {
+        Integer price = listing.getPrice();
+        if (criteria.getMinPrice() != null && (price == null || price < criteria.getMinPrice())) {
+            return false;
+        }
+        if (criteria.getMaxPrice() != null && (price == null || price > criteria.getMaxPrice())) {
+            return false;
+        }
+        return criteria.getNumRooms() == null || criteria.getNumRooms().equals(listing.getNumRooms());
+    }
+}
@@ -0,0 +1,224 @@
+package com.realestate.bot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.realestate.bot.telegram.keyboard.KeyboardFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пространственный индекс районов Валенсии по координатам объявления
+ *
+ * Контуры районов загружаются из geo/valencia-districts.json. Область вокруг них разбита
+ * на равномерную сетку; для каждой ячейки заранее известны районы, целиком её покрывающие,
+ * и районы, чья граница через неё проходит. Точная проверка "точка в многоугольнике"
+ * нужна только для граничных ячеек. Биты маски совпадают с DistrictMatcher (порядок каталога).
+ */
+@Component
+@Slf4j
+public class GeoDistrictIndex {
+
+    private static final String RESOURCE = "geo/valencia-districts.json";
+
+    // Размер ячейки сетки в градусах (~250 м по широте Валенсии)
+    private static final double CELL_SIZE = 0.0025;
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final List<Polygon> polygons = new ArrayList<>();
+
+    private double minLon;
+    private double minLat;
+    private int columns;
+    private int rows;
+
+    // Для каждой ячейки: районы, покрывающие её целиком, и районы с границей внутри ячейки
+    private long[] insideMasks;
+    private long[] boundaryMasks;
+
+    /**
+     * Контур района: вершины в массивах примитивов и ограничивающий прямоугольник
+     */
+    private record Polygon(int districtId, double[] lons, double[] lats,
+                           double minLon, double minLat, double maxLon, double maxLat) {
+
+        boolean contains(double lon, double lat) {
+            if (lon < minLon || lon > maxLon || lat < minLat || lat > maxLat) {
+                return false;
+            }
+            // Ray casting
+            boolean inside = false;
+            for (int i = 0, j = lons.length - 1; i < lons.length; j = i++) {
+                if ((lats[i] > lat) != (lats[j] > lat)
+                        && lon < (lons[j] - lons[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lons[i]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+    }
+
+    @Autowired
+    public GeoDistrictIndex(ObjectMapper objectMapper) {
+        this(objectMapper, KeyboardFactory.DISTRICTS);
+    }
+
+    GeoDistrictIndex(ObjectMapper objectMapper, List<String> catalog) {
+        try (InputStream in = new ClassPathResource(RESOURCE).getInputStream()) {
+            JsonNode root = objectMapper.readTree(in);
+            for (JsonNode district : root.path("districts")) {
+                String name = district.path("name").asText();
+                int districtId = catalog.indexOf(name);
+                if (districtId < 0) {
+                    log.warn("District polygon '{}' is not in the catalog, skipping", name);
+                    continue;
+                }
+                polygons.add(toPolygon(districtId, district.path("polygon")));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load district polygons from " + RESOURCE, e);
+        }
+
+        buildGrid();
+        log.info("Geo district index built: {} polygons, {}x{} grid", polygons.size(), columns, rows);
+    }
+
+    /**
+     * Маска районов каталога, в которые попадает точка (0 - вне известных районов или нет координат)
+     */
+    public long locate(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null || polygons.isEmpty()) {
+            return 0L;
+        }
+
+        int column = (int) Math.floor((longitude - minLon) / CELL_SIZE);
+        int row = (int) Math.floor((latitude - minLat) / CELL_SIZE);
+        if (column < 0 || column >= columns || row < 0 || row >= rows) {
+            return 0L;
+        }
+
+        int cell = row * columns + column;
+        long mask = insideMasks[cell];
+        for (long boundary = boundaryMasks[cell]; boundary != 0; boundary &= boundary - 1) {
+            int districtId = Long.numberOfTrailingZeros(boundary);
+            for (Polygon polygon : polygons) {
+                if (polygon.districtId() == districtId && polygon.contains(longitude, latitude)) {
+                    mask |= 1L << districtId;
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Проверить, что точка находится не дальше radiusKm от центра (по дуге большого круга)
+     */
+    public static boolean withinRadius(Double latitude, Double longitude,
+                                       double centerLat, double centerLon, double radiusKm) {
+        if (latitude == null || longitude == null) {
+            return false;
+        }
+        return distanceKm(latitude, longitude, centerLat, centerLon) <= radiusKm;
+    }
+
+    /**
+     * Расстояние между двумя точками в километрах (формула гаверсинусов)
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+
+    private static Polygon toPolygon(int districtId, JsonNode points) {
+        int size = points.size();
+        double[] lons = new double[size];
+        double[] lats = new double[size];
+        double minLon = Double.MAX_VALUE, minLat = Double.MAX_VALUE;
+        double maxLon = -Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+
+        for (int i = 0; i < size; i++) {
+            lons[i] = points.get(i).get(0).asDouble();
+            lats[i] = points.get(i).get(1).asDouble();
+            minLon = Math.min(minLon, lons[i]);
+            minLat = Math.min(minLat, lats[i]);
+            maxLon = Math.max(maxLon, lons[i]);
+            maxLat = Math.max(maxLat, lats[i]);
+        }
+        return new Polygon(districtId, lons, lats, minLon, minLat, maxLon, maxLat);
+    }
+
+    /**
+     * Разметить ячейки сетки: внутри района, на его границе или вне его
+     */
+    private void buildGrid() {
+        if (polygons.isEmpty()) {
+            insideMasks = new long[0];
+            boundaryMasks = new long[0];
+            return;
+        }
+
+        minLon = polygons.stream().mapToDouble(Polygon::minLon).min().orElseThrow();
+        minLat = polygons.stream().mapToDouble(Polygon::minLat).min().orElseThrow();
+        double maxLon = polygons.stream().mapToDouble(Polygon::maxLon).max().orElseThrow();
+        double maxLat = polygons.stream().mapToDouble(Polygon::maxLat).max().orElseThrow();
+        columns = (int) Math.ceil((maxLon - minLon) / CELL_SIZE) + 1;
+        rows = (int) Math.ceil((maxLat - minLat) / CELL_SIZE) + 1;
+
+        insideMasks = new long[columns * rows];
+        boundaryMasks = new long[columns * rows];
+
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                double cellMinLon = minLon + column * CELL_SIZE;
+                double cellMinLat = minLat + row * CELL_SIZE;
+                double cellMaxLon = cellMinLon + CELL_SIZE;
+                double cellMaxLat = cellMinLat + CELL_SIZE;
+                int cell = row * columns + column;
+
+                for (Polygon polygon : polygons) {
+                    if (cellMaxLon < polygon.minLon() || cellMinLon > polygon.maxLon()
+                            || cellMaxLat < polygon.minLat() || cellMinLat > polygon.maxLat()) {
+                        continue;
+                    }
+
+                    long bit = 1L << polygon.districtId();
+                    if (edgeNearCell(polygon, cellMinLon, cellMinLat, cellMaxLon, cellMaxLat)) {
+                        boundaryMasks[cell] |= bit;
+                    } else if (polygon.contains(cellMinLon, cellMinLat)) {
+                        // Граница не заходит в ячейку - ячейка целиком внутри или целиком снаружи
+                        insideMasks[cell] |= bit;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Консервативная проверка: пересекает ли прямоугольник какого-либо ребра контура ячейку
+     */
+    private static boolean edgeNearCell(Polygon polygon, double cellMinLon, double cellMinLat,
+                                        double cellMaxLon, double cellMaxLat) {
+        double[] lons = polygon.lons();
+        double[] lats = polygon.lats();
+        for (int i = 0, j = lons.length - 1; i < lons.length; j = i++) {
+            if (Math.max(lons[i], lons[j]) >= cellMinLon && Math.min(lons[i], lons[j]) <= cellMaxLon
+                    && Math.max(lats[i], lats[j]) >= cellMinLat && Math.min(lats[i], lats[j]) <= cellMaxLat) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
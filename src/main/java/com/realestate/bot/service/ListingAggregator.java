@@ -0,0 +1,150 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.exception.ApiException;
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.model.dto.SearchCriteriaDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Выдача всех источников объявлений по критериям одним списком
+ *
+ * Источники опрашиваются параллельно (по виртуальному потоку на источник), поэтому проверка длится
+ * столько, сколько самый медленный источник, а не их сумма. Каждый запрос - span listing.source.fetch
+ * с именем источника (потомок проверки поиска). Выдачи сливаются в порядке источников, объявление
+ * с уже встреченным ID отбрасывается. Упавший источник пропускается; ошибка - только если упали все.
+ * Свежие объявления отделяются от сохранённых выдач: один недоступный источник не делает
+ * несвежей выдачу остальных.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ListingAggregator {
+
+    private final List<ListingSource> sources;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Объединённая выдача источников
+     *
+     * @param listings все объявления без повторов
+     * @param fresh объявления источников, ответивших свежей выдачей (те же объекты, что в listings)
+     * @param fallback все ответившие источники отдали сохранённую выдачу - проверку не учитывать в расписании
+     * @param partial часть источников упала или отдала сохранённую выдачу
+     */
+    public record Merged(List<ListingDto> listings, List<ListingDto> fresh, boolean fallback, boolean partial) {
+
+        static Merged of(ListingSource.Result result) {
+            return new Merged(result.listings(), result.fallback() ? List.of() : result.listings(),
+                    result.fallback(), result.fallback());
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        log.info("Listing sources: {}", sources.stream().map(ListingSource::name).toList());
+    }
+
+    /**
+     * Объявления всех источников по критериям без повторов
+     *
+     * @param criteria критерии поиска
+     * @return объединённая выдача
+     * @throws ApiException если ни один источник не ответил
+     */
+    public Merged fetch(SearchCriteriaDto criteria) {
+        // Один источник опрашивается в потоке проверки, без пересадки на другой поток
+        if (sources.size() == 1) {
+            return Merged.of(fetchFrom(sources.get(0), criteria, observationRegistry.getCurrentObservation()));
+        }
+
+        Observation parent = observationRegistry.getCurrentObservation();
+        List<CompletableFuture<ListingSource.Result>> futures = new ArrayList<>(sources.size());
+        for (ListingSource source : sources) {
+            futures.add(CompletableFuture.supplyAsync(() -> fetchFrom(source, criteria, parent), executor));
+        }
+
+        Map<Long, ListingDto> merged = new LinkedHashMap<>();
+        Map<Long, ListingDto> fresh = new LinkedHashMap<>();
+        int fetched = 0;
+        RuntimeException failure = null;
+        int failed = 0;
+        int fallbacks = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                ListingSource.Result result = futures.get(i).join();
+                fetched += result.listings().size();
+                if (result.fallback()) {
+                    fallbacks++;
+                }
+                for (ListingDto listing : result.listings()) {
+                    merged.putIfAbsent(listing.getIdealistaId(), listing);
+                    if (!result.fallback()) {
+                        fresh.putIfAbsent(listing.getIdealistaId(), listing);
+                    }
+                }
+            } catch (Exception e) {
+                failed++;
+                failure = e.getCause() instanceof RuntimeException cause ? cause : new ApiException(e.getMessage(), e);
+                log.warn("Listing source {} failed: {}", sources.get(i).name(), failure.getMessage());
+            }
+        }
+        if (failed == sources.size()) {
+            throw failure;
+        }
+
+        // Объявление и в свежей, и в сохранённой выдаче - берём свежую копию (порядок не меняется)
+        merged.putAll(fresh);
+
+        meterRegistry.counter("listing.sources.duplicates").increment(fetched - merged.size());
+        log.debug("Merged {} listings from {} sources ({} duplicates, {} failed, {} fallback)",
+                merged.size(), sources.size(), fetched - merged.size(), failed, fallbacks);
+        return new Merged(new ArrayList<>(merged.values()), new ArrayList<>(fresh.values()),
+                fallbacks == sources.size() - failed, failed > 0 || fallbacks > 0);
+    }
+
+    /**
+     * Запрос к одному источнику в span listing.source.fetch (таймер с тегами source и outcome)
+     */
+    private ListingSource.Result fetchFrom(ListingSource source, SearchCriteriaDto criteria, Observation parent) {
+        Observation observation = Observation.createNotStarted("listing.source.fetch", observationRegistry)
+                .parentObservation(parent)
+                .lowCardinalityKeyValue("source", source.name())
+                .start();
+        String outcome = "error";
+        try (Observation.Scope scope = observation.openScope()) {
+            ListingSource.Result result = source.fetch(criteria);
+            outcome = result.fallback() ? "fallback" : "success";
+            observation.highCardinalityKeyValue("listings", String.valueOf(result.listings().size()));
+            return result;
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.lowCardinalityKeyValue("outcome", outcome);
+            observation.stop();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,167 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.DeliveryConfig;
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.model.entity.Search;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Ранжирование новых объявлений перед отправкой
+ *
+ * Оценка - взвешенная сумма (веса в delivery.weights) составляющих от 0 до 1: положение цены
+ * в диапазоне пользователя, свежесть, предпочтение района и количество фото.
+ * Лучшие K выбираются кучей размера K - O(n log k), остальные возвращаются для дайджеста.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ListingRanker {
+
+    // Свежесть убывает вдвое примерно за сутки
+    private static final double FRESHNESS_HALF_LIFE_HOURS = 24.0;
+    private static final int MAX_PHOTOS = 3;
+
+    private final DeliveryConfig deliveryConfig;
+    private final DistrictMatcher districtMatcher;
+
+    /**
+     * Результат ранжирования: лучшие K (по убыванию оценки) и остальные (в исходном порядке)
+     */
+    public record Ranking(List<ListingDto> top, List<ListingDto> rest) {
+    }
+
+    private record Scored(ListingDto listing, double score, int position) {
+    }
+
+    /**
+     * Выбрать k лучших объявлений для поиска
+     *
+     * @param search поиск
+     * @param listings новые объявления
+     * @param k сколько лучших вернуть
+     * @return лучшие и остальные
+     */
+    public Ranking rank(Search search, List<ListingDto> listings, int k) {
+        if (k <= 0) {
+            return new Ranking(List.of(), listings);
+        }
+        if (listings.size() <= 1) {
+            return new Ranking(listings, List.of());
+        }
+
+        long[] districtPreference = districtPreference(search);
+        LocalDateTime now = LocalDateTime.now();
+
+        // Куча с худшим из лучших на вершине
+        Comparator<Scored> byScore = Comparator.comparingDouble(Scored::score)
+                .thenComparing(Comparator.comparingInt(Scored::position).reversed());
+        PriorityQueue<Scored> heap = new PriorityQueue<>(k + 1, byScore);
+        boolean[] inTop = new boolean[listings.size()];
+
+        for (int i = 0; i < listings.size(); i++) {
+            Scored scored = new Scored(listings.get(i), score(search, listings.get(i), districtPreference, now), i);
+            if (heap.size() < k) {
+                heap.add(scored);
+                inTop[i] = true;
+            } else if (byScore.compare(scored, heap.peek()) > 0) {
+                inTop[heap.poll().position()] = false;
+                heap.add(scored);
+                inTop[i] = true;
+            }
+        }
+
+        List<Scored> best = new ArrayList<>(heap);
+        best.sort(byScore.reversed());
+        List<ListingDto> top = best.stream().map(Scored::listing).toList();
+
+        List<ListingDto> rest = new ArrayList<>(listings.size() - top.size());
+        for (int i = 0; i < listings.size(); i++) {
+            if (!inTop[i]) {
+                rest.add(listings.get(i));
+            }
+        }
+
+        log.debug("Ranked {} listings for search {}: top {} (best score {})",
+                listings.size(), search.getId(), top.size(), best.get(0).score());
+        return new Ranking(top, rest);
+    }
+
+    /**
+     * Оценка объявления от 0 до суммы весов
+     */
+    double score(Search search, ListingDto listing, long[] districtPreference, LocalDateTime now) {
+        DeliveryConfig.Weights weights = deliveryConfig.getWeights();
+        return weights.getPrice() * priceScore(search, listing)
+                + weights.getFreshness() * freshnessScore(listing, now)
+                + weights.getDistrict() * districtScore(listing, districtPreference)
+                + weights.getPhotos() * photosScore(listing);
+    }
+
+    /**
+     * Цена у нижней границы диапазона - 1, у верхней - 0
+     */
+    private static double priceScore(Search search, ListingDto listing) {
+        if (listing.getPrice() == null) {
+            return 0.0;
+        }
+        double price = listing.getPrice();
+        double min = search.getMinPrice() != null ? search.getMinPrice() : 0;
+        if (search.getMaxPrice() == null || search.getMaxPrice() <= min) {
+            return 0.5;
+        }
+        double position = (price - min) / (search.getMaxPrice() - min);
+        return 1.0 - Math.min(Math.max(position, 0.0), 1.0);
+    }
+
+    /**
+     * Экспоненциальное затухание от момента появления или последнего значимого изменения
+     */
+    private static double freshnessScore(ListingDto listing, LocalDateTime now) {
+        if (listing.getChangedAt() == null) {
+            return 0.5;
+        }
+        double hours = Math.max(0, Duration.between(listing.getChangedAt(), now).toMinutes() / 60.0);
+        return Math.pow(0.5, hours / FRESHNESS_HALF_LIFE_HOURS);
+    }
+
+    /**
+     * Первый выбранный район - 1, последний - близко к 0; районы не выбраны - 0.5
+     */
+    private double districtScore(ListingDto listing, long[] districtPreference) {
+        if (districtPreference.length == 0) {
+            return 0.5;
+        }
+        long listingMask = districtMatcher.resolve(listing);
+        for (int i = 0; i < districtPreference.length; i++) {
+            if ((listingMask & districtPreference[i]) != 0) {
+                return 1.0 - (double) i / districtPreference.length;
+            }
+        }
+        return 0.0;
+    }
+
+    private static double photosScore(ListingDto listing) {
+        if (listing.getPhotoUrls() == null) {
+            return 0.0;
+        }
+        return (double) Math.min(listing.getPhotoUrls().size(), MAX_PHOTOS) / MAX_PHOTOS;
+    }
+
+    /**
+     * Маски районов в порядке, в котором их выбрал пользователь
+     */
+    private long[] districtPreference(Search search) {
+        if (search.getDistricts() == null || search.getDistricts().isEmpty()) {
+            return new long[0];
+        }
+        return search.getDistricts().stream()
+                .mapToLong(district -> districtMatcher.maskOf(List.of(district)))
+                .toArray();
+    }
+}
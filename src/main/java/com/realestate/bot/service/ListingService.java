@@ -3,17 +3,23 @@ package com.realestate.bot.service;
 import com.realestate.bot.model.dto.ListingDto;
 import com.realestate.bot.model.dto.SearchCriteriaDto;
 import com.realestate.bot.model.entity.Search;
+import com.realestate.bot.model.entity.SearchStats;
 import com.realestate.bot.model.entity.SentListing;
+import com.realestate.bot.model.entity.SentListingKey;
+import com.realestate.bot.model.enums.ListingChangeType;
+import com.realestate.bot.repository.SearchStatsRepository;
+import com.realestate.bot.repository.SentListingKeyRepository;
 import com.realestate.bot.repository.SentListingRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Сервис для работы с объявлениями о недвижимости
@@ -24,7 +30,34 @@ import java.util.stream.Collectors;
 public class ListingService {
 
     private final ApifyService apifyService;
+    private final ListingAggregator listingAggregator;
     private final SentListingRepository sentListingRepository;
+    private final SentListingKeyRepository sentListingKeyRepository;
+    private final SearchStatsRepository searchStatsRepository;
+    private final SearchIndex searchIndex;
+    private final ListingStateStore listingStateStore;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    private final ClusterMembership clusterMembership;
+    private final MeterRegistry meterRegistry;
+
+    // Сколько объявлений, найденных для других поисков, держим в ожидании на один поиск
+    private static final int MAX_INBOX_SIZE = 200;
+
+    // Объявления, пришедшие из выдачи других поисков и подходящие этому поиску (searchId -> id -> объявление)
+    private final Map<Long, Map<Long, ListingDto>> inbox = new ConcurrentHashMap<>();
+
+    /**
+     * Результат проверки поиска
+     *
+     * @param newListings новые для пользователя объявления
+     * @param marketChanges сколько подходящих объявлений появилось или изменилось с прошлой проверки
+     *                      (включая уже отправленные и схлопнутые дубликаты) - скорость рынка по критериям
+     * @param fallback выдача не свежая (все ответившие источники отдали сохранённую) -
+     *                 проверку не учитывать в расписании
+     * @param partial часть источников упала или отдала сохранённую выдачу
+     */
+    public record CheckResult(List<ListingDto> newListings, int marketChanges, boolean fallback, boolean partial) {
+    }
 
     /**
      * Получить новые объявления для поиска (не отправленные ранее)
@@ -33,6 +66,16 @@ public class ListingService {
      * @return список новых объявлений
      */
     public List<ListingDto> getNewListings(Search search) {
+        return check(search).newListings();
+    }
+
+    /**
+     * Проверить поиск: новые объявления и скорость рынка по его критериям
+     *
+     * @param search поиск
+     * @return результат проверки
+     */
+    public CheckResult check(Search search) {
         log.info("Getting new listings for search: {}", search.getId());
 
         // Преобразуем Search в критерии
@@ -43,27 +86,235 @@ public class ListingService {
                 .districts(search.getDistricts())
                 .build();
 
-        // Ищем объявления через Apify
-        List<ListingDto> allListings = apifyService.searchListings(criteria);
+        // Ищем объявления во всех источниках (параллельно, без повторов)
+        ListingAggregator.Merged fetched = listingAggregator.fetch(criteria);
+        List<ListingDto> allListings = fetched.listings();
 
-        // Фильтруем по районам если указаны
-        List<ListingDto> filteredListings = apifyService.filterByDistricts(
-                allListings,
-                search.getDistricts()
+        // Только свежие объявления: сохранённая выдача уже учтена и разослана, когда была свежей
+        if (!fetched.fresh().isEmpty()) {
+            // Сравниваем выдачу с отпечатками прошлых циклов (снижение цены, повторная публикация)
+            listingStateStore.observe(fetched.fresh());
+            nearDuplicateDetector.observe(fetched.fresh());
+
+            // Раздаём выдачу другим подходящим поискам через обратный индекс
+            routeToSubscribers(search.getId(), fetched.fresh());
+        }
+
+        // Фильтруем по районам и радиусу если указаны и добавляем объявления из выдачи других поисков
+        List<ListingDto> filteredListings = mergeWithInbox(
+                filterByRadius(apifyService.filterByDistricts(allListings, search.getDistricts()), search),
+                search
         );
 
-        // Получаем множество уже отправленных ID
-        Set<String> sentIds = sentListingRepository.findIdealistaIdsBySearchId(search.getId());
+        // Дедупликация: загрузка отправленных ID, фильтр и схлопывание дубликатов (метрика listings.dedup)
+        Timer.Sample dedup = Timer.start(meterRegistry);
+
+        // Отправленные поиску объявления: отсортированные ID, цена уведомления, когда были в выдаче
+        SentHistory sent = SentHistory.of(sentListingKeyRepository.findSentKeysBySearchId(search.getId()));
+
+        // Новые объявления (тех, которых нет в истории) и отправленные ранее, но с тех пор
+        // подешевевшие или опубликованные заново - относительно того, что видел этот поиск
+        List<ListingDto> newListings = filterNewOrChanged(filteredListings, sent, listingStateStore);
+        markSeen(search.getId(), filteredListings, sent);
+
+        // Одна квартира от нескольких агентств - одно сообщение
+        newListings = nearDuplicateDetector.collapse(newListings, sent.ids());
+
+        dedup.stop(meterRegistry.timer("listings.dedup"));
+        meterRegistry.counter("listings.dedup.dropped").increment(filteredListings.size() - newListings.size());
+        meterRegistry.summary("listings.new").record(newListings.size());
 
-        // Фильтруем новые объявления (те, которых нет в sentIds)
-        List<ListingDto> newListings = filteredListings.stream()
-                .filter(listing -> !sentIds.contains(listing.getIdealistaId()))
-                .collect(Collectors.toList());
+        LocalDateTime since = search.getLastCheckedAt() != null ? search.getLastCheckedAt() : search.getCreatedAt();
+        int marketChanges = (int) filteredListings.stream()
+                .filter(listing -> listing.getChangedAt() != null && listing.getChangedAt().isAfter(since))
+                .count();
 
-        log.info("Found {} total listings, {} new (not sent before)",
+        log.info("Found {} total listings, {} new or changed since last check",
                 filteredListings.size(), newListings.size());
 
-        return newListings;
+        return new CheckResult(newListings, marketChanges, fetched.fallback(), fetched.partial());
+    }
+
+    /**
+     * Оставить объявления не дальше заданного радиуса (объявления без координат отбрасываются)
+     */
+    private List<ListingDto> filterByRadius(List<ListingDto> listings, Search search) {
+        if (!search.hasRadius()) {
+            return listings;
+        }
+        return listings.stream()
+                .filter(listing -> GeoDistrictIndex.withinRadius(listing.getLatitude(), listing.getLongitude(),
+                        search.getCenterLat(), search.getCenterLon(), search.getRadiusKm()))
+                .toList();
+    }
+
+    /**
+     * Отдать объявления всем остальным активным поискам этого экземпляра, которым они подходят
+     *
+     * Поиски чужих пользователей проверяет их экземпляр-владелец: его ящик здесь никто бы не разобрал.
+     *
+     * @param sourceSearchId поиск, для которого была получена выдача
+     * @param listings выдача
+     */
+    private void routeToSubscribers(Long sourceSearchId, List<ListingDto> listings) {
+        int routed = 0;
+        for (ListingDto listing : listings) {
+            if (listing.getIdealistaId() == null) {
+                continue;
+            }
+            for (long searchId : searchIndex.match(listing, clusterMembership::owns)) {
+                if (searchId != sourceSearchId) {
+                    // compute атомарен относительно remove при разборе ящика: объявление не попадёт в уже забранный ящик
+                    inbox.compute(searchId, (id, box) -> {
+                        Map<Long, ListingDto> target = box != null ? box : newInbox();
+                        target.put(listing.getIdealistaId(), listing);
+                        return target;
+                    });
+                    routed++;
+                }
+            }
+        }
+
+        if (routed > 0) {
+            log.debug("Routed {} listings from search {} to other subscribers", routed, sourceSearchId);
+        }
+    }
+
+    /**
+     * Объединить выдачу поиска с ожидающими объявлениями из выдачи других поисков (без повторов по ID)
+     *
+     * Ожидающие объявления сверяются с текущими критериями поиска: их могли разослать по критериям,
+     * которые с тех пор изменились (в том числе на другом экземпляре, ещё не обновившем индекс).
+     */
+    private List<ListingDto> mergeWithInbox(List<ListingDto> listings, Search search) {
+        // После remove ящик принадлежит только этому потоку: новые объявления попадут в новый ящик
+        Map<Long, ListingDto> pending = inbox.remove(search.getId());
+        if (pending == null || pending.isEmpty()) {
+            return listings;
+        }
+
+        List<ListingDto> matching = filterByRadius(apifyService.filterByDistricts(
+                pending.values().stream().filter(listing -> matchesPriceAndRooms(listing, search)).toList(),
+                search.getDistricts()), search);
+
+        Map<Long, ListingDto> merged = new LinkedHashMap<>();
+        for (ListingDto listing : listings) {
+            merged.put(listing.getIdealistaId(), listing);
+        }
+        for (ListingDto listing : matching) {
+            merged.putIfAbsent(listing.getIdealistaId(), listing);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Подходит ли объявление по цене и комнатам (как в {@link SearchIndex}: 5 комнат - "5 и более")
+     */
+    private static boolean matchesPriceAndRooms(ListingDto listing, Search search) {
+        Integer price = listing.getPrice();
+        if (price == null
+                || search.getMinPrice() != null && price < search.getMinPrice()
+                || search.getMaxPrice() != null && price > search.getMaxPrice()) {
+            return false;
+        }
+        if (search.getNumRooms() == null) {
+            return true;
+        }
+        Integer rooms = listing.getNumRooms();
+        return rooms != null
+                && Math.min(rooms, SearchIndex.MAX_ROOMS) == Math.min(search.getNumRooms(), SearchIndex.MAX_ROOMS);
+    }
+
+    /**
+     * Выбросить ожидающие объявления поиска (поиск приостановлен, удалён или сменил критерии)
+     *
+     * @param searchId ID поиска
+     */
+    public void evictInbox(Long searchId) {
+        inbox.remove(searchId);
+    }
+
+    /**
+     * Ограниченный ящик ожидающих объявлений: при переполнении вытесняются самые старые
+     * (меняется только внутри inbox.compute, читается после inbox.remove)
+     */
+    private static Map<Long, ListingDto> newInbox() {
+        return new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ListingDto> eldest) {
+                return size() > MAX_INBOX_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Оставить не отправленные ранее и отправленные, но с тех пор подешевевшие или опубликованные заново
+     *
+     * Пометка изменения (changeType, previousPrice) ставится на копию объявления и относится к этому
+     * поиску: выдача общая для нескольких поисков, а "было N EUR" - цена из уведомления этого поиска.
+     * Не отправленное поиску объявление приходит как новое, даже если общая выдача знает о его изменении.
+     *
+     * @param listings объявления
+     * @param sent что поиск уже получил
+     * @param stateStore правила изменений
+     * @return новые и изменившиеся объявления
+     */
+    static List<ListingDto> filterNewOrChanged(List<ListingDto> listings, SentHistory sent,
+                                               ListingStateStore stateStore) {
+        List<ListingDto> result = new ArrayList<>();
+        for (ListingDto listing : listings) {
+            int index = sent.indexOf(listing.getIdealistaId());
+            if (index < 0) {
+                result.add(listing.getChangeType() == null || listing.getChangeType() == ListingChangeType.NEW
+                        ? listing
+                        : annotate(listing, ListingChangeType.NEW, null));
+                continue;
+            }
+            int sentPrice = sent.prices()[index];
+            ListingChangeType change = stateStore.changeFor(listing, sentPrice, sent.seenAt()[index]);
+            if (change != null) {
+                result.add(annotate(listing, change, sentPrice > 0 ? sentPrice : null));
+            }
+        }
+        return result;
+    }
+
+    private static ListingDto annotate(ListingDto listing, ListingChangeType change, Integer previousPrice) {
+        ListingDto copy = listing.copy();
+        copy.setChangeType(change);
+        copy.setPreviousPrice(previousPrice);
+        return copy;
+    }
+
+    /**
+     * Запомнить, что отправленные поиску объявления были в его выдаче (для определения повторной публикации)
+     *
+     * Одним запросом и только для объявлений, чьё время устарело больше чем на половину relist-after:
+     * обычная проверка в БД не пишет.
+     */
+    private void markSeen(Long searchId, List<ListingDto> listings, SentHistory sent) {
+        long now = System.currentTimeMillis();
+        List<Long> seen = new ArrayList<>();
+        for (ListingDto listing : listings) {
+            int index = sent.indexOf(listing.getIdealistaId());
+            if (index >= 0 && listingStateStore.isSeenStale(sent.seenAt()[index], now)) {
+                seen.add(listing.getIdealistaId());
+            }
+        }
+        if (!seen.isEmpty()) {
+            sentListingKeyRepository.markSeen(searchId, seen, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Считать, что поиск только что видел все отправленные ему объявления (возобновление после паузы):
+     * то, что поиск не видел за паузу, повторной публикацией не считается
+     *
+     * @param searchId ID поиска
+     */
+    @Transactional
+    public void resetSeen(Long searchId) {
+        sentListingKeyRepository.markAllSeen(searchId, LocalDateTime.now());
     }
 
     /**
@@ -74,16 +325,33 @@ public class ListingService {
      */
     @Transactional
     public void markAsSent(Search search, ListingDto listing) {
+        LocalDateTime sentAt = LocalDateTime.now();
+        if (saveSentListing(search, listing, sentAt)) {
+            Integer price = listing.getPrice();
+            searchStatsRepository.recordSent(search.getId(), 1, sentAt,
+                    price != null ? price : 0, price != null ? 1 : 0);
+        }
+    }
+
+    /**
+     * Сохранить ключ дедупликации и полную запись об отправке
+     *
+     * @return true если объявление сохранено впервые
+     */
+    private boolean saveSentListing(Search search, ListingDto listing, LocalDateTime sentAt) {
         log.debug("Marking listing as sent: searchId={}, idealistaId={}",
                 search.getId(), listing.getIdealistaId());
 
-        // Проверяем, не было ли уже сохранено (на случай race condition)
-        if (sentListingRepository.existsBySearchIdAndIdealistaId(
-                search.getId(), listing.getIdealistaId())) {
-            log.debug("Listing already marked as sent, skipping");
-            return;
+        // Уже отправленное (повторное уведомление об изменении или race condition): запоминаем новую цену
+        SentListingKey.Id keyId = new SentListingKey.Id(search.getId(), listing.getIdealistaId());
+        if (sentListingKeyRepository.markResent(search.getId(), listing.getIdealistaId(),
+                listing.getPrice(), sentAt) > 0) {
+            log.debug("Listing already marked as sent, updated notified price");
+            return false;
         }
 
+        sentListingKeyRepository.save(new SentListingKey(keyId, listing.getPrice(), sentAt));
+
         SentListing sentListing = SentListing.builder()
                 .search(search)
                 .idealistaId(listing.getIdealistaId())
@@ -93,11 +361,12 @@ public class ListingService {
                 .district(listing.getDistrict())
                 .description(listing.getDescription())
                 .photoUrls(listing.getPhotoUrls())
-                .sentAt(LocalDateTime.now())
+                .sentAt(sentAt)
                 .build();
 
         sentListingRepository.save(sentListing);
         log.debug("Listing marked as sent successfully");
+        return true;
     }
 
     /**
@@ -110,13 +379,29 @@ public class ListingService {
     public void markAsSent(Search search, List<ListingDto> listings) {
         log.info("Marking {} listings as sent for search: {}", listings.size(), search.getId());
 
+        LocalDateTime sentAt = LocalDateTime.now();
+        int savedCount = 0;
+        long priceSum = 0;
+        int priceCount = 0;
+
         for (ListingDto listing : listings) {
             try {
-                markAsSent(search, listing);
+                if (saveSentListing(search, listing, sentAt)) {
+                    savedCount++;
+                    if (listing.getPrice() != null) {
+                        priceSum += listing.getPrice();
+                        priceCount++;
+                    }
+                }
             } catch (Exception e) {
                 log.error("Error marking listing as sent: {}", listing.getIdealistaId(), e);
             }
         }
+
+        // Один upsert счётчиков на всю пачку
+        if (savedCount > 0) {
+            searchStatsRepository.recordSent(search.getId(), savedCount, sentAt, priceSum, priceCount);
+        }
     }
 
     /**
@@ -125,8 +410,11 @@ public class ListingService {
      * @param searchId ID поиска
      * @return количество объявлений
      */
+    @Transactional(readOnly = true)
     public long getCountSent(Long searchId) {
-        return sentListingRepository.findBySearchId(searchId).size();
+        return searchStatsRepository.findById(searchId)
+                .map(SearchStats::getTotalSent)
+                .orElse(0L);
     }
 
     /**
@@ -135,6 +423,7 @@ public class ListingService {
      * @param searchId ID поиска
      * @return список отправленных объявлений
      */
+    @Transactional(readOnly = true)
     public List<SentListing> getSentListings(Long searchId) {
         return sentListingRepository.findBySearchId(searchId);
     }
@@ -0,0 +1,42 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.model.dto.SearchCriteriaDto;
+
+import java.util.List;
+
+/**
+ * Источник объявлений (портал или его скрапер)
+ *
+ * Все бины-источники опрашиваются {@link ListingAggregator} параллельно, выдачи сливаются в одну.
+ * Источник фильтрует по цене и комнатам сам; районы и радиус фильтруются после слияния.
+ */
+public interface ListingSource {
+
+    /**
+     * Имя источника: тег метрик и span listing.source.fetch
+     */
+    String name();
+
+    /**
+     * Выдача источника
+     *
+     * @param listings объявления
+     * @param fallback выдача не свежая: источник недоступен и отдал сохранённую раньше
+     */
+    record Result(List<ListingDto> listings, boolean fallback) {
+
+        public static Result fresh(List<ListingDto> listings) {
+            return new Result(listings, false);
+        }
+    }
+
+    /**
+     * Получить объявления по критериям
+     *
+     * @param criteria критерии поиска
+     * @return найденные объявления; объявления принадлежат вызывающему (не разделяются с другими вызовами)
+     * @throws com.realestate.bot.exception.ApiException если источник недоступен
+     */
+    Result fetch(SearchCriteriaDto criteria);
+}
@@ -0,0 +1,203 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.ListingChangesConfig;
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.model.enums.ListingChangeType;
+import com.realestate.bot.util.Hashes;
+import com.realestate.bot.util.ListingIds;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Состояние объявлений между циклами: компактный отпечаток на объявление
+ *
+ * Каждая выдача сравнивается с отпечатками в памяти (цена, комнаты, хеши описания и фото,
+ * когда впервые и в последний раз встречалось). Значимые изменения - снижение цены
+ * и повторная публикация - запоминаются вместе со временем: это скорость рынка по критериям
+ * и отсчёт задержки доставки. Запросов к БД не требуется.
+ *
+ * Уведомлять ли поиск об изменении, решает {@link #changeFor} по истории этого поиска: цена сравнивается
+ * с ценой в его уведомлении, а повторная публикация - это снятие с рынка по отпечаткам (объявление
+ * не встречалось ни в одной выдаче дольше relist-after) после того, как поиск видел объявление.
+ * Пауза поиска или выпадение объявления из его выдачи повторной публикацией не считаются.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ListingStateStore {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final ListingChangesConfig config;
+
+    private final Map<Long, Fingerprint> states = new ConcurrentHashMap<>();
+
+    /**
+     * Отпечаток объявления; время - epoch millis, цена -1 если неизвестна
+     */
+    private record Fingerprint(int price, int rooms, long descriptionHash, long photosHash,
+                               long firstSeen, long lastSeen,
+                               ListingChangeType lastChange, long lastChangeAt, int previousPrice) {
+    }
+
+    /**
+     * Сравнить выдачу с сохранёнными отпечатками и проставить объявлениям последнее значимое изменение
+     *
+     * @param listings выдача текущего цикла
+     */
+    public void observe(List<ListingDto> listings) {
+        long now = System.currentTimeMillis();
+        for (ListingDto listing : listings) {
+            if (listing.getIdealistaId() != null) {
+                Fingerprint state = states.compute(listing.getIdealistaId(),
+                        (id, previous) -> diff(previous, listing, now));
+                apply(state, listing);
+            }
+        }
+    }
+
+    /**
+     * Значимое изменение отправленного поиску объявления относительно того, что видел этот поиск
+     *
+     * @param listing объявление из текущей выдачи поиска (с изменением из {@link #observe})
+     * @param sentPrice цена в последнем уведомлении поиска (-1 если неизвестна)
+     * @param seenAt когда поиск последний раз видел объявление (мс, 0 если неизвестно)
+     * @return RELISTED, если по отпечаткам объявление опубликовано заново позже seenAt;
+     *         PRICE_DROP, если цена снизилась относительно уведомления; иначе null
+     */
+    public ListingChangeType changeFor(ListingDto listing, int sentPrice, long seenAt) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        if (seenAt > 0 && listing.getChangeType() == ListingChangeType.RELISTED && listing.getChangedAt() != null
+                && listing.getChangedAt().atZone(ZONE).toInstant().toEpochMilli() > seenAt) {
+            return ListingChangeType.RELISTED;
+        }
+        int price = listing.getPrice() != null ? listing.getPrice() : -1;
+        return isPriceDrop(sentPrice, price) ? ListingChangeType.PRICE_DROP : null;
+    }
+
+    /**
+     * Пора ли обновить время, когда поиск видел объявление: только раз в половину relist-after,
+     * а не каждую проверку (время нужно с точностью до окна повторной публикации)
+     *
+     * @param seenAt когда поиск последний раз видел объявление (мс, 0 если неизвестно)
+     * @param now текущее время (мс)
+     */
+    public boolean isSeenStale(long seenAt, long now) {
+        return now - seenAt > config.getRelistAfter().toMillis() / 2;
+    }
+
+    /**
+     * Количество отпечатков в памяти
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Удалить отпечатки объявлений, давно не встречавшихся в выдаче, и ограничить размер
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    public void evictStale() {
+        long cutoff = System.currentTimeMillis() - config.getStateTtl().toMillis();
+        int before = states.size();
+        states.values().removeIf(state -> state.lastSeen() < cutoff);
+
+        int overflow = states.size() - config.getMaxEntries();
+        if (overflow > 0) {
+            // Вытесняем дольше всего не встречавшиеся
+            states.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastSeen()))
+                    .limit(overflow)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(states::remove);
+        }
+
+        log.info("Listing state eviction: {} -> {} fingerprints", before, states.size());
+    }
+
+    private Fingerprint diff(Fingerprint previous, ListingDto listing, long now) {
+        int price = listing.getPrice() != null ? listing.getPrice() : -1;
+        int rooms = listing.getNumRooms() != null ? listing.getNumRooms() : -1;
+        long descriptionHash = hashDescription(listing.getDescription());
+        long photosHash = hashPhotos(listing.getPhotoUrls());
+
+        if (previous == null) {
+            return new Fingerprint(price, rooms, descriptionHash, photosHash, now, now,
+                    ListingChangeType.NEW, now, -1);
+        }
+
+        ListingChangeType change = previous.lastChange();
+        long changeAt = previous.lastChangeAt();
+        int previousPrice = previous.previousPrice();
+
+        if (now - previous.lastSeen() > config.getRelistAfter().toMillis()) {
+            change = ListingChangeType.RELISTED;
+            changeAt = now;
+            previousPrice = previous.price();
+        } else if (isPriceDrop(previous.price(), price)) {
+            change = ListingChangeType.PRICE_DROP;
+            changeAt = now;
+            previousPrice = previous.price();
+        } else if (price != previous.price() || rooms != previous.rooms()
+                || descriptionHash != previous.descriptionHash() || photosHash != previous.photosHash()) {
+            // Прочие правки (рост цены, текст, фото) обновляют отпечаток, но уведомления не вызывают
+            log.debug("Listing {} updated without notifiable change", listing.getIdealistaId());
+        }
+
+        return new Fingerprint(price, rooms, descriptionHash, photosHash, previous.firstSeen(), now,
+                change, changeAt, previousPrice);
+    }
+
+    private boolean isPriceDrop(int previousPrice, int price) {
+        if (previousPrice <= 0 || price <= 0 || price >= previousPrice) {
+            return false;
+        }
+        return (long) (previousPrice - price) * 100 >= (long) previousPrice * config.getMinPriceDropPercent();
+    }
+
+    private static void apply(Fingerprint state, ListingDto listing) {
+        listing.setChangeType(state.lastChange());
+        listing.setPreviousPrice(state.previousPrice() > 0 ? state.previousPrice() : null);
+        listing.setChangedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(state.lastChangeAt()), ZONE));
+    }
+
+    /**
+     * Хеш описания без учёта регистра и пробелов (переформатирование - не изменение)
+     */
+    private static long hashDescription(String description) {
+        if (description == null) {
+            return 0L;
+        }
+        return Hashes.fnv1a64(WHITESPACE.matcher(description.toLowerCase(Locale.ROOT)).replaceAll(""));
+    }
+
+    /**
+     * Хеш набора фото без учёта порядка и параметров CDN в URL
+     */
+    private static long hashPhotos(List<String> photoUrls) {
+        if (photoUrls == null) {
+            return 0L;
+        }
+        long hash = 0L;
+        for (String url : photoUrls) {
+            if (url != null) {
+                hash += ListingIds.hashUrl(url);
+            }
+        }
+        return hash;
+    }
+}
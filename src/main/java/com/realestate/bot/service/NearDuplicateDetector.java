@@ -0,0 +1,318 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.NearDuplicatesConfig;
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.util.Hashes;
+import com.realestate.bot.util.ListingIds;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Поиск почти одинаковых объявлений - одна квартира, опубликованная разными агентствами
+ *
+ * Для каждого объявления считается MinHash-сигнатура ({@link #HASHES} минимумов) по множеству
+ * слов описания и URL фотографий; доля совпавших минимумов оценивает сходство Жаккара.
+ * Сигнатура делится на {@link #BANDS} полос по {@link #ROWS} значения (LSH): кандидаты ищутся
+ * по корзинам полос, а не перебором. Дубликат дополнительно должен совпадать по комнатам
+ * и цене (с допуском). Объявления одного кластера склеиваются перед отправкой.
+ * Сигнатуры живут в памяти между циклами.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NearDuplicateDetector {
+
+    // 8 полос по 4 значения: пара со сходством 0.7 попадает в общую корзину с вероятностью ~0.9
+    static final int BANDS = 8;
+    static final int ROWS = 4;
+    static final int HASHES = BANDS * ROWS;
+
+    // Ограничение корзины LSH: типовые шаблонные описания не должны превращать поиск в перебор
+    private static final int MAX_BUCKET_SIZE = 128;
+    // Ограничение размера кластера (на сколько ID проверяем "уже отправлено")
+    private static final int MAX_CLUSTER_SIZE = 16;
+    // Слишком короткие описания без фото не дают надёжной сигнатуры
+    private static final int MIN_FEATURES = 8;
+
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        for (int i = 0; i < HASHES; i++) {
+            SEEDS[i] = Hashes.mix64(0x9e3779b97f4a7c15L * (i + 1));
+        }
+    }
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final NearDuplicatesConfig config;
+
+    private final Map<Long, Signature> signatures = new HashMap<>();
+    private final Map<Long, List<Long>> buckets = new HashMap<>();
+    private final Map<Long, long[]> clusters = new HashMap<>();
+
+    /**
+     * Сигнатура объявления и его кластер (ID первого встреченного объявления кластера)
+     */
+    private record Signature(int[] minHashes, int price, int rooms, long clusterId, long lastSeen) {
+    }
+
+    /**
+     * Посчитать сигнатуры выдачи и отнести объявления к кластерам
+     *
+     * @param listings выдача текущего цикла
+     */
+    public synchronized void observe(List<ListingDto> listings) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+
+        for (ListingDto listing : listings) {
+            Long id = listing.getIdealistaId();
+            if (id == null) {
+                continue;
+            }
+
+            Signature known = signatures.get(id);
+            if (known != null) {
+                signatures.put(id, new Signature(known.minHashes(), known.price(), known.rooms(),
+                        known.clusterId(), now));
+                continue;
+            }
+
+            int[] minHashes = minHash(listing);
+            if (minHashes == null) {
+                continue;
+            }
+
+            int price = listing.getPrice() != null ? listing.getPrice() : -1;
+            int rooms = listing.getNumRooms() != null ? listing.getNumRooms() : -1;
+            long clusterId = findCluster(id, minHashes, price, rooms);
+
+            signatures.put(id, new Signature(minHashes, price, rooms, clusterId, now));
+            addToBuckets(id, minHashes);
+            if (clusterId != id) {
+                joinCluster(clusterId, id);
+            }
+        }
+    }
+
+    /**
+     * Склеить дубликаты в списке к отправке
+     *
+     * Из каждого кластера остаётся одно объявление с минимальной ценой; объявление выбрасывается,
+     * если поиску уже было отправлено другое объявление того же кластера.
+     *
+     * @param listings кандидаты к отправке (порядок сохраняется)
+     * @param sentIds отсортированные ID уже отправленных поиску объявлений
+     * @return список без дубликатов
+     */
+    public synchronized List<ListingDto> collapse(List<ListingDto> listings, long[] sentIds) {
+        if (!config.isEnabled() || listings.isEmpty()) {
+            return listings;
+        }
+
+        // Ключ - ID кластера, для объявлений без сигнатуры - само объявление
+        Map<Object, ListingDto> bestByCluster = new LinkedHashMap<>();
+        int collapsed = 0;
+
+        for (ListingDto listing : listings) {
+            Long id = listing.getIdealistaId();
+            Signature signature = id != null ? signatures.get(id) : null;
+            if (signature == null) {
+                bestByCluster.put(listing, listing);
+                continue;
+            }
+
+            // Копию уже отправленной квартиры повторно не присылаем
+            if (Arrays.binarySearch(sentIds, id) < 0 && clusterHasSent(signature.clusterId(), id, sentIds)) {
+                collapsed++;
+                continue;
+            }
+
+            ListingDto current = bestByCluster.get(signature.clusterId());
+            if (current == null) {
+                bestByCluster.put(signature.clusterId(), listing);
+            } else {
+                collapsed++;
+                if (listing.getPrice() != null
+                        && (current.getPrice() == null || listing.getPrice() < current.getPrice())) {
+                    bestByCluster.put(signature.clusterId(), listing);
+                }
+            }
+        }
+
+        if (collapsed > 0) {
+            log.info("Collapsed {} near-duplicate listings", collapsed);
+        }
+        return new ArrayList<>(bestByCluster.values());
+    }
+
+    /**
+     * Количество сигнатур в памяти
+     */
+    public synchronized int size() {
+        return signatures.size();
+    }
+
+    /**
+     * Удалить сигнатуры давно не встречавшихся объявлений и перестроить корзины
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    public synchronized void evictStale() {
+        long cutoff = System.currentTimeMillis() - config.getSignatureTtl().toMillis();
+        int before = signatures.size();
+        signatures.values().removeIf(signature -> signature.lastSeen() < cutoff);
+
+        int overflow = signatures.size() - config.getMaxEntries();
+        if (overflow > 0) {
+            signatures.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastSeen()))
+                    .limit(overflow)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(signatures::remove);
+        }
+
+        buckets.clear();
+        signatures.forEach((id, signature) -> addToBuckets(id, signature.minHashes()));
+        clusters.keySet().removeIf(clusterId -> !signatures.containsKey(clusterId));
+
+        log.info("Near-duplicate signatures eviction: {} -> {}", before, signatures.size());
+    }
+
+    private long findCluster(long id, int[] minHashes, int price, int rooms) {
+        for (int band = 0; band < BANDS; band++) {
+            List<Long> bucket = buckets.get(bucketKey(band, minHashes));
+            if (bucket == null) {
+                continue;
+            }
+            for (Long candidateId : bucket) {
+                Signature candidate = signatures.get(candidateId);
+                if (candidate != null && candidateId != id
+                        && similarityPercent(candidate.minHashes(), minHashes) >= config.getMinSimilarityPercent()
+                        && sameFlat(candidate, price, rooms)) {
+                    return candidate.clusterId();
+                }
+            }
+        }
+        return id;
+    }
+
+    private boolean sameFlat(Signature candidate, int price, int rooms) {
+        if (candidate.rooms() >= 0 && rooms >= 0 && candidate.rooms() != rooms) {
+            return false;
+        }
+        if (candidate.price() <= 0 || price <= 0) {
+            return true;
+        }
+        return (long) Math.abs(candidate.price() - price) * 100
+                <= (long) Math.max(candidate.price(), price) * config.getPriceTolerancePercent();
+    }
+
+    private void addToBuckets(long id, int[] minHashes) {
+        for (int band = 0; band < BANDS; band++) {
+            List<Long> bucket = buckets.computeIfAbsent(bucketKey(band, minHashes), key -> new ArrayList<>());
+            if (bucket.size() >= MAX_BUCKET_SIZE) {
+                bucket.remove(0);
+            }
+            bucket.add(id);
+        }
+    }
+
+    private void joinCluster(long clusterId, long id) {
+        long[] members = clusters.getOrDefault(clusterId, new long[0]);
+        if (members.length < MAX_CLUSTER_SIZE) {
+            long[] extended = Arrays.copyOf(members, members.length + 1);
+            extended[members.length] = id;
+            clusters.put(clusterId, extended);
+        }
+    }
+
+    private boolean clusterHasSent(long clusterId, long id, long[] sentIds) {
+        if (clusterId != id && Arrays.binarySearch(sentIds, clusterId) >= 0) {
+            return true;
+        }
+        long[] members = clusters.get(clusterId);
+        if (members != null) {
+            for (long member : members) {
+                if (member != id && Arrays.binarySearch(sentIds, member) >= 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ключ корзины: номер полосы и хеш её значений
+     */
+    private static long bucketKey(int band, int[] minHashes) {
+        long hash = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            hash = hash * 31 + minHashes[row];
+        }
+        return Hashes.mix64(hash);
+    }
+
+    /**
+     * Оценка сходства Жаккара в процентах - доля совпавших минимумов
+     */
+    static int similarityPercent(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return equal * 100 / HASHES;
+    }
+
+    /**
+     * MinHash по словам описания и URL фотографий (null, если признаков слишком мало)
+     */
+    private static int[] minHash(ListingDto listing) {
+        int[] minHashes = new int[HASHES];
+        Arrays.fill(minHashes, Integer.MAX_VALUE);
+        int features = 0;
+
+        String description = listing.getDescription();
+        if (description != null && !description.isBlank()) {
+            String normalized = Normalizer.normalize(description, Normalizer.Form.NFD);
+            normalized = COMBINING_MARKS.matcher(normalized).replaceAll("").toLowerCase(Locale.ROOT);
+            for (String word : NON_ALPHANUMERIC.split(normalized.trim())) {
+                if (!word.isEmpty()) {
+                    addFeature(minHashes, Hashes.fnv1a64(word));
+                    features++;
+                }
+            }
+        }
+
+        if (listing.getPhotoUrls() != null) {
+            for (String url : listing.getPhotoUrls()) {
+                if (url != null && !url.isEmpty()) {
+                    addFeature(minHashes, ListingIds.hashUrl(url));
+                    features++;
+                }
+            }
+        }
+
+        return features >= MIN_FEATURES ? minHashes : null;
+    }
+
+    private static void addFeature(int[] minHashes, long feature) {
+        for (int i = 0; i < HASHES; i++) {
+            int value = (int) (Hashes.mix64(feature ^ SEEDS[i]) >>> 33);
+            if (value < minHashes[i]) {
+                minHashes[i] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.realestate.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ручная остановка этапов конвейера (из админского API)
+ *
+ * Пауза скрапинга останавливает плановые проверки: очередь проверок (с захваченными поисками)
+ * сохраняется и разбирается после возобновления. Пауза отправки останавливает поток отложенной
+ * доставки: новые объявления продолжают копиться в запланированных доставках. Ответы на действия пользователя не останавливаются.
+ * Состояние хранится в памяти и сбрасывается при перезапуске.
+ */
+@Component
+@Slf4j
+public class PipelineControl {
+
+    private volatile boolean scrapingPaused;
+    private volatile boolean sendingPaused;
+
+    public boolean isScrapingPaused() {
+        return scrapingPaused;
+    }
+
+    public boolean isSendingPaused() {
+        return sendingPaused;
+    }
+
+    public synchronized void setScrapingPaused(boolean paused) {
+        scrapingPaused = paused;
+        log.info("Scraping {}", paused ? "paused" : "resumed");
+        notifyAll();
+    }
+
+    public synchronized void setSendingPaused(boolean paused) {
+        sendingPaused = paused;
+        log.info("Sending {}", paused ? "paused" : "resumed");
+        notifyAll();
+    }
+
+    /**
+     * Дождаться снятия паузы скрапинга (для потоков проверки)
+     */
+    public synchronized void awaitScraping() throws InterruptedException {
+        while (scrapingPaused) {
+            wait();
+        }
+    }
+
+    /**
+     * Дождаться снятия паузы отправки (для потока доставки)
+     */
+    public synchronized void awaitSending() throws InterruptedException {
+        while (sendingPaused) {
+            wait();
+        }
+    }
+}
@@ -1,17 +1,39 @@
 package com.realestate.bot.service;
 
+import com.realestate.bot.config.SchedulerConfig;
+import com.realestate.bot.config.datasource.Workload;
+import com.realestate.bot.config.datasource.WorkloadContext;
 import com.realestate.bot.model.dto.ListingDto;
 import com.realestate.bot.model.entity.Search;
-import com.realestate.bot.telegram.TelegramBot;
+import com.realestate.bot.model.enums.CheckLane;
+import com.realestate.bot.repository.SearchRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Сервис для периодической проверки новых объявлений
+ *
+ * Проверка поиска - задание в БД: раз в такт экземпляр захватывает свои поиски с наступившим
+ * next_check_at (FOR UPDATE SKIP LOCKED, поэтому два экземпляра не берут один поиск), раскладывает их
+ * по полосам очереди, а scheduler.workers потоков параллельно её разбирают. После проверки захват
+ * снимается; захват упавшего экземпляра истекает через scheduler.claim-timeout, и поиск забирает другой.
  */
 @Service
 @RequiredArgsConstructor
@@ -20,108 +42,347 @@ public class SchedulerService {
 
     private final SearchService searchService;
     private final ListingService listingService;
-    private final TelegramService telegramService;
-    private final TelegramBot telegramBot;
+    private final DeliveryScheduler deliveryScheduler;
+    private final SchedulerConfig schedulerConfig;
+    private final CheckQueue checkQueue;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final PipelineControl pipelineControl;
+    private final ClusterMembership clusterMembership;
+
+    // Когда в следующий раз захватывать в БД поиски по расписанию
+    private volatile long nextDueScanAt;
+
+    // Поиски, захваченные проходом и ещё не проверенные
+    private final Set<Long> claimed = ConcurrentHashMap.newKeySet();
+    // Поиски, которые сейчас проверяются, и те, что изменились во время проверки
+    private final Set<Long> checking = ConcurrentHashMap.newKeySet();
+    private final Set<Long> recheck = ConcurrentHashMap.newKeySet();
+
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final AtomicLong checksCompleted = new AtomicLong();
+    private volatile long lastClaimAt;
+    private volatile int lastClaimed;
 
     /**
-     * Проверить новые объявления для всех активных поисков
-     * Выполняется каждые 15 минут (900000 мс)
+     * Состояние проверок (времена в мс, 0 - не было)
+     *
+     * @param workers потоков проверки
+     * @param busyWorkers из них сейчас проверяют поиск
+     * @param checked проверено поисков с запуска
+     * @param lastClaimAt время последнего захвата поисков по расписанию
+     * @param lastClaimed сколько поисков в нём захвачено
      */
-    @Scheduled(fixedRate = 900000, initialDelay = 900000)
-    public void checkNewListings() {
-        log.info("Starting scheduled check for new listings");
+    public record CycleProgress(int workers, int busyWorkers, long checked, long lastClaimAt, int lastClaimed) {
+    }
 
+    /**
+     * Снять захваты прошлого запуска с тем же ID экземпляра и запустить потоки проверки
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWorkers() {
+        String worker = clusterMembership.getInstanceId();
+        int released = WorkloadContext.call(Workload.BATCH, () -> searchService.releaseClaims(worker));
+        if (released > 0) {
+            log.info("Released {} search claims left by a previous run of {}", released, worker);
+        }
+        for (int i = 1; i <= schedulerConfig.getWorkers(); i++) {
+            Thread thread = new Thread(this::runWorker, "search-check-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            workers.add(thread);
+        }
+    }
+
+    /**
+     * Остановить потоки проверки и снять захваты: поиски сразу доступны другим экземплярам
+     */
+    @PreDestroy
+    public void stopWorkers() {
+        workers.forEach(Thread::interrupt);
         try {
-            // Получаем все активные поиски
-            List<Search> activeSearches = searchService.findAllActive();
+            WorkloadContext.run(Workload.BATCH, () -> searchService.releaseClaims(clusterMembership.getInstanceId()));
+        } catch (Exception e) {
+            log.warn("Could not release search claims: {}", e.getMessage());
+        }
+    }
 
-            log.info("Found {} active searches to check", activeSearches.size());
+    /**
+     * Раз в scheduler.tick-interval захватить поиски по расписанию
+     * Выполняется каждые scheduler.fast-lane-interval мс, поэтому ручной запуск всех проверок подхватывается за секунды
+     */
+    @Scheduled(fixedDelayString = "${scheduler.fast-lane-interval:5000}",
+            initialDelayString = "${scheduler.fast-lane-interval:5000}")
+    public void checkNewListings() {
+        // На паузе новые поиски не захватываются; уже захваченные ждут в очереди
+        if (pipelineControl.isScrapingPaused()) {
+            return;
+        }
+        // Планировщик работает на отдельном пуле соединений, не отнимая их у обработчиков
+        WorkloadContext.run(Workload.BATCH, this::claimDueSearches);
+    }
+
+    /**
+     * Захватить поиски этого экземпляра с наступившим next_check_at (самые просроченные первыми)
+     * и поставить их в очередь - не больше, чем свободных потоков проверки (и max-searches-per-tick):
+     * захваченный поиск не ждёт в очереди, пока его захват истекает
+     *
+     * Пока поиски находятся, захват повторяется каждые fast-lane-interval, иначе - раз в tick-interval.
+     * В кластере выбирается в N раз больше кандидатов: после отбора своих остаётся примерно нужное число.
+     * Владелец пользователя поиска (см. {@link ClusterMembership}) проверяет его первым; поиски, просроченные дольше
+     * scheduler.steal-after, забирает любой экземпляр со свободной очередью. Непустой захват -
+     * span scheduler.cycle.
+     */
+    private void claimDueSearches() {
+        long now = System.currentTimeMillis();
+        if (now < nextDueScanAt) {
+            return;
+        }
+        int idle = workers.size() - busyWorkers.get() - checkQueue.size();
+        int capacity = Math.min(idle, schedulerConfig.getMaxSearchesPerTick());
+        if (capacity <= 0) {
+            log.debug("No idle check workers, skipping claim");
+            return;
+        }
+
+        Observation cycle = Observation.start("scheduler.cycle", observationRegistry);
+        int queued = 0;
+        try (Observation.Scope scope = cycle.openScope()) {
+            String worker = clusterMembership.getInstanceId();
+            List<Long> owned = searchService.findDueUnclaimed(capacity * clusterMembership.memberCount()).stream()
+                    .filter(due -> clusterMembership.owns(due.getUserId()))
+                    .map(SearchRepository.DueSearch::getId)
+                    .limit(capacity)
+                    .toList();
+            List<Long> ids = new ArrayList<>(searchService.claim(owned, worker, schedulerConfig.getClaimTimeout()));
+            if (clusterMembership.memberCount() > 1 && ids.size() < capacity) {
+                ids.addAll(searchService.claimOverdue(schedulerConfig.getStealAfter(), worker,
+                        schedulerConfig.getClaimTimeout(), capacity - ids.size()));
+            }
 
-            // Проверяем каждый поиск
-            for (Search search : activeSearches) {
+            for (Search search : searchService.findAllWithUser(ids)) {
+                claimed.add(search.getId());
+                checkQueue.offer(search.getId(), laneOf(search));
+                queued++;
+            }
+        } catch (Exception e) {
+            cycle.error(e);
+            nextDueScanAt = now + schedulerConfig.getTickInterval().toMillis();
+            log.error("Error claiming searches due for check", e);
+        } finally {
+            cycle.highCardinalityKeyValue("searches", String.valueOf(queued));
+            cycle.stop();
+            lastClaimAt = now;
+            lastClaimed = queued;
+        }
+
+        if (queued == 0) {
+            nextDueScanAt = now + schedulerConfig.getTickInterval().toMillis();
+            log.debug("No searches due for check");
+            return;
+        }
+        meterRegistry.summary("scheduler.cycle.searches").record(queued);
+        log.info("Claimed {} searches due for check: {}", queued, checkQueue.sizes());
+    }
+
+    /**
+     * Поток проверки: берёт поиски из очереди, пока его не остановят
+     */
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                pipelineControl.awaitScraping();
+                CheckQueue.Entry entry = checkQueue.take();
+                // Пауза, включённая во время ожидания: поиск остаётся в очереди
+                if (pipelineControl.isScrapingPaused()) {
+                    checkQueue.offer(entry.searchId(), entry.lane());
+                    continue;
+                }
+                busyWorkers.incrementAndGet();
                 try {
-                    checkSearchForNewListings(search);
-                } catch (Exception e) {
-                    log.error("Error checking search {}", search.getId(), e);
+                    WorkloadContext.run(Workload.BATCH, () -> process(entry));
+                } finally {
+                    busyWorkers.decrementAndGet();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Error in search check worker", e);
             }
+        }
+    }
 
-            log.info("Completed scheduled check for new listings");
+    /**
+     * Проверить поиск из очереди, удерживая его захват
+     *
+     * Захват поиска по расписанию продлевается перед проверкой: если он успел истечь и поиск забрал
+     * другой экземпляр, проверка пропускается. Поиск быстрой полосы (изменение поиска, ручной запуск)
+     * захватывается здесь же; если его уже проверяет другой поток или экземпляр, проверка пропускается,
+     * а проверяемый локально поиск проверяется ещё раз сразу после текущей проверки.
+     */
+    private void process(CheckQueue.Entry entry) {
+        Long searchId = entry.searchId();
+        String worker = clusterMembership.getInstanceId();
+        boolean owned = claimed.remove(searchId)
+                ? searchService.renewClaim(searchId, worker, schedulerConfig.getClaimTimeout())
+                : !searchService.claim(List.of(searchId), worker, schedulerConfig.getClaimTimeout()).isEmpty();
+        if (!owned) {
+            if (checking.contains(searchId)) {
+                recheck.add(searchId);
+            }
+            log.debug("Search {} is being checked elsewhere, skipping", searchId);
+            return;
+        }
 
-        } catch (Exception e) {
-            log.error("Error in scheduled check", e);
+        checking.add(searchId);
+        try {
+            // Поиск мог быть приостановлен или удалён, пока ждал в очереди
+            Optional<Search> search = searchService.findActiveWithUser(searchId);
+            if (search.isEmpty()) {
+                return;
+            }
+            log.debug("Checking search {} from {} lane", searchId, entry.lane());
+            String outcome = checkSearch(search.get(), entry.lane());
+            meterRegistry.counter("scheduler.searches", "lane", entry.lane().name().toLowerCase(Locale.ROOT),
+                    "outcome", outcome).increment();
+            checksCompleted.incrementAndGet();
+        } finally {
+            checking.remove(searchId);
+            searchService.releaseClaim(searchId, worker);
+            if (recheck.remove(searchId)) {
+                checkQueue.offer(searchId, CheckLane.FRESH);
+            }
         }
     }
 
+    /**
+     * Проверка одного поиска в span scheduler.check
+     */
+    private String checkSearch(Search search, CheckLane lane) {
+        Observation check = Observation.createNotStarted("scheduler.check", observationRegistry)
+                .lowCardinalityKeyValue("lane", lane.name().toLowerCase(Locale.ROOT))
+                .highCardinalityKeyValue("search.id", String.valueOf(search.getId()))
+                .start();
+        String outcome = "error";
+        try (Observation.Scope scope = check.openScope()) {
+            outcome = checkSearchForNewListings(search);
+            return outcome;
+        } finally {
+            check.lowCardinalityKeyValue("outcome", outcome);
+            check.stop();
+        }
+    }
+
+    /**
+     * Полоса поиска по расписанию: премиум, обычный или "застывший" (по критериям почти ничего не появляется)
+     */
+    private CheckLane laneOf(Search search) {
+        if (search.getUser().isPremium()) {
+            return CheckLane.PREMIUM;
+        }
+        double staleRate = schedulerConfig.getStaleRate();
+        if (search.getLastCheckedAt() != null
+                && search.getHitRate() < staleRate && search.getMarketVelocity() < staleRate) {
+            return CheckLane.STALE;
+        }
+        return CheckLane.NORMAL;
+    }
+
     /**
      * Проверить новые объявления для конкретного поиска
+     *
+     * Проверка по сохранённой выдаче (источник недоступен) не учитывается в расписании: поиск
+     * откладывается на свой интервал, как после ошибки, но найденное в ней доставляется.
+     *
+     * @return success, partial (часть источников недоступна), fallback (выдача не свежая) или error
      */
-    private void checkSearchForNewListings(Search search) {
+    private String checkSearchForNewListings(Search search) {
         log.debug("Checking search {} for user {}", search.getId(), search.getUser().getTelegramId());
 
         try {
             // Получаем новые объявления
-            List<ListingDto> newListings = listingService.getNewListings(search);
+            ListingService.CheckResult result = listingService.check(search);
+            List<ListingDto> newListings = result.newListings();
 
+            // Объявления, уже ждущие отложенной доставки, находятся снова - новыми считаются только остальные
+            int scheduled = 0;
             if (newListings.isEmpty()) {
                 log.debug("No new listings found for search {}", search.getId());
-                // Обновляем время последней проверки
-                searchService.updateLastChecked(search.getId());
-                return;
-            }
-
-            log.info("Found {} new listings for search {}", newListings.size(), search.getId());
-
-            // Отправляем объявления пользователю
-            Long chatId = search.getUser().getTelegramId();
-
-            // Отправляем уведомление о найденных новых объявлениях
-            String notificationMessage = String.format(
-                    "🔔 Новые объявления!\n\n" +
-                    "Найдено %d %s по вашему поиску:",
-                    newListings.size(),
-                    getRussianPluralForm(newListings.size(), "квартира", "квартиры", "квартир")
-            );
-            telegramService.sendMessage(chatId, notificationMessage, telegramBot);
+            } else {
+                log.info("Found {} new listings for search {}", newListings.size(), search.getId());
 
-            // Отправляем сами объявления
-            int sentCount = telegramService.sendListings(chatId, newListings, telegramBot);
+                // Доставка с учётом тихих часов, лимита и времени дайджеста пользователя
+                scheduled = deliveryScheduler.schedule(search, newListings);
+            }
 
-            // Отмечаем отправленные объявления
-            if (sentCount > 0) {
-                listingService.markAsSent(search, newListings.subList(0, sentCount));
-                log.info("Sent {} listings to user {}", sentCount, chatId);
+            if (result.fallback()) {
+                // Сохранённая выдача ничего не говорит о частоте новых объявлений
+                searchService.postponeCheck(search.getId());
+                return "fallback";
             }
 
-            // Обновляем время последней проверки
-            searchService.updateLastChecked(search.getId());
+            // Время последней проверки и интервал до следующей
+            searchService.recordCheck(search.getId(), scheduled, result.marketChanges());
+            return result.partial() ? "partial" : "success";
 
         } catch (Exception e) {
             log.error("Error checking search {} for new listings", search.getId(), e);
+            // Иначе поиск с ошибкой проверялся бы каждый такт
+            searchService.postponeCheck(search.getId());
+            return "error";
         }
     }
 
     /**
-     * Получить правильную форму множественного числа для русского языка
+     * Ручная проверка всех активных поисков
+     *
+     * Только отмечает поиски "пора на проверку" и не ждёт проверки: их разберут ближайшие проходы
+     * планировщика (в кластере - на каждом экземпляре его поиски), каждый в свою полосу.
+     *
+     * @return сколько поисков стали ожидать проверки
      */
-    private String getRussianPluralForm(int count, String form1, String form2, String form5) {
-        int mod10 = count % 10;
-        int mod100 = count % 100;
+    public int checkNow() {
+        int marked = searchService.markAllDueForCheck();
+        nextDueScanAt = 0;
+        log.info("Manual trigger: {} active searches marked due for check", marked);
+        return marked;
+    }
 
-        if (mod10 == 1 && mod100 != 11) {
-            return form1;
-        } else if (mod10 >= 2 && mod10 <= 4 && (mod100 < 10 || mod100 >= 20)) {
-            return form2;
-        } else {
-            return form5;
+    /**
+     * Ручная проверка одного поиска: ставит его в быструю полосу и не ждёт проверки
+     *
+     * Поиск чужого (в кластере) пользователя только отмечается "пора на проверку" - его проверит владелец.
+     *
+     * @param searchId ID поиска
+     * @return false если поиск не найден или не активен
+     */
+    public boolean checkNow(Long searchId) {
+        Optional<Search> search = searchService.findActiveWithUser(searchId);
+        if (search.isEmpty()) {
+            return false;
+        }
+        if (!clusterMembership.owns(search.get().getUser().getId())) {
+            boolean marked = searchService.markDueForCheck(searchId);
+            log.info("Manual trigger: search {} marked due for check on its owner", searchId);
+            return marked;
         }
+        checkQueue.offer(searchId, CheckLane.FRESH);
+        log.info("Manual trigger: queued search {} for check", searchId);
+        return true;
+    }
+
+    /**
+     * Сколько потоков сейчас проверяют поиск
+     */
+    public int busyWorkers() {
+        return busyWorkers.get();
     }
 
     /**
-     * Ручная проверка новых объявлений (может быть вызвана по требованию)
+     * Состояние потоков проверки и последнего захвата
      */
-    public void checkNow() {
-        log.info("Manual trigger for checking new listings");
-        checkNewListings();
+    public CycleProgress cycleProgress() {
+        return new CycleProgress(workers.size(), busyWorkers.get(), checksCompleted.get(), lastClaimAt, lastClaimed);
     }
 }
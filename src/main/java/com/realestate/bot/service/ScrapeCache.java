@@ -0,0 +1,74 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.ApifyConfig;
+import com.realestate.bot.model.dto.ListingDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Последняя успешная выдача Apify по каждому ключу критериев
+ *
+ * Отдаётся вместо выдачи, когда Apify недоступен (открыт circuit breaker, занят bulkhead или запрос
+ * завершился ошибкой). Кеш ограничен по размеру (вытесняются давно не запрашивавшиеся ключи)
+ * и по возрасту выдачи: слишком старая выдача не отдаётся.
+ */
+@Component
+@RequiredArgsConstructor
+public class ScrapeCache {
+
+    private final ApifyConfig apifyConfig;
+
+    private final Map<String, Scrape> scrapes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Scrape> eldest) {
+            return size() > apifyConfig.getFallback().getMaxEntries();
+        }
+    };
+
+    /**
+     * Выдача и время её получения (мс); в кеше хранятся копии объявлений, наружу отдаются копии копий
+     */
+    public record Scrape(List<ListingDto> listings, long fetchedAt) {
+    }
+
+    /**
+     * Запомнить успешную выдачу
+     *
+     * @param key ключ критериев (см. {@link ApifyService#criteriaKey})
+     * @param listings выдача
+     */
+    public synchronized void put(String key, List<ListingDto> listings) {
+        scrapes.put(key, new Scrape(copyOf(listings), System.currentTimeMillis()));
+    }
+
+    /**
+     * Последняя выдача по ключу, если она не старше apify.fallback.max-age
+     */
+    public synchronized Optional<Scrape> get(String key) {
+        Scrape scrape = scrapes.get(key);
+        if (scrape == null) {
+            return Optional.empty();
+        }
+        if (System.currentTimeMillis() - scrape.fetchedAt() > apifyConfig.getFallback().getMaxAge().toMillis()) {
+            scrapes.remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(new Scrape(copyOf(scrape.listings()), scrape.fetchedAt()));
+    }
+
+    /**
+     * Количество ключей в кеше
+     */
+    public synchronized int size() {
+        return scrapes.size();
+    }
+
+    private static List<ListingDto> copyOf(List<ListingDto> listings) {
+        return listings.stream().map(ListingDto::copy).toList();
+    }
+}
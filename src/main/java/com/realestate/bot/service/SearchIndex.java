@@ -0,0 +1,324 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.datasource.Workload;
+import com.realestate.bot.config.datasource.WorkloadContext;
+import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.model.entity.Search;
+import com.realestate.bot.model.enums.SearchStatus;
+import com.realestate.bot.repository.SearchRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Обратный индекс активных поисков: "каким поискам подходит это объявление?"
+ *
+ * Каждый активный поиск занимает слот (номер бита). Для каждого атрибута объявления хранятся
+ * BitSet'ы слотов, которым это значение подходит: корзины цены по {@link #PRICE_BUCKET_WIDTH} EUR,
+ * количество комнат и районы каталога. Подходящие поиски - пересечение трёх BitSet'ов,
+ * стоимость не зависит от числа объявлений в истории и почти не зависит от числа поисков.
+ * Индекс обновляется из SearchService при создании, изменении, паузе и удалении поиска, а в кластере
+ * ещё и по searches.updated_at каждый heartbeat (см. {@link #refresh}): поиск мог изменить другой экземпляр.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchIndex {
+
+    static final int PRICE_BUCKET_WIDTH = 100;
+    // Цены выше 10 000 EUR попадают в последнюю корзину
+    static final int PRICE_BUCKETS = 101;
+    // 5 и более комнат - одна корзина (как в клавиатуре "5+")
+    static final int MAX_ROOMS = 5;
+
+    // Запас при чтении изменённых поисков: транзакция коммитится позже, чем проставила updated_at,
+    // часы экземпляров расходятся. Повторно прочитанный поиск просто переписывается в индексе
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private final SearchRepository searchRepository;
+    private final DistrictMatcher districtMatcher;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> slotBySearchId = new HashMap<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    private final BitSet[] priceBuckets = newBitSets(PRICE_BUCKETS);
+    private final BitSet[] roomsBuckets = newBitSets(MAX_ROOMS + 1);
+    private final BitSet anyRooms = new BitSet();
+    private final BitSet[] districtBits = newBitSets(Long.SIZE);
+    private final BitSet anyDistrict = new BitSet();
+
+    // До какого момента изменения поисков уже прочитаны из БД (null - индекс ещё не построен)
+    private volatile LocalDateTime refreshedAt;
+
+    /**
+     * Критерии поиска, разложенные в примитивы
+     */
+    private record Entry(long searchId, long userId, int minPrice, int maxPrice, int rooms, long districtMask,
+                         double centerLat, double centerLon, double radiusKm) {
+
+        boolean hasRadius() {
+            return radiusKm > 0;
+        }
+    }
+
+    /**
+     * Загрузить все активные поиски после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<Search> active = WorkloadContext.call(Workload.BATCH,
+                () -> searchRepository.findByStatus(SearchStatus.ACTIVE));
+
+        lock.writeLock().lock();
+        try {
+            slotBySearchId.clear();
+            entries.clear();
+            freeSlots.clear();
+            clearAll(priceBuckets);
+            clearAll(roomsBuckets);
+            clearAll(districtBits);
+            anyRooms.clear();
+            anyDistrict.clear();
+
+            for (Search search : active) {
+                putLocked(search);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        refreshedAt = startedAt;
+        log.info("Search index built: {} active searches", active.size());
+    }
+
+    /**
+     * Перечитать поиски, изменённые с прошлого обновления (в том числе на других экземплярах)
+     *
+     * @return ID поисков, которые ушли из индекса или сменили критерии
+     */
+    public List<Long> refresh() {
+        LocalDateTime since = refreshedAt;
+        if (since == null) {
+            return List.of();
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<Search> updated = WorkloadContext.call(Workload.BATCH,
+                () -> searchRepository.findByUpdatedAtAfter(since.minus(REFRESH_OVERLAP)));
+
+        List<Long> changed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (Search search : updated) {
+                Integer slot = slotBySearchId.get(search.getId());
+                Entry previous = slot != null ? entries.get(slot) : null;
+                removeLocked(search.getId());
+                if (search.getStatus() == SearchStatus.ACTIVE) {
+                    putLocked(search);
+                }
+                Integer current = slotBySearchId.get(search.getId());
+                if (previous != null && (current == null || !previous.equals(entries.get(current)))) {
+                    changed.add(search.getId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        refreshedAt = startedAt;
+        if (!changed.isEmpty()) {
+            log.debug("Search index refreshed: {} searches changed or left", changed.size());
+        }
+        return changed;
+    }
+
+    /**
+     * Добавить или обновить поиск (неактивный поиск удаляется из индекса)
+     */
+    public void put(Search search) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(search.getId());
+            if (search.getStatus() == SearchStatus.ACTIVE) {
+                putLocked(search);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удалить поиск из индекса
+     */
+    public void remove(Long searchId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(searchId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Найти ID активных поисков, которым подходит объявление
+     *
+     * @param listing объявление
+     * @return ID поисков (пустой массив, если подходящих нет)
+     */
+    public long[] match(ListingDto listing) {
+        return match(listing, userId -> true);
+    }
+
+    /**
+     * Найти ID активных поисков, которым подходит объявление, только среди поисков выбранных пользователей
+     *
+     * @param listing объявление
+     * @param users какие пользователи (users.id) учитываются
+     * @return ID поисков (пустой массив, если подходящих нет)
+     */
+    public long[] match(ListingDto listing, LongPredicate users) {
+        if (listing.getPrice() == null) {
+            return new long[0];
+        }
+        int price = listing.getPrice();
+        long listingDistricts = districtMatcher.resolve(listing);
+
+        lock.readLock().lock();
+        try {
+            BitSet candidates = (BitSet) priceBuckets[priceBucket(price)].clone();
+
+            BitSet rooms = (BitSet) anyRooms.clone();
+            if (listing.getNumRooms() != null) {
+                rooms.or(roomsBuckets[roomsBucket(listing.getNumRooms())]);
+            }
+            candidates.and(rooms);
+
+            BitSet districts = (BitSet) anyDistrict.clone();
+            for (long mask = listingDistricts; mask != 0; mask &= mask - 1) {
+                districts.or(districtBits[Long.numberOfTrailingZeros(mask)]);
+            }
+            candidates.and(districts);
+
+            // Корзина цены грубая - границы диапазона и радиус проверяем точно
+            long[] result = new long[candidates.cardinality()];
+            int count = 0;
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                Entry entry = entries.get(slot);
+                if (price >= entry.minPrice() && price <= entry.maxPrice() && users.test(entry.userId())
+                        && (!entry.hasRadius() || GeoDistrictIndex.withinRadius(listing.getLatitude(),
+                        listing.getLongitude(), entry.centerLat(), entry.centerLon(), entry.radiusKm()))) {
+                    result[count++] = entry.searchId();
+                }
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Количество поисков в индексе
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotBySearchId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void putLocked(Search search) {
+        int minPrice = search.getMinPrice() != null ? search.getMinPrice() : 0;
+        int maxPrice = search.getMaxPrice() != null ? search.getMaxPrice() : Integer.MAX_VALUE;
+        int rooms = search.getNumRooms() != null ? roomsBucket(search.getNumRooms()) : -1;
+        long districtMask = districtMatcher.maskOf(search.getDistricts());
+
+        Integer freeSlot = freeSlots.poll();
+        int slot = freeSlot != null ? freeSlot : entries.size();
+        long userId = search.getUser().getId();
+        Entry entry = search.hasRadius()
+                ? new Entry(search.getId(), userId, minPrice, maxPrice, rooms, districtMask,
+                        search.getCenterLat(), search.getCenterLon(), search.getRadiusKm())
+                : new Entry(search.getId(), userId, minPrice, maxPrice, rooms, districtMask, 0, 0, 0);
+        if (slot == entries.size()) {
+            entries.add(entry);
+        } else {
+            entries.set(slot, entry);
+        }
+        slotBySearchId.put(search.getId(), slot);
+
+        for (int bucket = priceBucket(minPrice); bucket <= priceBucket(maxPrice); bucket++) {
+            priceBuckets[bucket].set(slot);
+        }
+
+        if (rooms < 0) {
+            anyRooms.set(slot);
+        } else {
+            roomsBuckets[rooms].set(slot);
+        }
+
+        // Районы не выбраны - поиск по всему городу
+        if (districtMask == 0) {
+            anyDistrict.set(slot);
+        } else {
+            for (long mask = districtMask; mask != 0; mask &= mask - 1) {
+                districtBits[Long.numberOfTrailingZeros(mask)].set(slot);
+            }
+        }
+    }
+
+    private void removeLocked(Long searchId) {
+        Integer slot = slotBySearchId.remove(searchId);
+        if (slot == null) {
+            return;
+        }
+
+        for (BitSet bits : priceBuckets) {
+            bits.clear(slot);
+        }
+        for (BitSet bits : roomsBuckets) {
+            bits.clear(slot);
+        }
+        for (BitSet bits : districtBits) {
+            bits.clear(slot);
+        }
+        anyRooms.clear(slot);
+        anyDistrict.clear(slot);
+        freeSlots.push(slot);
+    }
+
+    private static int priceBucket(int price) {
+        return Math.min(Math.max(price, 0) / PRICE_BUCKET_WIDTH, PRICE_BUCKETS - 1);
+    }
+
+    private static int roomsBucket(int rooms) {
+        return Math.min(Math.max(rooms, 0), MAX_ROOMS);
+    }
+
+    private static BitSet[] newBitSets(int count) {
+        BitSet[] result = new BitSet[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = new BitSet();
+        }
+        return result;
+    }
+
+    private static void clearAll(BitSet[] bitSets) {
+        for (BitSet bits : bitSets) {
+            bits.clear();
+        }
+    }
+}
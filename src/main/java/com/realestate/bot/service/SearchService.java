@@ -3,18 +3,26 @@ package com.realestate.bot.service;
 import com.realestate.bot.exception.SearchLimitException;
 import com.realestate.bot.model.dto.SearchCriteriaDto;
 import com.realestate.bot.model.entity.Search;
+import com.realestate.bot.model.entity.SearchStats;
 import com.realestate.bot.model.entity.User;
+import com.realestate.bot.model.enums.CheckLane;
 import com.realestate.bot.model.enums.SearchStatus;
 import com.realestate.bot.repository.SearchRepository;
+import com.realestate.bot.repository.SearchStatsRepository;
 import com.realestate.bot.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 /**
@@ -27,6 +35,12 @@ public class SearchService {
 
     private final SearchRepository searchRepository;
     private final UserRepository userRepository;
+    private final SearchStatsRepository searchStatsRepository;
+    private final SearchIndex searchIndex;
+    private final CheckIntervalPolicy checkIntervalPolicy;
+    private final CheckQueue checkQueue;
+    private final ClusterMembership clusterMembership;
+    private final ListingService listingService;
 
     /**
      * Создать новый поиск
@@ -66,11 +80,18 @@ public class SearchService {
                 .maxPrice(criteria.getMaxPrice())
                 .numRooms(criteria.getNumRooms())
                 .districts(criteria.getDistricts())
+                .centerLat(criteria.getCenterLat())
+                .centerLon(criteria.getCenterLon())
+                .radiusKm(criteria.getRadiusKm())
+                .checkIntervalMinutes(checkIntervalPolicy.initialIntervalMinutes())
+                // Первую проверку делает создание поиска; планировщик подхватит его через интервал
+                .nextCheckAt(LocalDateTime.now().plusMinutes(checkIntervalPolicy.initialIntervalMinutes()))
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
 
         Search savedSearch = searchRepository.save(search);
+        afterCommit(() -> searchIndex.put(savedSearch));
         log.info("Search created successfully: id={}, userId={}", savedSearch.getId(), userId);
 
         return savedSearch;
@@ -99,6 +120,10 @@ public class SearchService {
         search.setStatus(SearchStatus.PAUSED);
         search.setUpdatedAt(LocalDateTime.now());
         searchRepository.save(search);
+        afterCommit(() -> {
+            searchIndex.remove(searchId);
+            listingService.evictInbox(searchId);
+        });
 
         log.info("Search paused: {}", searchId);
     }
@@ -126,7 +151,13 @@ public class SearchService {
 
         search.setStatus(SearchStatus.ACTIVE);
         search.setUpdatedAt(LocalDateTime.now());
+        // Пропущенное за паузу проверяем вне очереди
+        search.setNextCheckAt(LocalDateTime.now());
         searchRepository.save(search);
+        // Объявления, пропавшие из выдачи за паузу, не "опубликованы снова"
+        listingService.resetSeen(searchId);
+        afterCommit(() -> searchIndex.put(search));
+        expediteCheck(search);
 
         log.info("Search resumed: {}", searchId);
     }
@@ -150,8 +181,24 @@ public class SearchService {
         search.setMaxPrice(criteria.getMaxPrice());
         search.setNumRooms(criteria.getNumRooms());
         search.setDistricts(criteria.getDistricts());
+        search.setCenterLat(criteria.getCenterLat());
+        search.setCenterLon(criteria.getCenterLon());
+        search.setRadiusKm(criteria.getRadiusKm());
+        // Статистика старых критериев к новым не относится - расписание начинается заново,
+        // следующая проверка считается первой
+        search.setHitRate(0);
+        search.setMarketVelocity(0);
+        search.setLastCheckedAt(null);
+        search.setCheckIntervalMinutes(checkIntervalPolicy.initialIntervalMinutes());
+        search.setNextCheckAt(LocalDateTime.now());
         search.setUpdatedAt(LocalDateTime.now());
         searchRepository.save(search);
+        afterCommit(() -> {
+            searchIndex.put(search);
+            // Объявления, разосланные по старым критериям
+            listingService.evictInbox(searchId);
+        });
+        expediteCheck(search);
 
         log.info("Search criteria updated: {}", searchId);
     }
@@ -169,6 +216,10 @@ public class SearchService {
         search.setStatus(SearchStatus.DELETED);
         search.setUpdatedAt(LocalDateTime.now());
         searchRepository.save(search);
+        afterCommit(() -> {
+            searchIndex.remove(searchId);
+            listingService.evictInbox(searchId);
+        });
 
         log.info("Search deleted: {}", searchId);
     }
@@ -178,22 +229,164 @@ public class SearchService {
      *
      * @return список активных поисков
      */
+    @Transactional(readOnly = true)
     public List<Search> findAllActive() {
         return searchRepository.findByStatus(SearchStatus.ACTIVE);
     }
 
     /**
-     * Обновить время последней проверки
+     * Записать результат проверки: время последней проверки и расписание следующей
      *
      * @param searchId ID поиска
+     * @param newListings сколько объявлений оказались новыми для пользователя
+     * @param marketChanges сколько подходящих объявлений появилось или изменилось с прошлой проверки
      */
     @Transactional
-    public void updateLastChecked(Long searchId) {
+    public void recordCheck(Long searchId, int newListings, int marketChanges) {
         Search search = findById(searchId);
-        search.setLastCheckedAt(LocalDateTime.now());
+        checkIntervalPolicy.recordCheck(search, newListings, marketChanges, LocalDateTime.now());
         searchRepository.save(search);
     }
 
+    /**
+     * Отложить проверку на текущий интервал поиска (после неудачной проверки)
+     *
+     * @param searchId ID поиска
+     */
+    @Transactional
+    public void postponeCheck(Long searchId) {
+        Search search = findById(searchId);
+        search.setNextCheckAt(LocalDateTime.now().plusMinutes(search.getCheckIntervalMinutes()));
+        searchRepository.save(search);
+    }
+
+    /**
+     * Поставить поиск в быструю полосу очереди проверок после коммита транзакции
+     * (раньше планировщик прочитал бы из БД старое состояние)
+     *
+     * В кластере поиск чужого пользователя в очередь не ставится: next_check_at уже сейчас,
+     * и его захватит экземпляр-владелец ближайшим проходом планировщика.
+     *
+     * @param search поиск с next_check_at = сейчас
+     */
+    private void expediteCheck(Search search) {
+        if (!clusterMembership.owns(search.getUser().getId())) {
+            return;
+        }
+        Long searchId = search.getId();
+        afterCommit(() -> checkQueue.offer(searchId, CheckLane.FRESH));
+    }
+
+    /**
+     * Выполнить действие после коммита текущей транзакции (сразу, если транзакции нет):
+     * обратный индекс, ящики и очередь проверок не должны видеть изменений, которые ещё могут откатиться
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Сделать все активные поиски "пора на проверку": их заберут ближайшие проходы планировщика
+     * (в кластере - каждый экземпляр свою часть)
+     *
+     * @return сколько поисков стали ожидать проверки
+     */
+    public int markAllDueForCheck() {
+        return searchRepository.markDueForCheck(SearchStatus.ACTIVE, LocalDateTime.now());
+    }
+
+    /**
+     * Сделать активный поиск "пора на проверку"
+     *
+     * @param searchId ID поиска
+     * @return false если поиск не активен
+     */
+    public boolean markDueForCheck(Long searchId) {
+        return searchRepository.markDueForCheck(searchId, SearchStatus.ACTIVE, LocalDateTime.now()) > 0;
+    }
+
+    /**
+     * Активные незахваченные поиски, которым пора на проверку
+     *
+     * @param limit сколько поисков вернуть
+     * @return ID поисков и их пользователей (самые просроченные первыми)
+     */
+    public List<SearchRepository.DueSearch> findDueUnclaimed(int limit) {
+        return searchRepository.findDueUnclaimed(LocalDateTime.now(), limit);
+    }
+
+    /**
+     * Захватить поиски для проверки этим экземпляром
+     *
+     * @param ids ID поисков
+     * @param worker ID экземпляра
+     * @param timeout через сколько захват истекает, если его не снять
+     * @return ID захваченных поисков (занятые другими и неактивные пропускаются)
+     */
+    public List<Long> claim(Collection<Long> ids, String worker, Duration timeout) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return searchRepository.claim(ids, worker, timeout.toSeconds());
+    }
+
+    /**
+     * Захватить поиски, просроченные дольше overdue, независимо от владельца
+     *
+     * @param overdue на сколько поиск должен быть просрочен
+     * @param worker ID экземпляра
+     * @param timeout через сколько захват истекает, если его не снять
+     * @param limit сколько поисков захватить
+     * @return ID захваченных поисков
+     */
+    public List<Long> claimOverdue(Duration overdue, String worker, Duration timeout, int limit) {
+        return searchRepository.claimOverdue(LocalDateTime.now().minus(overdue), worker, timeout.toSeconds(), limit);
+    }
+
+    /**
+     * Продлить захват поиска перед проверкой
+     *
+     * @return false если захват истёк и его забрал другой экземпляр
+     */
+    public boolean renewClaim(Long searchId, String worker, Duration timeout) {
+        return searchRepository.renewClaim(searchId, worker, timeout.toSeconds()) > 0;
+    }
+
+    /**
+     * Снять захват поиска после проверки
+     */
+    public void releaseClaim(Long searchId, String worker) {
+        searchRepository.releaseClaim(searchId, worker);
+    }
+
+    /**
+     * Снять все захваты экземпляра (при старте - оставшиеся от прошлого запуска с тем же ID)
+     *
+     * @return сколько захватов снято
+     */
+    public int releaseClaims(String worker) {
+        return searchRepository.releaseClaims(worker);
+    }
+
+    /**
+     * Найти поиски вместе с пользователями
+     */
+    public List<Search> findAllWithUser(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return searchRepository.findByIdIn(ids);
+    }
+
     /**
      * Найти поиск по ID
      *
@@ -206,6 +399,17 @@ public class SearchService {
                 .orElseThrow(() -> new EntityNotFoundException("Search not found with id: " + searchId));
     }
 
+    /**
+     * Найти активный поиск вместе с пользователем
+     *
+     * @param searchId ID поиска
+     * @return Optional с поиском, если он существует и активен
+     */
+    public Optional<Search> findActiveWithUser(Long searchId) {
+        return searchRepository.findWithUserById(searchId)
+                .filter(search -> search.getStatus() == SearchStatus.ACTIVE);
+    }
+
     /**
      * Преобразовать Search в SearchCriteriaDto
      *
@@ -218,6 +422,9 @@ public class SearchService {
                 .maxPrice(search.getMaxPrice())
                 .numRooms(search.getNumRooms())
                 .districts(search.getDistricts())
+                .centerLat(search.getCenterLat())
+                .centerLon(search.getCenterLon())
+                .radiusKm(search.getRadiusKm())
                 .build();
     }
 
@@ -252,6 +459,11 @@ public class SearchService {
             info.append("\n");
         }
 
+        if (search.hasRadius()) {
+            info.append(String.format(Locale.ROOT, "🧭 Радиус: %.1f км от (%.5f, %.5f)\n",
+                    search.getRadiusKm(), search.getCenterLat(), search.getCenterLon()));
+        }
+
         info.append("\n");
 
         if (search.getStatus() == SearchStatus.ACTIVE) {
@@ -264,6 +476,25 @@ public class SearchService {
             info.append(String.format("Последняя проверка: %s\n",
                     formatDateTime(search.getLastCheckedAt())));
         }
+        if (search.getStatus() == SearchStatus.ACTIVE && search.getNextCheckAt() != null) {
+            info.append(String.format("Следующая проверка: %s\n", formatDateTime(search.getNextCheckAt())));
+        }
+
+        // Счётчики из search_stats - без сканирования истории отправок
+        Optional<SearchStats> statsOpt = searchStatsRepository.findById(search.getId());
+        if (statsOpt.isPresent()) {
+            SearchStats stats = statsOpt.get();
+            info.append(String.format("\n📊 Отправлено: %,d (сегодня: %d)\n",
+                    stats.getTotalSent(), stats.getSentToday()));
+
+            if (stats.getAveragePrice() != null) {
+                info.append(String.format("💶 Средняя цена: %,d EUR\n", stats.getAveragePrice()));
+            }
+            if (stats.getLastSentAt() != null) {
+                info.append(String.format("🕒 Последнее объявление: %s\n",
+                        formatDateTime(stats.getLastSentAt())));
+            }
+        }
 
         return info.toString();
     }
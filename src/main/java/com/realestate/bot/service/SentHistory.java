@@ -0,0 +1,36 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.repository.SentListingKeyRepository;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Что поиск уже получил: отсортированные ID отправленных объявлений, цена в последнем уведомлении
+ * (-1 если неизвестна) и когда объявление последний раз было в выдаче поиска (epoch millis, 0 если неизвестно)
+ */
+record SentHistory(long[] ids, int[] prices, long[] seenAt) {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    static SentHistory of(List<SentListingKeyRepository.SentKey> keys) {
+        long[] ids = new long[keys.size()];
+        int[] prices = new int[keys.size()];
+        long[] seenAt = new long[keys.size()];
+        for (int i = 0; i < ids.length; i++) {
+            SentListingKeyRepository.SentKey key = keys.get(i);
+            ids[i] = key.getIdealistaId();
+            prices[i] = key.getPrice() != null ? key.getPrice() : -1;
+            seenAt[i] = key.getSeenAt() != null ? key.getSeenAt().atZone(ZONE).toInstant().toEpochMilli() : 0L;
+        }
+        return new SentHistory(ids, prices, seenAt);
+    }
+
+    /**
+     * Позиция объявления в истории или отрицательное число, если поиск его не получал
+     */
+    int indexOf(Long idealistaId) {
+        return idealistaId != null ? Arrays.binarySearch(ids, idealistaId) : -1;
+    }
+}
@@ -0,0 +1,53 @@
+package com.realestate.bot.service;
+
+import com.realestate.bot.config.SentListingsConfig;
+import com.realestate.bot.config.datasource.Workload;
+import com.realestate.bot.config.datasource.WorkloadContext;
+import com.realestate.bot.repository.SentListingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Обслуживание партиций sent_listings: создание будущих месяцев и удаление/архивация старых
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SentListingMaintenanceService {
+
+    private final SentListingRepository sentListingRepository;
+    private final SentListingsConfig sentListingsConfig;
+
+    /**
+     * Первый прогон сразу после старта, чтобы партиция текущего месяца точно существовала
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        runMaintenance();
+    }
+
+    /**
+     * Ежедневное обслуживание партиций (по умолчанию в 03:30)
+     */
+    @Scheduled(cron = "${sent-listings.maintenance-cron:0 30 3 * * *}")
+    public void runMaintenance() {
+        WorkloadContext.run(Workload.BATCH, this::maintainPartitions);
+    }
+
+    private void maintainPartitions() {
+        try {
+            Integer created = sentListingRepository.ensurePartitions(sentListingsConfig.getPartitionsAhead());
+            Integer expired = sentListingRepository.expirePartitions(
+                    sentListingsConfig.getRetentionMonths(), sentListingsConfig.isArchive());
+
+            log.info("sent_listings maintenance: {} partitions created, {} partitions {}",
+                    created, expired, sentListingsConfig.isArchive() ? "archived" : "dropped");
+        } catch (Exception e) {
+            log.error("Error during sent_listings partition maintenance", e);
+        }
+    }
+}
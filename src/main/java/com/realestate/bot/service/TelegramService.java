@@ -1,20 +1,28 @@
 package com.realestate.bot.service;
 
 import com.realestate.bot.model.dto.ListingDto;
+import com.realestate.bot.model.enums.ListingChangeType;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
 import org.telegram.telegrambots.meta.api.objects.media.InputMediaPhoto;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.bots.AbsSender;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Сервис для отправки сообщений через Telegram
@@ -24,6 +32,24 @@ import java.util.List;
 @Slf4j
 public class TelegramService {
 
+    private static final int MAX_MESSAGE_LENGTH = 4000;
+
+    // Код ответа Bot API при превышении лимита отправки
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final ObservationRegistry observationRegistry;
+
+    // Вызовы Bot API, выполняющиеся сейчас
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Вызов Bot API
+     */
+    @FunctionalInterface
+    private interface ApiCall<T> {
+        T execute() throws TelegramApiException;
+    }
+
     /**
      * Отправить объявление о квартире пользователю
      *
@@ -42,13 +68,13 @@ public class TelegramService {
             List<String> photos = listing.getPhotoUrls();
             if (photos == null || photos.isEmpty()) {
                 // Нет фотографий - отправляем только текст
-                sendTextMessage(chatId, messageText, sender);
+                sendTextMessage(chatId, listing.getIdealistaId(), messageText, sender);
             } else if (photos.size() == 1) {
                 // Одна фотография - отправляем SendPhoto
-                sendPhotoMessage(chatId, messageText, photos.get(0), sender);
+                sendPhotoMessage(chatId, listing.getIdealistaId(), messageText, photos.get(0), sender);
             } else {
                 // Несколько фотографий - отправляем MediaGroup
-                sendMediaGroup(chatId, messageText, photos, sender);
+                sendMediaGroup(chatId, listing.getIdealistaId(), messageText, photos, sender);
             }
 
             return true;
@@ -65,15 +91,15 @@ public class TelegramService {
      * @param chatId ID чата
      * @param listings список объявлений
      * @param sender отправитель (бот)
-     * @return количество успешно отправленных объявлений
+     * @return успешно отправленные объявления
      */
-    public int sendListings(Long chatId, List<ListingDto> listings, AbsSender sender) {
+    public List<ListingDto> sendListings(Long chatId, List<ListingDto> listings, AbsSender sender) {
         log.info("Sending {} listings to chatId {}", listings.size(), chatId);
 
-        int successCount = 0;
+        List<ListingDto> sent = new ArrayList<>(listings.size());
         for (ListingDto listing : listings) {
             if (sendListing(chatId, listing, sender)) {
-                successCount++;
+                sent.add(listing);
                 // Небольшая пауза между сообщениями, чтобы не превысить rate limit
                 try {
                     Thread.sleep(200);
@@ -84,19 +110,164 @@ public class TelegramService {
         }
 
         log.info("Successfully sent {} out of {} listings to chatId {}",
-                successCount, listings.size(), chatId);
-        return successCount;
+                sent.size(), listings.size(), chatId);
+        return sent;
+    }
+
+    /**
+     * Отправить объявления компактным списком (по строке на объявление)
+     *
+     * Длинный список уходит несколькими сообщениями; после первой неудачной части остальные не отправляются.
+     *
+     * @param chatId ID чата
+     * @param listings объявления
+     * @param sender отправитель (бот)
+     * @return объявления из успешно отправленных частей списка
+     */
+    public List<ListingDto> sendDigest(Long chatId, List<ListingDto> listings, AbsSender sender) {
+        log.info("Sending digest of {} listings to chatId {}", listings.size(), chatId);
+
+        List<ListingDto> sent = new ArrayList<>(listings.size());
+        List<ListingDto> chunk = new ArrayList<>();
+        try {
+            StringBuilder message = new StringBuilder(String.format("📋 Ещё %d:\n\n", listings.size()));
+            for (ListingDto listing : listings) {
+                String line = formatDigestLine(listing);
+                // Ограничение Telegram - 4096 символов на сообщение
+                if (message.length() + line.length() > MAX_MESSAGE_LENGTH) {
+                    sendTextMessage(chatId, null, message.toString(), sender);
+                    sent.addAll(chunk);
+                    chunk.clear();
+                    message.setLength(0);
+                }
+                message.append(line);
+                chunk.add(listing);
+            }
+            if (!message.isEmpty()) {
+                sendTextMessage(chatId, null, message.toString(), sender);
+                sent.addAll(chunk);
+            }
+        } catch (TelegramApiException e) {
+            log.error("Error sending digest to chatId {} ({} of {} listings sent)",
+                    chatId, sent.size(), listings.size(), e);
+        }
+        return sent;
+    }
+
+    /**
+     * Разбить объявления на страницы дайджеста
+     *
+     * Страница - не больше pageSize объявлений; объявление, не помещающееся в лимит Telegram,
+     * начинает новую страницу (а не помещающееся и на пустую - обрезается), поэтому на страницы
+     * попадают все объявления.
+     *
+     * @param header заголовок каждой страницы
+     * @param listings объявления (в порядке показа)
+     * @param pageSize объявлений на странице
+     * @return тексты страниц
+     */
+    public List<String> renderDigestPages(String header, List<ListingDto> listings, int pageSize) {
+        String pageHeader = header + "\n\n";
+        List<String> pages = new ArrayList<>();
+        StringBuilder page = new StringBuilder(pageHeader);
+        int onPage = 0;
+        for (ListingDto listing : listings) {
+            String line = formatDigestLine(listing);
+            if (onPage > 0 && (onPage == pageSize || page.length() + line.length() > MAX_MESSAGE_LENGTH)) {
+                pages.add(page.toString());
+                page = new StringBuilder(pageHeader);
+                onPage = 0;
+            }
+            int room = MAX_MESSAGE_LENGTH - page.length();
+            page.append(line.length() > room ? line.substring(0, Math.max(room - 1, 0)) + "…" : line);
+            onPage++;
+        }
+        if (onPage > 0) {
+            pages.add(page.toString());
+        }
+        return pages;
+    }
+
+    /**
+     * Отправить текстовое сообщение с inline клавиатурой
+     *
+     * @return ID отправленного сообщения или null при ошибке
+     */
+    public Integer sendMessage(Long chatId, String text, InlineKeyboardMarkup markup, AbsSender sender) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(text);
+        message.disableWebPagePreview();
+        message.setReplyMarkup(markup);
+        try {
+            Message sent = send("sendMessage", chatId, null, () -> sender.execute(message));
+            return sent != null ? sent.getMessageId() : null;
+        } catch (TelegramApiException e) {
+            log.error("Error sending message to chatId: {}", chatId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Заменить текст и клавиатуру уже отправленного сообщения
+     */
+    public void editMessage(Long chatId, Integer messageId, String text, InlineKeyboardMarkup markup,
+                            AbsSender sender) {
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId.toString());
+        edit.setMessageId(messageId);
+        edit.setText(text);
+        edit.disableWebPagePreview();
+        edit.setReplyMarkup(markup);
+        try {
+            send("editMessageText", chatId, null, () -> sender.execute(edit));
+        } catch (TelegramApiException e) {
+            // "message is not modified" при повторном нажатии на текущую страницу - не ошибка
+            log.debug("Error editing message {} in chatId {}: {}", messageId, chatId, e.getMessage());
+        }
+    }
+
+    /**
+     * Строка объявления для компактного списка
+     */
+    private String formatDigestLine(ListingDto listing) {
+        StringBuilder line = new StringBuilder("• ");
+        if (listing.getPrice() != null) {
+            line.append(String.format("%,d EUR", listing.getPrice()));
+        }
+        if (listing.getNumRooms() != null) {
+            line.append(String.format(", %d комн.", listing.getNumRooms()));
+        }
+        if (listing.getDistrict() != null && !listing.getDistrict().isEmpty()) {
+            line.append(", ").append(listing.getDistrict());
+        }
+        if (listing.getChangeType() == ListingChangeType.PRICE_DROP) {
+            line.append(" 📉");
+        }
+        line.append("\n").append(listing.getIdealistaUrl()).append("\n\n");
+        return line.toString();
     }
 
     /**
      * Форматировать объявление для отображения в Telegram
      */
-    private String formatListingMessage(ListingDto listing) {
+    String formatListingMessage(ListingDto listing) {
         StringBuilder message = new StringBuilder();
-        message.append("🏠 Новая квартира найдена!\n\n");
+        ListingChangeType changeType = listing.getChangeType() != null ? listing.getChangeType() : ListingChangeType.NEW;
+        switch (changeType) {
+            case PRICE_DROP -> message.append("📉 Цена снижена!\n\n");
+            case RELISTED -> message.append("🔁 Объявление снова опубликовано!\n\n");
+            default -> message.append("🏠 Новая квартира найдена!\n\n");
+        }
 
         if (listing.getPrice() != null) {
-            message.append(String.format("💰 Цена: %,d EUR/мес\n", listing.getPrice()));
+            if (changeType != ListingChangeType.NEW && listing.getPreviousPrice() != null
+                    && !listing.getPreviousPrice().equals(listing.getPrice())) {
+                message.append(String.format("💰 Цена: %,d EUR/мес (было %,d)\n",
+                        listing.getPrice(), listing.getPreviousPrice()));
+            } else {
+                message.append(String.format("💰 Цена: %,d EUR/мес\n", listing.getPrice()));
+            }
         }
 
         if (listing.getNumRooms() != null) {
@@ -126,31 +297,35 @@ public class TelegramService {
 
     /**
      * Отправить текстовое сообщение
+     *
+     * @param listingId объявление, о котором сообщение (null - служебное сообщение)
      */
-    private void sendTextMessage(Long chatId, String text, AbsSender sender) throws TelegramApiException {
+    private void sendTextMessage(Long chatId, Long listingId, String text, AbsSender sender)
+            throws TelegramApiException {
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText(text);
         message.disableWebPagePreview();
-        sender.execute(message);
+        send("sendMessage", chatId, listingId, () -> sender.execute(message));
     }
 
     /**
      * Отправить сообщение с одной фотографией
      */
-    private void sendPhotoMessage(Long chatId, String caption, String photoUrl, AbsSender sender)
+    private void sendPhotoMessage(Long chatId, Long listingId, String caption, String photoUrl, AbsSender sender)
             throws TelegramApiException {
         SendPhoto photo = new SendPhoto();
         photo.setChatId(chatId.toString());
         photo.setPhoto(new InputFile(photoUrl));
         photo.setCaption(caption);
-        sender.execute(photo);
+        send("sendPhoto", chatId, listingId, () -> sender.execute(photo));
     }
 
     /**
      * Отправить группу фотографий (2-3 фото)
      */
-    private void sendMediaGroup(Long chatId, String caption, List<String> photoUrls, AbsSender sender)
+    private void sendMediaGroup(Long chatId, Long listingId, String caption, List<String> photoUrls,
+                                AbsSender sender)
             throws TelegramApiException {
 
         // Telegram позволяет отправлять до 10 фото в MediaGroup, но мы берем первые 3
@@ -173,7 +348,46 @@ public class TelegramService {
         mediaGroup.setChatId(chatId.toString());
         mediaGroup.setMedias(mediaList);
 
-        sender.execute(mediaGroup);
+        send("sendMediaGroup", chatId, listingId, () -> sender.execute(mediaGroup));
+    }
+
+    /**
+     * Выполнить вызов Bot API в observation telegram.send: таймер по методу и исходу
+     * (success, rate_limited - ответ 429, error) и span с ID чата и объявления
+     */
+    private <T> T send(String method, Long chatId, Long listingId, ApiCall<T> call) throws TelegramApiException {
+        Observation observation = Observation.createNotStarted("telegram.send", observationRegistry)
+                .lowCardinalityKeyValue("method", method)
+                .highCardinalityKeyValue("chat.id", String.valueOf(chatId))
+                .highCardinalityKeyValue("listing.id", listingId != null ? String.valueOf(listingId) : "none")
+                .start();
+        String outcome = "error";
+        inFlight.incrementAndGet();
+        try (Observation.Scope scope = observation.openScope()) {
+            T result = call.execute();
+            outcome = "success";
+            return result;
+        } catch (TelegramApiRequestException e) {
+            if (e.getErrorCode() != null && e.getErrorCode() == TOO_MANY_REQUESTS) {
+                outcome = "rate_limited";
+            }
+            observation.error(e);
+            throw e;
+        } catch (TelegramApiException | RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+            observation.lowCardinalityKeyValue("outcome", outcome);
+            observation.stop();
+        }
+    }
+
+    /**
+     * Количество выполняющихся сейчас вызовов Bot API
+     */
+    public int inFlight() {
+        return inFlight.get();
     }
 
     /**
@@ -185,7 +399,7 @@ public class TelegramService {
      */
     public void sendMessage(Long chatId, String text, AbsSender sender) {
         try {
-            sendTextMessage(chatId, text, sender);
+            sendTextMessage(chatId, null, text, sender);
         } catch (TelegramApiException e) {
             log.error("Error sending message to chatId: {}", chatId, e);
         }
@@ -1,6 +1,7 @@
 package com.realestate.bot.service;
 
 import com.realestate.bot.model.entity.User;
+import com.realestate.bot.model.enums.DeliveryMode;
 import com.realestate.bot.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -8,6 +9,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 
 /**
  * Сервис для управления пользователями Telegram
@@ -79,4 +81,88 @@ public class UserService {
         return userRepository.findByTelegramId(telegramId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with telegramId: " + telegramId));
     }
+
+    /**
+     * Переключить режим доставки (FULL <-> DIGEST)
+     *
+     * @param telegramId Telegram ID пользователя
+     * @return новый режим
+     */
+    @Transactional
+    public DeliveryMode toggleDeliveryMode(Long telegramId) {
+        User user = getUserByTelegramId(telegramId);
+        DeliveryMode mode = user.getDeliveryMode() == DeliveryMode.DIGEST ? DeliveryMode.FULL : DeliveryMode.DIGEST;
+        user.setDeliveryMode(mode);
+        user.setUpdatedAt(LocalDateTime.now());
+        userRepository.save(user);
+
+        log.info("Delivery mode changed: telegramId={}, mode={}", telegramId, mode);
+        return mode;
+    }
+
+    /**
+     * Задать тихие часы (null, null - отключить)
+     *
+     * @param telegramId Telegram ID пользователя
+     * @param from начало тихих часов
+     * @param to конец тихих часов
+     */
+    @Transactional
+    public void setQuietHours(Long telegramId, LocalTime from, LocalTime to) {
+        User user = getUserByTelegramId(telegramId);
+        user.setQuietFrom(from);
+        user.setQuietTo(to);
+        user.setUpdatedAt(LocalDateTime.now());
+        userRepository.save(user);
+
+        log.info("Quiet hours changed: telegramId={}, from={}, to={}", telegramId, from, to);
+    }
+
+    /**
+     * Задать лимит сообщений в час (null - без лимита)
+     *
+     * @param telegramId Telegram ID пользователя
+     * @param maxMessagesPerHour лимит
+     */
+    @Transactional
+    public void setMaxMessagesPerHour(Long telegramId, Integer maxMessagesPerHour) {
+        User user = getUserByTelegramId(telegramId);
+        user.setMaxMessagesPerHour(maxMessagesPerHour);
+        user.setUpdatedAt(LocalDateTime.now());
+        userRepository.save(user);
+
+        log.info("Hourly message limit changed: telegramId={}, limit={}", telegramId, maxMessagesPerHour);
+    }
+
+    /**
+     * Задать время ежедневной доставки (null - доставлять сразу)
+     *
+     * @param telegramId Telegram ID пользователя
+     * @param digestTime время доставки
+     */
+    @Transactional
+    public void setDigestTime(Long telegramId, LocalTime digestTime) {
+        User user = getUserByTelegramId(telegramId);
+        user.setDigestTime(digestTime);
+        user.setUpdatedAt(LocalDateTime.now());
+        userRepository.save(user);
+
+        log.info("Digest time changed: telegramId={}, time={}", telegramId, digestTime);
+    }
+
+    /**
+     * Включить или выключить премиум (полоса PREMIUM в очереди проверок)
+     *
+     * @param telegramId Telegram ID пользователя
+     * @param premium премиум
+     */
+    @Transactional
+    public void setPremium(Long telegramId, boolean premium) {
+        User user = getUserByTelegramId(telegramId);
+        user.setPremium(premium);
+        user.setUpdatedAt(LocalDateTime.now());
+        userRepository.save(user);
+
+        log.info("Premium changed: telegramId={}, premium={}", telegramId, premium);
+    }
 }
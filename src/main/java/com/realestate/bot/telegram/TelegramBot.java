@@ -6,6 +6,7 @@ import com.realestate.bot.telegram.handler.CommandHandler;
 import com.realestate.bot.telegram.handler.MessageHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
@@ -27,13 +28,24 @@ public class TelegramBot extends TelegramLongPollingBot {
             MessageHandler messageHandler,
             CallbackQueryHandler callbackQueryHandler
     ) {
-        super(botConfig.getToken());
+        super(botOptions(botConfig), botConfig.getToken());
         this.botConfig = botConfig;
         this.commandHandler = commandHandler;
         this.messageHandler = messageHandler;
         this.callbackQueryHandler = callbackQueryHandler;
     }
 
+    /**
+     * Настройки клиента Bot API: адрес сервера берётся из telegram.bot.api-url, если задан
+     */
+    private static DefaultBotOptions botOptions(BotConfig botConfig) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        if (botConfig.getApiUrl() != null && !botConfig.getApiUrl().isBlank()) {
+            options.setBaseUrl(botConfig.getApiUrl());
+        }
+        return options;
+    }
+
     @Override
     public String getBotUsername() {
         return botConfig.getUsername();
@@ -0,0 +1,59 @@
+package com.realestate.bot.telegram;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.BotSession;
+
+/**
+ * Приём апдейтов Telegram (long polling)
+ *
+ * getUpdates может опрашивать только один процесс, поэтому в кластере приём запускает лидер
+ * и останавливает при потере лидерства. Отправлять сообщения может любой экземпляр.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TelegramIntake {
+
+    private final TelegramBotsApi telegramBotsApi;
+    private final TelegramBot telegramBot;
+
+    private BotSession session;
+
+    /**
+     * Начать приём апдейтов (повторный вызов ничего не делает)
+     */
+    public synchronized void start() {
+        if (session != null && session.isRunning()) {
+            return;
+        }
+        try {
+            if (session == null) {
+                session = telegramBotsApi.registerBot(telegramBot);
+            } else {
+                session.start();
+            }
+            log.info("Telegram update intake started: {}", telegramBot.getBotUsername());
+        } catch (TelegramApiException e) {
+            log.error("Error registering Telegram bot", e);
+            throw new IllegalStateException("Failed to register Telegram bot", e);
+        }
+    }
+
+    /**
+     * Остановить приём апдейтов
+     */
+    public synchronized void stop() {
+        if (session != null && session.isRunning()) {
+            session.stop();
+            log.info("Telegram update intake stopped");
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return session != null && session.isRunning();
+    }
+}
@@ -6,12 +6,16 @@ import com.realestate.bot.model.dto.SearchCriteriaDto;
 import com.realestate.bot.model.entity.Search;
 import com.realestate.bot.model.entity.User;
 import com.realestate.bot.model.enums.ConversationState;
+import com.realestate.bot.model.enums.DeliveryMode;
 import com.realestate.bot.model.enums.SearchStatus;
+import com.realestate.bot.service.DeliveryService;
+import com.realestate.bot.service.DigestCache;
 import com.realestate.bot.service.ListingService;
 import com.realestate.bot.service.SearchService;
 import com.realestate.bot.service.TelegramService;
 import com.realestate.bot.service.UserService;
 import com.realestate.bot.telegram.keyboard.KeyboardFactory;
+import com.realestate.bot.util.RussianPlural;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -42,6 +46,8 @@ public class CallbackQueryHandler {
     private final KeyboardFactory keyboardFactory;
     private final MessageHandler messageHandler;
     private final ListingService listingService;
+    private final DeliveryService deliveryService;
+    private final DigestCache digestCache;
     private final TelegramService telegramService;
 
     /**
@@ -51,6 +57,7 @@ public class CallbackQueryHandler {
         CallbackQuery callbackQuery = update.getCallbackQuery();
         String callbackData = callbackQuery.getData();
         Long chatId = callbackQuery.getMessage().getChatId();
+        Integer messageId = callbackQuery.getMessage().getMessageId();
         String callbackQueryId = callbackQuery.getId();
 
         log.debug("Processing callback: {} from chatId: {}", callbackData, chatId);
@@ -84,6 +91,13 @@ public class CallbackQueryHandler {
                 case "CONFIRM_DELETE" -> handleConfirmDelete(chatId, sender);
                 case "CANCEL_DELETE" -> handleCancelDelete(chatId, sender);
                 case "BACK_TO_MAIN" -> handleBackToMain(chatId, sender);
+                case "TOGGLE_DELIVERY_MODE" -> handleToggleDeliveryMode(chatId, sender);
+                case "DIGEST_PAGE" -> {
+                    if (!handleDigestPage(chatId, messageId, data, sender)) {
+                        answerCallbackQuery(callbackQueryId, "Список устарел. Новые объявления придут со следующей проверкой.", sender);
+                        return;
+                    }
+                }
                 default -> log.warn("Unknown callback action: {}", action);
             }
 
@@ -137,7 +151,7 @@ public class CallbackQueryHandler {
         message.setChatId(chatId.toString());
         message.setText(info);
         message.setReplyMarkup(keyboardFactory.createSearchManagement(
-                search.getStatus() == SearchStatus.ACTIVE));
+                search.getStatus() == SearchStatus.ACTIVE, user.getDeliveryMode()));
 
         try {
             sender.execute(message);
@@ -154,11 +168,15 @@ public class CallbackQueryHandler {
                 "Доступные команды:\n" +
                 "/start - Начать работу с ботом\n" +
                 "/mysearch - Посмотреть мой активный поиск\n" +
+                "/digest - Включить/выключить режим дайджеста\n" +
+                "/quiet 23:00-08:00 - Тихие часы (/quiet off - отключить)\n" +
+                "/limit 10 - Не больше 10 сообщений в час (/limit off - без лимита)\n" +
+                "/digesttime 09:00 - Присылать новые раз в день в это время (/digesttime off - сразу)\n" +
                 "/help - Показать эту справку\n\n" +
                 "Как пользоваться:\n" +
                 "1. Создайте поиск с вашими критериями\n" +
                 "2. Получите текущие предложения сразу\n" +
-                "3. Бот будет присылать новые каждые 15 минут\n" +
+                "3. Бот будет присылать новые по мере появления\n" +
                 "4. Управляйте поиском: приостановить, редактировать, удалить";
 
         sendMessage(chatId, helpMessage, sender);
@@ -287,33 +305,31 @@ public class CallbackQueryHandler {
                     "🔍 Ищу актуальные предложения...", sender);
 
             // Получаем новые объявления
-            List<ListingDto> newListings = listingService.getNewListings(search);
+            ListingService.CheckResult result = listingService.check(search);
+            List<ListingDto> newListings = result.newListings();
 
             if (newListings.isEmpty()) {
                 sendMessage(chatId,
                         "К сожалению, по вашим критериям пока нет подходящих квартир.\n\n" +
-                        "Буду проверять новые предложения каждые 15 минут и присылать вам уведомления.", sender);
+                        "Буду проверять новые предложения и присылать вам уведомления: " +
+                        "чем чаще они появляются по вашим критериям, тем чаще проверка.", sender);
             } else {
-                sendMessage(chatId,
-                        String.format("Найдено %d %s:\n",
-                                newListings.size(),
-                                getRussianPluralForm(newListings.size(), "квартира", "квартиры", "квартир")),
-                        sender);
-
-                // Отправляем объявления пользователю
-                int sentCount = telegramService.sendListings(chatId, newListings, sender);
+                String header = String.format("Найдено %d %s:\n",
+                        newListings.size(),
+                        RussianPlural.of(newListings.size(), "квартира", "квартиры", "квартир"));
 
-                // Отмечаем отправленные объявления
-                if (sentCount > 0) {
-                    listingService.markAsSent(search, newListings.subList(0, sentCount));
-                }
+                // Доставка по режиму пользователя (полная или дайджест); отправленные отмечаются
+                deliveryService.deliver(search, chatId, header, newListings, sender);
 
                 sendMessage(chatId,
-                        "\n✅ Буду проверять новые предложения каждые 15 минут.", sender);
+                        "\n✅ Буду проверять новые предложения: чем чаще они появляются, тем чаще проверка.", sender);
             }
 
-            // Обновляем время последней проверки
-            searchService.updateLastChecked(search.getId());
+            // Первая проверка: дальше поиск проверяется по своему расписанию
+            // (по сохранённой выдаче расписание не подстраивается - первым учтётся плановая проверка)
+            if (!result.fallback()) {
+                searchService.recordCheck(search.getId(), newListings.size(), newListings.size());
+            }
 
         } catch (SearchLimitException e) {
             sendMessage(chatId, "❌ " + e.getMessage(), sender);
@@ -326,19 +342,36 @@ public class CallbackQueryHandler {
     }
 
     /**
-     * Получить правильную форму множественного числа для русского языка
+     * Переключить режим доставки (отдельные сообщения / дайджест)
      */
-    private String getRussianPluralForm(int count, String form1, String form2, String form5) {
-        int mod10 = count % 10;
-        int mod100 = count % 100;
-
-        if (mod10 == 1 && mod100 != 11) {
-            return form1;
-        } else if (mod10 >= 2 && mod10 <= 4 && (mod100 < 10 || mod100 >= 20)) {
-            return form2;
-        } else {
-            return form5;
+    private void handleToggleDeliveryMode(Long chatId, AbsSender sender) {
+        DeliveryMode mode = userService.toggleDeliveryMode(chatId);
+        sendMessage(chatId, mode == DeliveryMode.DIGEST
+                ? "📰 Режим дайджеста включён.\n\nНовые объявления будут приходить одним сообщением со страницами."
+                : "📰 Режим дайджеста выключен.\n\nЛучшие объявления будут приходить отдельными сообщениями с фото.",
+                sender);
+    }
+
+    /**
+     * Показать страницу дайджеста (редактированием того же сообщения)
+     *
+     * @return false если дайджест устарел и вытеснен из кеша
+     */
+    private boolean handleDigestPage(Long chatId, Integer messageId, String data, AbsSender sender) {
+        String[] parts = data.split(":");
+        long digestId = Long.parseLong(parts[0]);
+        int page = Integer.parseInt(parts[1]);
+
+        Optional<DigestCache.Digest> digestOpt = digestCache.get(digestId);
+        if (digestOpt.isEmpty() || !digestOpt.get().chatId().equals(chatId)) {
+            return false;
         }
+
+        List<String> pages = digestOpt.get().pages();
+        int safePage = Math.min(Math.max(page, 0), pages.size() - 1);
+        telegramService.editMessage(chatId, messageId, pages.get(safePage),
+                keyboardFactory.createDigestPager(digestId, safePage, pages.size()), sender);
+        return true;
     }
 
     /**
@@ -375,7 +408,7 @@ public class CallbackQueryHandler {
             searchService.resumeSearch(searchOpt.get().getId());
             sendMessage(chatId,
                     "▶️ Поиск возобновлен!\n\n" +
-                    "Снова проверяю новые предложения каждые 15 минут.", sender);
+                    "Снова проверяю новые предложения.", sender);
         } catch (SearchLimitException e) {
             sendMessage(chatId, "❌ " + e.getMessage(), sender);
         }
@@ -695,18 +728,14 @@ public class CallbackQueryHandler {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
 
-        String[] districts = {
-            "Ciutat Vella", "Ruzafa", "El Pla del Real",
-            "Benimaclet", "Algirós", "Campanar",
-            "L'Eixample", "Extramurs", "Poblats Marítims"
-        };
+        List<String> districts = KeyboardFactory.DISTRICTS;
 
         // По 2 кнопки в ряд
-        for (int i = 0; i < districts.length; i += 2) {
+        for (int i = 0; i < districts.size(); i += 2) {
             List<InlineKeyboardButton> row = new ArrayList<>();
 
-            for (int j = i; j < Math.min(i + 2, districts.length); j++) {
-                String district = districts[j];
+            for (int j = i; j < Math.min(i + 2, districts.size()); j++) {
+                String district = districts.get(j);
                 InlineKeyboardButton btn = new InlineKeyboardButton();
 
                 boolean isSelected = selectedDistricts != null && selectedDistricts.contains(district);
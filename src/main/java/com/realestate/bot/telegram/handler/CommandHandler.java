@@ -2,6 +2,7 @@ package com.realestate.bot.telegram.handler;
 
 import com.realestate.bot.model.entity.Search;
 import com.realestate.bot.model.entity.User;
+import com.realestate.bot.model.enums.DeliveryMode;
 import com.realestate.bot.model.enums.SearchStatus;
 import com.realestate.bot.service.SearchService;
 import com.realestate.bot.service.UserService;
@@ -15,6 +16,9 @@ import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.bots.AbsSender;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
 
 /**
@@ -25,6 +29,9 @@ import java.util.Optional;
 @Slf4j
 public class CommandHandler {
 
+    // "9:00" и "09:00"
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("H:mm");
+
     private final UserService userService;
     private final SearchService searchService;
     private final KeyboardFactory keyboardFactory;
@@ -43,6 +50,10 @@ public class CommandHandler {
             case "/start" -> handleStart(update, sender);
             case "/help" -> handleHelp(update, sender);
             case "/mysearch" -> handleMySearch(update, sender);
+            case "/digest" -> handleDigest(update, sender);
+            case "/quiet" -> handleQuiet(update, sender);
+            case "/limit" -> handleLimit(update, sender);
+            case "/digesttime" -> handleDigestTime(update, sender);
             default -> handleUnknown(update, sender);
         }
     }
@@ -66,7 +77,7 @@ public class CommandHandler {
                 "Привет, %s! Я помогу вам найти квартиру в аренду в Валенсии.\n\n" +
                 "Что я умею:\n" +
                 "✅ Искать квартиры по вашим критериям (цена, комнаты, районы)\n" +
-                "✅ Отправлять уведомления о новых объявлениях (каждые 15 минут)\n" +
+                "✅ Отправлять уведомления о новых объявлениях по мере их появления\n" +
                 "✅ Не дублировать уже отправленные предложения\n\n" +
                 "Выберите действие:",
                 user.getFirstName() != null ? user.getFirstName() : "друг"
@@ -94,16 +105,20 @@ public class CommandHandler {
                 "Доступные команды:\n" +
                 "/start - Начать работу с ботом\n" +
                 "/mysearch - Посмотреть мой активный поиск\n" +
+                "/digest - Включить/выключить режим дайджеста\n" +
+                "/quiet 23:00-08:00 - Тихие часы (/quiet off - отключить)\n" +
+                "/limit 10 - Не больше 10 сообщений в час (/limit off - без лимита)\n" +
+                "/digesttime 09:00 - Присылать новые раз в день в это время (/digesttime off - сразу)\n" +
                 "/help - Показать эту справку\n\n" +
                 "Как пользоваться:\n" +
                 "1. Создайте поиск с вашими критериями\n" +
                 "2. Получите текущие предложения сразу\n" +
-                "3. Бот будет присылать новые каждые 15 минут\n" +
+                "3. Бот будет присылать новые по мере появления\n" +
                 "4. Управляйте поиском: приостановить, редактировать, удалить\n\n" +
                 "Ограничения:\n" +
                 "• Только один активный поиск на пользователя\n" +
                 "• Только город Валенсия\n" +
-                "• Проверка новых: каждые 15 минут";
+                "• Проверка новых: чаще, если новые объявления по поиску появляются часто";
 
         SendMessage sendMessage = new SendMessage();
         sendMessage.setChatId(chatId.toString());
@@ -147,7 +162,7 @@ public class CommandHandler {
         if (searchOpt.isPresent()) {
             Search search = searchOpt.get();
             sendMessage.setReplyMarkup(keyboardFactory.createSearchManagement(
-                    search.getStatus() == SearchStatus.ACTIVE));
+                    search.getStatus() == SearchStatus.ACTIVE, user.getDeliveryMode()));
         } else {
             sendMessage.setReplyMarkup(keyboardFactory.createMainMenu());
         }
@@ -159,6 +174,141 @@ public class CommandHandler {
         }
     }
 
+    /**
+     * Обработка команды /digest: переключение режима доставки
+     */
+    private void handleDigest(Update update, AbsSender sender) {
+        Long chatId = update.getMessage().getChatId();
+
+        User user = userService.findOrCreateUser(update.getMessage().getFrom());
+        DeliveryMode mode = userService.toggleDeliveryMode(user.getTelegramId());
+
+        String messageText = mode == DeliveryMode.DIGEST
+                ? "📰 Режим дайджеста включён.\n\nНовые объявления будут приходить одним сообщением со страницами."
+                : "📰 Режим дайджеста выключен.\n\nЛучшие объявления будут приходить отдельными сообщениями.";
+
+        reply(chatId, messageText, sender);
+    }
+
+    /**
+     * Обработка команды /quiet: тихие часы
+     */
+    private void handleQuiet(Update update, AbsSender sender) {
+        Long chatId = update.getMessage().getChatId();
+        User user = userService.findOrCreateUser(update.getMessage().getFrom());
+        String argument = commandArgument(update);
+
+        String messageText;
+        if ("off".equalsIgnoreCase(argument)) {
+            userService.setQuietHours(user.getTelegramId(), null, null);
+            messageText = "🌙 Тихие часы отключены.";
+        } else {
+            String[] parts = argument.split("-");
+            LocalTime from = parts.length == 2 ? parseTime(parts[0]) : null;
+            LocalTime to = parts.length == 2 ? parseTime(parts[1]) : null;
+            if (from == null || to == null || from.equals(to)) {
+                messageText = "Укажите интервал тихих часов, например: /quiet 23:00-08:00\n" +
+                        "Отключить: /quiet off";
+            } else {
+                userService.setQuietHours(user.getTelegramId(), from, to);
+                messageText = String.format("🌙 Тихие часы: %s-%s.\n\n" +
+                        "Объявления, найденные в это время, придут после %s.", from, to, to);
+            }
+        }
+
+        reply(chatId, messageText, sender);
+    }
+
+    /**
+     * Обработка команды /limit: лимит сообщений в час
+     */
+    private void handleLimit(Update update, AbsSender sender) {
+        Long chatId = update.getMessage().getChatId();
+        User user = userService.findOrCreateUser(update.getMessage().getFrom());
+        String argument = commandArgument(update);
+
+        String messageText;
+        if ("off".equalsIgnoreCase(argument)) {
+            userService.setMaxMessagesPerHour(user.getTelegramId(), null);
+            messageText = "⏱ Лимит сообщений отключён.";
+        } else {
+            Integer limit = parseLimit(argument);
+            if (limit == null) {
+                messageText = "Укажите, сколько сообщений в час присылать (от 1 до 100), например: /limit 10\n" +
+                        "Отключить: /limit off";
+            } else {
+                userService.setMaxMessagesPerHour(user.getTelegramId(), limit);
+                messageText = String.format("⏱ Не больше %d сообщений в час.\n\n" +
+                        "Остальные объявления придут позже.", limit);
+            }
+        }
+
+        reply(chatId, messageText, sender);
+    }
+
+    /**
+     * Обработка команды /digesttime: время ежедневной доставки
+     */
+    private void handleDigestTime(Update update, AbsSender sender) {
+        Long chatId = update.getMessage().getChatId();
+        User user = userService.findOrCreateUser(update.getMessage().getFrom());
+        String argument = commandArgument(update);
+
+        String messageText;
+        if ("off".equalsIgnoreCase(argument)) {
+            userService.setDigestTime(user.getTelegramId(), null);
+            messageText = "🕘 Новые объявления будут приходить сразу.";
+        } else {
+            LocalTime time = parseTime(argument);
+            if (time == null) {
+                messageText = "Укажите время, например: /digesttime 09:00\n" +
+                        "Присылать сразу: /digesttime off";
+            } else {
+                userService.setDigestTime(user.getTelegramId(), time);
+                messageText = String.format("🕘 Новые объявления будут приходить раз в день в %s.", time);
+            }
+        }
+
+        reply(chatId, messageText, sender);
+    }
+
+    /**
+     * Текст после команды ("/quiet 23:00-08:00" -> "23:00-08:00")
+     */
+    private String commandArgument(Update update) {
+        String[] parts = update.getMessage().getText().trim().split("\\s+", 2);
+        return parts.length > 1 ? parts[1].trim() : "";
+    }
+
+    private LocalTime parseTime(String text) {
+        try {
+            return LocalTime.parse(text.trim(), TIME_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private Integer parseLimit(String text) {
+        try {
+            int limit = Integer.parseInt(text.trim());
+            return limit >= 1 && limit <= 100 ? limit : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void reply(Long chatId, String text, AbsSender sender) {
+        SendMessage sendMessage = new SendMessage();
+        sendMessage.setChatId(chatId.toString());
+        sendMessage.setText(text);
+
+        try {
+            sender.execute(sendMessage);
+        } catch (TelegramApiException e) {
+            log.error("Error sending message to chatId: {}", chatId, e);
+        }
+    }
+
     /**
      * Обработка неизвестной команды
      */
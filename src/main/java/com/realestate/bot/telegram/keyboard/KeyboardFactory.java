@@ -1,5 +1,6 @@
 package com.realestate.bot.telegram.keyboard;
 
+import com.realestate.bot.model.enums.DeliveryMode;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
@@ -13,6 +14,15 @@ import java.util.List;
 @Component
 public class KeyboardFactory {
 
+    /**
+     * Каталог районов Валенсии, доступных для выбора (порядок = порядок кнопок)
+     */
+    public static final List<String> DISTRICTS = List.of(
+            "Ciutat Vella", "Ruzafa", "El Pla del Real",
+            "Benimaclet", "Algirós", "Campanar",
+            "L'Eixample", "Extramurs", "Poblats Marítims"
+    );
+
     /**
      * Главное меню при /start
      */
@@ -90,19 +100,12 @@ public class KeyboardFactory {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
 
-        // Популярные районы Валенсии
-        String[] districts = {
-            "Ciutat Vella", "Ruzafa", "El Pla del Real",
-            "Benimaclet", "Algirós", "Campanar",
-            "L'Eixample", "Extramurs", "Poblats Marítims"
-        };
-
         // По 2 кнопки в ряд
-        for (int i = 0; i < districts.length; i += 2) {
+        for (int i = 0; i < DISTRICTS.size(); i += 2) {
             List<InlineKeyboardButton> row = new ArrayList<>();
 
-            for (int j = i; j < Math.min(i + 2, districts.length); j++) {
-                String district = districts[j];
+            for (int j = i; j < Math.min(i + 2, DISTRICTS.size()); j++) {
+                String district = DISTRICTS.get(j);
                 InlineKeyboardButton btn = new InlineKeyboardButton();
 
                 // Добавляем галочку если район уже выбран
@@ -138,7 +141,7 @@ public class KeyboardFactory {
     /**
      * Клавиатура управления поиском
      */
-    public InlineKeyboardMarkup createSearchManagement(boolean isActive) {
+    public InlineKeyboardMarkup createSearchManagement(boolean isActive, DeliveryMode deliveryMode) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
 
@@ -170,13 +173,22 @@ public class KeyboardFactory {
 
         keyboard.add(row2);
 
-        // Ряд 3: Назад
+        // Ряд 3: Режим доставки
         List<InlineKeyboardButton> row3 = new ArrayList<>();
+        InlineKeyboardButton deliveryModeBtn = new InlineKeyboardButton();
+        deliveryModeBtn.setText(deliveryMode == DeliveryMode.DIGEST
+                ? "📰 Дайджест: вкл" : "📰 Дайджест: выкл");
+        deliveryModeBtn.setCallbackData("TOGGLE_DELIVERY_MODE");
+        row3.add(deliveryModeBtn);
+        keyboard.add(row3);
+
+        // Ряд 4: Назад
+        List<InlineKeyboardButton> row4 = new ArrayList<>();
         InlineKeyboardButton backBtn = new InlineKeyboardButton();
         backBtn.setText("◀️ Назад");
         backBtn.setCallbackData("BACK_TO_MAIN");
-        row3.add(backBtn);
-        keyboard.add(row3);
+        row4.add(backBtn);
+        keyboard.add(row4);
 
         markup.setKeyboard(keyboard);
         return markup;
@@ -249,4 +261,36 @@ public class KeyboardFactory {
         markup.setKeyboard(keyboard);
         return markup;
     }
+
+    /**
+     * Клавиатура листания дайджеста: ◀️ | стр. N/M | ▶️
+     */
+    public InlineKeyboardMarkup createDigestPager(long digestId, int page, int pages) {
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
+
+        if (pages > 1) {
+            List<InlineKeyboardButton> row = new ArrayList<>();
+
+            InlineKeyboardButton prevBtn = new InlineKeyboardButton();
+            prevBtn.setText(page > 0 ? "◀️" : "·");
+            prevBtn.setCallbackData("DIGEST_PAGE:" + digestId + ":" + Math.max(page - 1, 0));
+            row.add(prevBtn);
+
+            InlineKeyboardButton pageBtn = new InlineKeyboardButton();
+            pageBtn.setText((page + 1) + "/" + pages);
+            pageBtn.setCallbackData("DIGEST_PAGE:" + digestId + ":" + page);
+            row.add(pageBtn);
+
+            InlineKeyboardButton nextBtn = new InlineKeyboardButton();
+            nextBtn.setText(page < pages - 1 ? "▶️" : "·");
+            nextBtn.setCallbackData("DIGEST_PAGE:" + digestId + ":" + Math.min(page + 1, pages - 1));
+            row.add(nextBtn);
+
+            keyboard.add(row);
+        }
+
+        markup.setKeyboard(keyboard);
+        return markup;
+    }
 }
@@ -0,0 +1,37 @@
+package com.realestate.bot.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Быстрые некриптографические 64-битные хеши для отпечатков объявлений
+ */
+public final class Hashes {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashes() {
+    }
+
+    /**
+     * FNV-1a по UTF-8 байтам строки
+     */
+    public static long fnv1a64(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Перемешивание битов (финализатор SplitMix64) - для хешей с плохо распределёнными младшими битами
+     */
+    public static long mix64(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
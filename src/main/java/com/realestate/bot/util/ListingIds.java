@@ -0,0 +1,96 @@
+package com.realestate.bot.util;
+
+import java.util.Locale;
+
+/**
+ * 64-битные идентификаторы объявлений
+ *
+ * Числовой propertyCode Idealista используется как есть (всегда положительный).
+ * Если кода нет, берётся стабильный 64-битный хеш (FNV-1a) канонического URL
+ * с установленным старшим битом - такие ID всегда отрицательные и не пересекаются с propertyCode.
+ */
+public final class ListingIds {
+
+    // Максимум 18 цифр - гарантированно помещается в long
+    private static final int MAX_NUMERIC_LENGTH = 18;
+
+    private ListingIds() {
+    }
+
+    /**
+     * Определить ID объявления
+     *
+     * @param propertyCode propertyCode из ответа скрапера (может быть null)
+     * @param url URL объявления
+     * @return числовой ID или null, если нет ни кода, ни URL
+     */
+    public static Long resolve(String propertyCode, String url) {
+        if (isNumeric(propertyCode)) {
+            return Long.parseLong(propertyCode);
+        }
+
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+
+        // URL Idealista обычно содержит ID в конце, например:
+        // https://www.idealista.com/inmueble/98765432/
+        String[] parts = url.split("[/?#]");
+        for (int i = parts.length - 1; i >= 0; i--) {
+            if (isNumeric(parts[i])) {
+                return Long.parseLong(parts[i]);
+            }
+        }
+
+        return hashUrl(url);
+    }
+
+    /**
+     * Стабильный 64-битный хеш канонического URL (всегда отрицательный)
+     */
+    public static long hashUrl(String url) {
+        return Hashes.fnv1a64(canonicalize(url)) | Long.MIN_VALUE;
+    }
+
+    /**
+     * Канонический вид URL: без схемы, www, query, fragment и завершающего слеша, в нижнем регистре
+     */
+    static String canonicalize(String url) {
+        String result = url.trim().toLowerCase(Locale.ROOT);
+
+        int schemeEnd = result.indexOf("://");
+        if (schemeEnd >= 0) {
+            result = result.substring(schemeEnd + 3);
+        }
+        if (result.startsWith("www.")) {
+            result = result.substring(4);
+        }
+
+        int queryStart = result.indexOf('?');
+        if (queryStart >= 0) {
+            result = result.substring(0, queryStart);
+        }
+        int fragmentStart = result.indexOf('#');
+        if (fragmentStart >= 0) {
+            result = result.substring(0, fragmentStart);
+        }
+
+        while (result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+
+    private static boolean isNumeric(String value) {
+        if (value == null || value.isEmpty() || value.length() > MAX_NUMERIC_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
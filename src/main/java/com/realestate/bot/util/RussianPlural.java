@@ -0,0 +1,31 @@
+package com.realestate.bot.util;
+
+/**
+ * Формы множественного числа для русского языка
+ */
+public final class RussianPlural {
+
+    private RussianPlural() {
+    }
+
+    /**
+     * Форма слова для количества: 1 квартира, 2 квартиры, 5 квартир
+     *
+     * @param count количество
+     * @param form1 форма для 1, 21, 31...
+     * @param form2 форма для 2-4, 22-24...
+     * @param form5 форма для 0, 5-20, 25-30...
+     */
+    public static String of(int count, String form1, String form2, String form5) {
+        int mod10 = count % 10;
+        int mod100 = count % 100;
+
+        if (mod10 == 1 && mod100 != 11) {
+            return form1;
+        } else if (mod10 >= 2 && mod10 <= 4 && (mod100 < 10 || mod100 >= 20)) {
+            return form2;
+        } else {
+            return form5;
+        }
+    }
+}
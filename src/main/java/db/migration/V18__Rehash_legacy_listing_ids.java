@@ -0,0 +1,108 @@
+package db.migration;
+
+import com.realestate.bot.util.ListingIds;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Перевод старых 32-битных хешей URL в idealista_id на 64-битные ID {@link ListingIds}
+ *
+ * До V6 объявление без propertyCode и без числа в URL получало ID url.hashCode(); V6 перенёс такие
+ * значения как есть, а {@link ListingIds#hashUrl} даёт для того же URL другой (отрицательный 64-битный) ID.
+ * Без перевода такие объявления были бы отправлены ещё раз, а положительные старые хеши делили бы
+ * пространство ID с настоящими propertyCode. Старый хеш узнаётся по URL из sent_listings: ID совпадает
+ * с url.hashCode(), а новый ID того же URL - другой. Миграция на Java, чтобы ID считались тем же кодом,
+ * что и в приложении.
+ */
+public class V18__Rehash_legacy_listing_ids extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    private record Key(long searchId, long idealistaId) {
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+
+        // (поиск, старый ID) -> новый ID; старые ID поиска, которые дали разные новые (коллизия hashCode), не трогаем
+        Map<Key, Long> rehashed = new HashMap<>();
+        Set<Key> ambiguous = new HashSet<>();
+        try (Statement select = connection.createStatement()) {
+            select.setFetchSize(BATCH_SIZE);
+            try (ResultSet rows = select.executeQuery(
+                    "SELECT DISTINCT search_id, idealista_id, idealista_url FROM sent_listings " +
+                    "WHERE idealista_id BETWEEN -2147483648 AND 2147483647")) {
+                while (rows.next()) {
+                    Key key = new Key(rows.getLong(1), rows.getLong(2));
+                    long oldId = key.idealistaId();
+                    String url = rows.getString(3);
+                    if (url == null || url.hashCode() != oldId) {
+                        continue;
+                    }
+                    Long newId = ListingIds.resolve(null, url);
+                    if (newId == null || newId == oldId) {
+                        continue;
+                    }
+                    Long previous = rehashed.putIfAbsent(key, newId);
+                    if (previous != null && !previous.equals(newId)) {
+                        ambiguous.add(key);
+                    }
+                }
+            }
+        }
+        ambiguous.forEach(rehashed::remove);
+        if (rehashed.isEmpty()) {
+            return;
+        }
+
+        // Ключ под новым ID мог появиться уже после перехода на 64-битные ID - тогда старый просто удаляется
+        try (PreparedStatement renameKeys = connection.prepareStatement(
+                "UPDATE sent_listing_keys SET idealista_id = ? WHERE search_id = ? AND idealista_id = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM sent_listing_keys WHERE search_id = ? AND idealista_id = ?)");
+             PreparedStatement deleteKeys = connection.prepareStatement(
+                     "DELETE FROM sent_listing_keys WHERE search_id = ? AND idealista_id = ?");
+             PreparedStatement renameListings = connection.prepareStatement(
+                     "UPDATE sent_listings SET idealista_id = ? WHERE search_id = ? AND idealista_id = ?")) {
+            int pending = 0;
+            for (Map.Entry<Key, Long> entry : rehashed.entrySet()) {
+                long searchId = entry.getKey().searchId();
+                long oldId = entry.getKey().idealistaId();
+                long newId = entry.getValue();
+                renameKeys.setLong(1, newId);
+                renameKeys.setLong(2, searchId);
+                renameKeys.setLong(3, oldId);
+                renameKeys.setLong(4, searchId);
+                renameKeys.setLong(5, newId);
+                renameKeys.addBatch();
+                deleteKeys.setLong(1, searchId);
+                deleteKeys.setLong(2, oldId);
+                deleteKeys.addBatch();
+                renameListings.setLong(1, newId);
+                renameListings.setLong(2, searchId);
+                renameListings.setLong(3, oldId);
+                renameListings.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    executeBatches(renameKeys, deleteKeys, renameListings);
+                    pending = 0;
+                }
+            }
+            executeBatches(renameKeys, deleteKeys, renameListings);
+        }
+    }
+
+    private static void executeBatches(PreparedStatement... statements) throws Exception {
+        for (PreparedStatement statement : statements) {
+            statement.executeBatch();
+        }
+    }
+}
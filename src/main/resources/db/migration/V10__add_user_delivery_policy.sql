@@ -0,0 +1,17 @@
+-- Политика доставки пользователя: тихие часы, лимит сообщений в час, время дайджеста.
+-- NULL - ограничение не задано. Время - локальное (delivery.schedule.zone)
+ALTER TABLE users ADD COLUMN quiet_from TIME;
+ALTER TABLE users ADD COLUMN quiet_to TIME;
+ALTER TABLE users ADD COLUMN max_messages_per_hour INTEGER;
+ALTER TABLE users ADD COLUMN digest_time TIME;
+
+ALTER TABLE users ADD CONSTRAINT check_user_quiet_hours
+    CHECK ((quiet_from IS NULL) = (quiet_to IS NULL) AND (quiet_from IS NULL OR quiet_from <> quiet_to));
+
+ALTER TABLE users ADD CONSTRAINT check_user_max_messages_per_hour
+    CHECK (max_messages_per_hour IS NULL OR max_messages_per_hour > 0);
+
+COMMENT ON COLUMN users.quiet_from IS 'Начало тихих часов (уведомления откладываются до quiet_to; интервал может переходить через полночь)';
+COMMENT ON COLUMN users.quiet_to IS 'Конец тихих часов';
+COMMENT ON COLUMN users.max_messages_per_hour IS 'Не больше стольких сообщений за скользящий час';
+COMMENT ON COLUMN users.digest_time IS 'Время ежедневной доставки: новые объявления копятся и приходят один раз в это время';
@@ -0,0 +1,22 @@
+-- Адаптивный интервал проверки поиска: чаще для "горячих" критериев, реже для тех, где ничего не появляется
+ALTER TABLE searches
+    ADD COLUMN check_interval_minutes INTEGER NOT NULL DEFAULT 15,
+    ADD COLUMN next_check_at TIMESTAMP,
+    ADD COLUMN hit_rate DOUBLE PRECISION NOT NULL DEFAULT 0,
+    ADD COLUMN market_velocity DOUBLE PRECISION NOT NULL DEFAULT 0;
+
+ALTER TABLE searches
+    ADD CONSTRAINT chk_searches_check_interval CHECK (check_interval_minutes > 0);
+
+-- Существующие активные поиски продолжают проверяться по прежнему расписанию
+UPDATE searches
+SET next_check_at = COALESCE(last_checked_at, created_at) + INTERVAL '15 minutes'
+WHERE status = 'ACTIVE';
+
+-- Планировщик выбирает активные поиски, время проверки которых наступило
+CREATE INDEX idx_searches_next_check ON searches(next_check_at) WHERE status = 'ACTIVE';
+
+COMMENT ON COLUMN searches.check_interval_minutes IS 'Текущий интервал проверки в минутах (пересчитывается после каждой проверки)';
+COMMENT ON COLUMN searches.next_check_at IS 'Время следующей проверки планировщиком (NULL - как можно скорее)';
+COMMENT ON COLUMN searches.hit_rate IS 'Скользящее среднее (EWMA) новых для пользователя объявлений в час';
+COMMENT ON COLUMN searches.market_velocity IS 'Скользящее среднее (EWMA) появившихся или изменившихся объявлений по критериям в час';
@@ -0,0 +1,4 @@
+-- Премиум-пользователи: их поиски проверяются в приоритетной очереди планировщика
+ALTER TABLE users ADD COLUMN premium BOOLEAN NOT NULL DEFAULT FALSE;
+
+COMMENT ON COLUMN users.premium IS 'Премиум-подписка: проверки поисков идут в приоритетной полосе PREMIUM';
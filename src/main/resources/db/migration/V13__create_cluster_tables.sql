@@ -0,0 +1,18 @@
+-- Координация нескольких экземпляров бота: живые экземпляры (по heartbeat) и аренды ролей.
+-- Время везде берётся из БД (now()), поэтому расхождение часов между экземплярами не важно.
+CREATE TABLE cluster_members (
+    instance_id VARCHAR(128) PRIMARY KEY,
+    started_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    heartbeat_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE TABLE leases (
+    name VARCHAR(64) PRIMARY KEY,
+    holder VARCHAR(128) NOT NULL,
+    acquired_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    expires_at TIMESTAMPTZ NOT NULL
+);
+
+COMMENT ON TABLE cluster_members IS 'Экземпляры бота; без heartbeat дольше cluster.member-ttl считаются ушедшими, их поиски делятся между остальными';
+COMMENT ON TABLE leases IS 'Аренды ролей с истечением (telegram-intake - приём апдейтов Telegram единственным лидером)';
+COMMENT ON COLUMN leases.expires_at IS 'Держатель продлевает аренду каждым heartbeat; истёкшую аренду может забрать другой экземпляр';
@@ -0,0 +1,12 @@
+-- Проверки поисков как задания: next_check_at (V11) - когда запускать, locked_by/locked_until - кто проверяет.
+-- Экземпляр захватывает пачку поисков (SELECT ... FOR UPDATE SKIP LOCKED), снимает захват после проверки;
+-- захват упавшего экземпляра истекает, и поиск забирает другой.
+ALTER TABLE searches
+    ADD COLUMN locked_by VARCHAR(128),
+    ADD COLUMN locked_until TIMESTAMPTZ;
+
+-- Снятие захватов экземпляра при старте и остановке
+CREATE INDEX idx_searches_locked_by ON searches(locked_by) WHERE locked_by IS NOT NULL;
+
+COMMENT ON COLUMN searches.locked_by IS 'Экземпляр, который сейчас проверяет поиск (NULL - не захвачен)';
+COMMENT ON COLUMN searches.locked_until IS 'До какого момента действует захват; после него поиск может забрать другой экземпляр';
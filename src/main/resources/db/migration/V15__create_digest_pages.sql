@@ -0,0 +1,12 @@
+-- Страницы отправленных дайджестов: листание кнопками работает на любом экземпляре бота
+-- (апдейт от кнопки может прийти не на тот экземпляр, который отправил дайджест)
+CREATE TABLE digest_pages (
+    id BIGSERIAL PRIMARY KEY,
+    chat_id BIGINT NOT NULL,
+    pages TEXT[] NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_digest_pages_created_at ON digest_pages (created_at);
+
+COMMENT ON TABLE digest_pages IS 'Отформатированные страницы дайджестов; удаляются через digest.ttl после отправки';
@@ -0,0 +1,19 @@
+-- Что поиск знает об отправленном объявлении: по этим полям снижение цены и повторная публикация
+-- определяются для каждого поиска отдельно, а не по общей выдаче всех поисков
+ALTER TABLE sent_listing_keys
+    ADD COLUMN price INTEGER,
+    ADD COLUMN seen_at TIMESTAMP;
+
+-- Цена последней отправки из сохранившихся полных записей; для остальных ключей поля пустые
+-- (снижение цены определится после следующего уведомления, повторная публикация - после первой проверки)
+UPDATE sent_listing_keys k
+SET price = s.price,
+    seen_at = s.sent_at
+FROM (SELECT DISTINCT ON (search_id, idealista_id) search_id, idealista_id, price, sent_at
+      FROM sent_listings
+      ORDER BY search_id, idealista_id, sent_at DESC) s
+WHERE k.search_id = s.search_id
+  AND k.idealista_id = s.idealista_id;
+
+COMMENT ON COLUMN sent_listing_keys.price IS 'Цена в последнем уведомлении поиска об объявлении';
+COMMENT ON COLUMN sent_listing_keys.seen_at IS 'Когда объявление последний раз было в выдаче поиска';
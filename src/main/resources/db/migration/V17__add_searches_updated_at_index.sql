@@ -0,0 +1,3 @@
+-- Каждый экземпляр кластера раз в heartbeat перечитывает изменённые поиски в обратный индекс
+-- (WHERE updated_at > ...), поиск изменённых не должен читать всю таблицу
+CREATE INDEX idx_searches_updated_at ON searches(updated_at);
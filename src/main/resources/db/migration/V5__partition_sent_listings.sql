@@ -0,0 +1,154 @@
+-- Партиционирование sent_listings по месяцам (sent_at) и вынос ключей дедупликации в компактную таблицу
+
+-- Шаг 1: Компактная таблица ключей дедупликации (только search_id + idealista_id)
+-- Живёт дольше полных записей: после удаления/архивации старых партиций
+-- объявление всё равно не будет отправлено повторно
+CREATE TABLE sent_listing_keys (
+    search_id BIGINT NOT NULL REFERENCES searches(id) ON DELETE CASCADE,
+    idealista_id VARCHAR(255) NOT NULL,
+
+    CONSTRAINT pk_sent_listing_keys PRIMARY KEY (search_id, idealista_id)
+);
+
+INSERT INTO sent_listing_keys (search_id, idealista_id)
+SELECT search_id, idealista_id FROM sent_listings
+ON CONFLICT DO NOTHING;
+
+-- Шаг 2: Переименовываем старую таблицу и её последовательность
+ALTER TABLE sent_listings RENAME TO sent_listings_legacy;
+ALTER SEQUENCE sent_listings_id_seq RENAME TO sent_listings_legacy_id_seq;
+DROP INDEX idx_sent_listings_search_id;
+DROP INDEX idx_sent_listings_idealista_id;
+DROP INDEX idx_sent_listings_sent_at;
+
+-- Шаг 3: Партиционированная таблица с тем же набором колонок
+-- (PRIMARY KEY обязан включать ключ партиционирования, уникальность пары
+-- search_id + idealista_id теперь гарантирует sent_listing_keys)
+CREATE TABLE sent_listings (
+    id BIGSERIAL,
+    search_id BIGINT NOT NULL REFERENCES searches(id) ON DELETE CASCADE,
+
+    idealista_id VARCHAR(255) NOT NULL,
+    idealista_url TEXT NOT NULL,
+    price INTEGER NOT NULL,
+    num_rooms INTEGER,
+    district VARCHAR(255),
+    description TEXT,
+    photo_urls TEXT[],
+
+    sent_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT pk_sent_listings PRIMARY KEY (id, sent_at)
+) PARTITION BY RANGE (sent_at);
+
+-- Партиция по умолчанию - страховка, если обслуживание не успело создать месяц заранее
+CREATE TABLE sent_listings_default PARTITION OF sent_listings DEFAULT;
+
+-- Индексы для выборок "последние N дней по поиску"
+CREATE INDEX idx_sent_listings_search_sent_at ON sent_listings(search_id, sent_at DESC);
+CREATE INDEX idx_sent_listings_sent_at ON sent_listings(sent_at);
+
+-- Шаг 4: Функция создания месячной партиции
+-- Строки, попавшие в партицию по умолчанию, переносятся в новую партицию
+CREATE OR REPLACE FUNCTION sent_listings_create_partition(p_month DATE)
+RETURNS BOOLEAN
+LANGUAGE plpgsql AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::date;
+    v_end   DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::date;
+    v_name  TEXT := 'sent_listings_' || to_char(v_start, 'YYYY_MM');
+BEGIN
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE sent_listings INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', v_name);
+    EXECUTE format(
+        'WITH moved AS (DELETE FROM sent_listings_default WHERE sent_at >= %L AND sent_at < %L RETURNING *) '
+        'INSERT INTO %I SELECT * FROM moved',
+        v_start, v_end, v_name);
+    EXECUTE format('ALTER TABLE sent_listings ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+        v_name, v_start, v_end);
+
+    RETURN TRUE;
+END;
+$$;
+
+-- Шаг 5: Создать партиции на текущий и следующие p_months_ahead месяцев
+CREATE OR REPLACE FUNCTION sent_listings_ensure_partitions(p_months_ahead INTEGER)
+RETURNS INTEGER
+LANGUAGE plpgsql AS $$
+DECLARE
+    v_created INTEGER := 0;
+BEGIN
+    FOR i IN 0..p_months_ahead LOOP
+        IF sent_listings_create_partition((date_trunc('month', CURRENT_DATE) + make_interval(months => i))::date) THEN
+            v_created := v_created + 1;
+        END IF;
+    END LOOP;
+    RETURN v_created;
+END;
+$$;
+
+-- Шаг 6: Отсоединить партиции старше p_keep_months месяцев
+-- p_archive = true: партиция переименовывается в sent_listings_archive_YYYY_MM (для выгрузки)
+-- p_archive = false: партиция удаляется (ключи дедупликации остаются в sent_listing_keys)
+CREATE OR REPLACE FUNCTION sent_listings_expire_partitions(p_keep_months INTEGER, p_archive BOOLEAN)
+RETURNS INTEGER
+LANGUAGE plpgsql AS $$
+DECLARE
+    v_cutoff  DATE := (date_trunc('month', CURRENT_DATE) - make_interval(months => p_keep_months))::date;
+    v_expired INTEGER := 0;
+    r RECORD;
+BEGIN
+    FOR r IN
+        SELECT c.relname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'sent_listings'::regclass
+          AND c.relname ~ '^sent_listings_[0-9]{4}_[0-9]{2}$'
+    LOOP
+        IF to_date(substr(r.relname, 15), 'YYYY_MM') < v_cutoff THEN
+            EXECUTE format('ALTER TABLE sent_listings DETACH PARTITION %I', r.relname);
+            IF p_archive THEN
+                EXECUTE format('ALTER TABLE %I RENAME TO %I',
+                    r.relname, 'sent_listings_archive_' || substr(r.relname, 15));
+            ELSE
+                EXECUTE format('DROP TABLE %I', r.relname);
+            END IF;
+            v_expired := v_expired + 1;
+        END IF;
+    END LOOP;
+    RETURN v_expired;
+END;
+$$;
+
+-- Шаг 7: Партиции для всех месяцев существующих данных + 2 месяца вперёд
+DO $$
+DECLARE
+    r RECORD;
+BEGIN
+    FOR r IN SELECT DISTINCT date_trunc('month', sent_at)::date AS month FROM sent_listings_legacy LOOP
+        PERFORM sent_listings_create_partition(r.month);
+    END LOOP;
+    PERFORM sent_listings_ensure_partitions(2);
+END;
+$$;
+
+-- Шаг 8: Перенос данных и восстановление последовательности
+INSERT INTO sent_listings (id, search_id, idealista_id, idealista_url, price, num_rooms,
+                           district, description, photo_urls, sent_at)
+SELECT id, search_id, idealista_id, idealista_url, price, num_rooms,
+       district, description, photo_urls, sent_at
+FROM sent_listings_legacy;
+
+SELECT setval('sent_listings_id_seq', COALESCE((SELECT MAX(id) FROM sent_listings), 0) + 1, false);
+
+DROP TABLE sent_listings_legacy;
+
+-- Комментарии
+COMMENT ON TABLE sent_listings IS 'Отправленные объявления (полные данные), партиционировано по месяцам sent_at';
+COMMENT ON TABLE sent_listing_keys IS 'Компактные ключи дедупликации: какие объявления уже отправлены в рамках поиска';
+COMMENT ON COLUMN sent_listing_keys.idealista_id IS 'Уникальный ID объявления на Idealista (propertyCode)';
+COMMENT ON FUNCTION sent_listings_ensure_partitions(INTEGER) IS 'Создаёт месячные партиции sent_listings на текущий и следующие N месяцев';
+COMMENT ON FUNCTION sent_listings_expire_partitions(INTEGER, BOOLEAN) IS 'Удаляет или архивирует партиции sent_listings старше N месяцев';
@@ -0,0 +1,19 @@
+-- Перевод idealista_id с VARCHAR(255) на BIGINT (64-битный ID объявления)
+-- Числовые значения (propertyCode и старые 32-битные хеши URL) переносятся как есть,
+-- нечисловые (на всякий случай) - через hashtext
+
+ALTER TABLE sent_listing_keys
+    ALTER COLUMN idealista_id TYPE BIGINT
+    USING CASE WHEN idealista_id ~ '^-?[0-9]{1,18}$'
+               THEN idealista_id::BIGINT
+               ELSE hashtext(idealista_id)::BIGINT END;
+
+-- ALTER на партиционированной таблице применяется ко всем партициям
+ALTER TABLE sent_listings
+    ALTER COLUMN idealista_id TYPE BIGINT
+    USING CASE WHEN idealista_id ~ '^-?[0-9]{1,18}$'
+               THEN idealista_id::BIGINT
+               ELSE hashtext(idealista_id)::BIGINT END;
+
+COMMENT ON COLUMN sent_listing_keys.idealista_id IS 'ID объявления: propertyCode Idealista (> 0) или 64-битный хеш URL (< 0)';
+COMMENT ON COLUMN sent_listings.idealista_id IS 'ID объявления: propertyCode Idealista (> 0) или 64-битный хеш URL (< 0)';
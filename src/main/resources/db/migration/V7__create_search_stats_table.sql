@@ -0,0 +1,29 @@
+-- Счётчики по поиску, обновляемые инкрементально при каждой отправке
+-- (вместо подсчёта по истории sent_listings при каждом /mysearch)
+CREATE TABLE search_stats (
+    search_id BIGINT PRIMARY KEY REFERENCES searches(id) ON DELETE CASCADE,
+
+    total_sent BIGINT NOT NULL DEFAULT 0,
+    today_date DATE,
+    today_sent INTEGER NOT NULL DEFAULT 0,
+    last_sent_at TIMESTAMP,
+
+    -- Сумма и количество цен для средней цены
+    price_sum BIGINT NOT NULL DEFAULT 0,
+    price_count BIGINT NOT NULL DEFAULT 0
+);
+
+-- Заполняем по существующей истории
+INSERT INTO search_stats (search_id, total_sent, today_date, today_sent, last_sent_at, price_sum, price_count)
+SELECT search_id,
+       COUNT(*),
+       CURRENT_DATE,
+       COUNT(*) FILTER (WHERE sent_at >= CURRENT_DATE),
+       MAX(sent_at),
+       COALESCE(SUM(price), 0),
+       COUNT(price)
+FROM sent_listings
+GROUP BY search_id;
+
+COMMENT ON TABLE search_stats IS 'Инкрементальные счётчики отправленных объявлений по поиску';
+COMMENT ON COLUMN search_stats.today_date IS 'Дата, к которой относится today_sent (при смене дня счётчик сбрасывается)';
@@ -0,0 +1,14 @@
+-- Поиск "в радиусе N км от точки" (дополнительно к выбору районов)
+ALTER TABLE searches
+    ADD COLUMN center_lat DOUBLE PRECISION,
+    ADD COLUMN center_lon DOUBLE PRECISION,
+    ADD COLUMN radius_km DOUBLE PRECISION;
+
+-- Радиус задаётся только вместе с центром
+ALTER TABLE searches
+    ADD CONSTRAINT chk_searches_radius
+        CHECK (radius_km IS NULL OR (radius_km > 0 AND center_lat IS NOT NULL AND center_lon IS NOT NULL));
+
+COMMENT ON COLUMN searches.center_lat IS 'Широта центра поиска по радиусу (WGS84)';
+COMMENT ON COLUMN searches.center_lon IS 'Долгота центра поиска по радиусу (WGS84)';
+COMMENT ON COLUMN searches.radius_km IS 'Радиус поиска в километрах (NULL - без ограничения по расстоянию)';
@@ -0,0 +1,7 @@
+-- Режим доставки объявлений: FULL - каждое отдельным сообщением, DIGEST - одним сообщением со страницами
+ALTER TABLE users ADD COLUMN delivery_mode VARCHAR(20) NOT NULL DEFAULT 'FULL';
+
+ALTER TABLE users ADD CONSTRAINT check_user_delivery_mode
+    CHECK (delivery_mode IN ('FULL', 'DIGEST'));
+
+COMMENT ON COLUMN users.delivery_mode IS 'Режим доставки: FULL - отдельные сообщения, DIGEST - одно сообщение с постраничным списком';